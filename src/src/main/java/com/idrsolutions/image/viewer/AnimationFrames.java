@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the frames of an animated image one at a time, so an animation of any length can be played
+ * without decoding all of it.
+ * <p>
+ * GIF is read through ImageIO's reader and APNG by splitting the file into a small PNG per frame.
+ * Other formats play if an installed ImageIO reader returns several images, such as a WebP plugin,
+ * with every image covering the whole canvas. Frames are returned as decoded, each with the
+ * position, delay and disposal and blend rules {@link AnimationPlayer} composites it by.
+ */
+abstract class AnimationFrames implements Closeable {
+
+    private static final int DEFAULT_DELAY = 100;
+    // browsers slow down frames asking for less, which many files rely on
+    private static final int MIN_DELAY = 20;
+
+    /**
+     * What happens to a frame's area before the next frame is drawn.
+     */
+    enum Disposal {
+        NONE, BACKGROUND, PREVIOUS
+    }
+
+    /**
+     * How a frame is drawn over the canvas.
+     */
+    enum Blend {
+        SOURCE, OVER
+    }
+
+    static final class Frame {
+        final BufferedImage image;
+        final int x;
+        final int y;
+        final int delay;
+        final Disposal disposal;
+        final Blend blend;
+
+        Frame(final BufferedImage image, final int x, final int y, final int delay, final Disposal disposal, final Blend blend) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.delay = delay < MIN_DELAY ? DEFAULT_DELAY : delay;
+            this.disposal = disposal;
+            this.blend = blend;
+        }
+    }
+
+    /**
+     * @return true for the file extensions animations are looked for in
+     */
+    static boolean mayBeAnimated(final String extension) {
+        return "gif".equals(extension) || "png".equals(extension) || "apng".equals(extension) || "webp".equals(extension);
+    }
+
+    /**
+     * @return the frames of file, or null if it is not an animation
+     */
+    static AnimationFrames open(final File file) throws IOException {
+        final String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".png") || name.endsWith(".apng")) {
+            final ApngFrames apng = new ApngFrames(file);
+            if (apng.frameCount > 1) {
+                return apng;
+            }
+            apng.close();
+            return null;
+        }
+        final ImageInputStream iis = ImageIO.createImageInputStream(file);
+        if (iis == null) {
+            return null;
+        }
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            iis.close();
+            return null;
+        }
+        final ImageReader reader = readers.next();
+        reader.setInput(iis, false);
+        try {
+            // finding a second image only reads as far as it, unlike counting them
+            reader.getImageMetadata(1);
+        } catch (final IndexOutOfBoundsException | IOException e) {
+            reader.dispose();
+            iis.close();
+            return null;
+        }
+        return "gif".equals(reader.getFormatName().toLowerCase(Locale.ROOT)) ? new GifFrames(reader, iis) : new ReaderFrames(reader, iis);
+    }
+
+    abstract int getWidth();
+
+    abstract int getHeight();
+
+    /**
+     * @return how many times the animation plays, 0 for ever
+     */
+    abstract int getLoops();
+
+    /**
+     * @return the next frame, or null after the last
+     */
+    abstract Frame next() throws IOException;
+
+    /**
+     * Goes back to the first frame.
+     */
+    abstract void rewind() throws IOException;
+
+    /**
+     * Frames from an ImageIO reader, read by index.
+     */
+    private static class ReaderFrames extends AnimationFrames {
+        final ImageReader reader;
+        private final ImageInputStream iis;
+        int index;
+
+        ReaderFrames(final ImageReader reader, final ImageInputStream iis) {
+            this.reader = reader;
+            this.iis = iis;
+        }
+
+        @Override
+        int getWidth() {
+            try {
+                return reader.getWidth(0);
+            } catch (final IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        int getHeight() {
+            try {
+                return reader.getHeight(0);
+            } catch (final IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        int getLoops() {
+            return 0;
+        }
+
+        @Override
+        Frame next() throws IOException {
+            final BufferedImage image;
+            try {
+                image = reader.read(index);
+            } catch (final IndexOutOfBoundsException e) {
+                return null;
+            }
+            return frame(image, index++);
+        }
+
+        Frame frame(final BufferedImage image, final int i) throws IOException {
+            return new Frame(image, 0, 0, DEFAULT_DELAY, Disposal.NONE, Blend.SOURCE);
+        }
+
+        @Override
+        void rewind() {
+            index = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            iis.close();
+        }
+    }
+
+    /**
+     * GIF frames, placed and disposed of as their graphic control extension says.
+     */
+    private static final class GifFrames extends ReaderFrames {
+        private int width = -1;
+        private int height;
+        private int loops = -1;
+
+        GifFrames(final ImageReader reader, final ImageInputStream iis) {
+            super(reader, iis);
+        }
+
+        private void readStreamMetadata() {
+            if (loops >= 0) {
+                return;
+            }
+            loops = 1;
+            try {
+                final IIOMetadata meta = reader.getStreamMetadata();
+                final Node root = meta == null ? null : meta.getAsTree("javax_imageio_gif_stream_1.0");
+                final Node screen = child(root, "LogicalScreenDescriptor");
+                if (screen != null) {
+                    width = intAttribute(screen, "logicalScreenWidth", 0);
+                    height = intAttribute(screen, "logicalScreenHeight", 0);
+                }
+            } catch (final IOException e) {
+                System.err.println("Unable to read GIF header: " + e.getMessage());
+            }
+            try {
+                // the loop count is in the application extension, kept with the first image
+                final Node extensions = child(reader.getImageMetadata(0).getAsTree("javax_imageio_gif_image_1.0"), "ApplicationExtensions");
+                for (Node n = extensions == null ? null : extensions.getFirstChild(); n != null; n = n.getNextSibling()) {
+                    final Object data = n instanceof IIOMetadataNode ? ((IIOMetadataNode) n).getUserObject() : null;
+                    if ("NETSCAPE".equals(attribute(n, "applicationID")) && data instanceof byte[] && ((byte[]) data).length >= 3) {
+                        final byte[] b = (byte[]) data;
+                        loops = (b[1] & 0xff) | (b[2] & 0xff) << 8;
+                    }
+                }
+            } catch (final IOException e) {
+                System.err.println("Unable to read GIF loop count: " + e.getMessage());
+            }
+            if (width <= 0 || height <= 0) {
+                width = super.getWidth();
+                height = super.getHeight();
+            }
+        }
+
+        @Override
+        int getWidth() {
+            readStreamMetadata();
+            return width;
+        }
+
+        @Override
+        int getHeight() {
+            readStreamMetadata();
+            return height;
+        }
+
+        @Override
+        int getLoops() {
+            readStreamMetadata();
+            return loops;
+        }
+
+        @Override
+        Frame frame(final BufferedImage image, final int i) throws IOException {
+            final Node root = reader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0");
+            final Node descriptor = child(root, "ImageDescriptor");
+            final Node control = child(root, "GraphicControlExtension");
+            final String disposal = control == null ? "none" : attribute(control, "disposalMethod");
+            return new Frame(image, intAttribute(descriptor, "imageLeftPosition", 0), intAttribute(descriptor, "imageTopPosition", 0),
+                    intAttribute(control, "delayTime", 0) * 10,
+                    "restoreToBackgroundColor".equals(disposal) ? Disposal.BACKGROUND
+                            : "restoreToPrevious".equals(disposal) ? Disposal.PREVIOUS : Disposal.NONE,
+                    Blend.OVER);
+        }
+    }
+
+    private static Node child(final Node parent, final String name) {
+        for (Node n = parent == null ? null : parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (name.equals(n.getNodeName())) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private static String attribute(final Node node, final String name) {
+        final Node a = node == null || node.getAttributes() == null ? null : node.getAttributes().getNamedItem(name);
+        return a == null ? null : a.getNodeValue();
+    }
+
+    private static int intAttribute(final Node node, final String name, final int fallback) {
+        try {
+            final String value = attribute(node, name);
+            return value == null ? fallback : Integer.parseInt(value);
+        } catch (final NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * APNG frames, each rebuilt from its frame control and data chunks into a standalone PNG with
+     * the file's header and palette chunks, and decoded through ImageIO.
+     */
+    private static final class ApngFrames extends AnimationFrames {
+        private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+        private static final class Chunk {
+            final String type;
+            final byte[] data;
+
+            Chunk(final String type, final byte[] data) {
+                this.type = type;
+                this.data = data;
+            }
+        }
+
+        private final File file;
+        private byte[] header;
+        private final List<Chunk> shared = new ArrayList<>();
+        private int width;
+        private int height;
+        private int frameCount;
+        private int loops;
+        private DataInputStream in;
+        private long remaining;
+        private Chunk pending;
+
+        ApngFrames(final File file) throws IOException {
+            this.file = file;
+            rewind();
+        }
+
+        @Override
+        int getWidth() {
+            return width;
+        }
+
+        @Override
+        int getHeight() {
+            return height;
+        }
+
+        @Override
+        int getLoops() {
+            return loops;
+        }
+
+        @Override
+        void rewind() throws IOException {
+            close();
+            shared.clear();
+            frameCount = 0;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            final byte[] signature = new byte[SIGNATURE.length];
+            in.readFully(signature);
+            if (!Arrays.equals(signature, SIGNATURE)) {
+                throw new IOException("Not a PNG file");
+            }
+            remaining = file.length() - SIGNATURE.length;
+            // everything up to the first frame control or image data applies to every frame
+            for (Chunk c = readChunk(); c != null; c = readChunk()) {
+                if ("IHDR".equals(c.type)) {
+                    header = c.data;
+                    width = readInt(c.data, 0);
+                    height = readInt(c.data, 4);
+                } else if ("acTL".equals(c.type)) {
+                    frameCount = readInt(c.data, 0);
+                    loops = readInt(c.data, 4);
+                } else if ("fcTL".equals(c.type) || "IDAT".equals(c.type)) {
+                    pending = c;
+                    return;
+                } else {
+                    shared.add(c);
+                }
+            }
+        }
+
+        @Override
+        Frame next() throws IOException {
+            // skip a default image that is not part of the animation
+            while (pending != null && !"fcTL".equals(pending.type)) {
+                pending = readChunk();
+            }
+            if (pending == null) {
+                return null;
+            }
+            final byte[] control = pending.data;
+            final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(png);
+            out.write(SIGNATURE);
+            final byte[] frameHeader = header.clone();
+            System.arraycopy(control, 4, frameHeader, 0, 8);
+            writeChunk(out, "IHDR", frameHeader, 0);
+            for (final Chunk c : shared) {
+                writeChunk(out, c.type, c.data, 0);
+            }
+            for (pending = readChunk(); pending != null && !"fcTL".equals(pending.type); pending = readChunk()) {
+                if ("IDAT".equals(pending.type)) {
+                    writeChunk(out, "IDAT", pending.data, 0);
+                } else if ("fdAT".equals(pending.type)) {
+                    // frame data is image data after a sequence number
+                    writeChunk(out, "IDAT", pending.data, 4);
+                }
+            }
+            writeChunk(out, "IEND", new byte[0], 0);
+            final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+            if (image == null) {
+                throw new IOException("Unable to decode APNG frame");
+            }
+            final int delayNum = (control[20] & 0xff) << 8 | (control[21] & 0xff);
+            final int delayDen = (control[22] & 0xff) << 8 | (control[23] & 0xff);
+            final int disposal = control[24];
+            return new Frame(image, readInt(control, 12), readInt(control, 16), delayNum * 1000 / (delayDen == 0 ? 100 : delayDen),
+                    disposal == 1 ? Disposal.BACKGROUND : disposal == 2 ? Disposal.PREVIOUS : Disposal.NONE,
+                    control[25] == 1 ? Blend.OVER : Blend.SOURCE);
+        }
+
+        private Chunk readChunk() throws IOException {
+            final int length;
+            try {
+                length = in.readInt();
+            } catch (final EOFException e) {
+                return null;
+            }
+            // length, type and CRC take 12 bytes around the data
+            if (length < 0 || length > remaining - 12) {
+                throw new IOException("Invalid APNG chunk length " + length);
+            }
+            remaining -= 12 + length;
+            final byte[] type = new byte[4];
+            in.readFully(type);
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            in.readInt();
+            final String name = new String(type, StandardCharsets.US_ASCII);
+            return "IEND".equals(name) ? null : new Chunk(name, data);
+        }
+
+        private static void writeChunk(final DataOutputStream out, final String type, final byte[] data, final int offset) throws IOException {
+            final byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+            out.writeInt(data.length - offset);
+            out.write(name);
+            out.write(data, offset, data.length - offset);
+            final CRC32 crc = new CRC32();
+            crc.update(name);
+            crc.update(data, offset, data.length - offset);
+            out.writeInt((int) crc.getValue());
+        }
+
+        private static int readInt(final byte[] b, final int offset) {
+            return (b[offset] & 0xff) << 24 | (b[offset + 1] & 0xff) << 16 | (b[offset + 2] & 0xff) << 8 | (b[offset + 3] & 0xff);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.SwingUtilities;
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Plays an animated image.
+ * <p>
+ * A decoder thread reads frames from {@link AnimationFrames} one at a time and composites each one
+ * onto a canvas as its disposal and blend rules say. It then scales the result into the next free
+ * buffer of a small ring, so only the canvas and the ring are held however long the animation is.
+ * A clock thread hands ready frames to the event dispatch thread at deadlines measured from the
+ * start, so delays do not drift. A buffer returns to the ring once the frame after it is shown. If
+ * the decoder falls behind, frames are shown late rather than skipped, and the clock restarts from
+ * the late frame instead of rushing to catch up.
+ */
+final class AnimationPlayer {
+
+    private static final int MIN_BUFFERS = 2;
+    private static final int MAX_BUFFERS = 16;
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * Chooses the size frames are shown at from the size of the canvas.
+     */
+    interface FrameSize {
+        Dimension fit(int width, int height);
+    }
+
+    private static final class Ready {
+        final BufferedImage buffer;
+        final BufferedImage shown;
+        final int delay;
+
+        Ready(final BufferedImage buffer, final BufferedImage shown, final int delay) {
+            this.buffer = buffer;
+            this.shown = shown;
+            this.delay = delay;
+        }
+    }
+
+    private final File file;
+    private final FrameSize size;
+    private final UnaryOperator<BufferedImage> processor;
+    private final Consumer<BufferedImage> display;
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(FolderIndex.daemon("animation-clock"));
+    private final Thread decoder;
+    private BlockingQueue<BufferedImage> free;
+    private BlockingQueue<Ready> ready;
+    private volatile boolean stopped;
+    private ScheduledFuture<?> tick;
+    private long deadline;
+    private boolean restart;
+    // touched only on the event dispatch thread
+    private Ready showing;
+
+    /**
+     * @param processor applied to every frame after scaling, on the decoder thread
+     * @param display   called on the event dispatch thread with each frame to show
+     */
+    AnimationPlayer(final File file, final FrameSize size, final UnaryOperator<BufferedImage> processor, final Consumer<BufferedImage> display) {
+        this.file = file;
+        this.size = size;
+        this.processor = processor;
+        this.display = display;
+        decoder = new Thread(this::decode, "animation-decode");
+        decoder.setDaemon(true);
+    }
+
+    /**
+     * Starts decoding, and playing once the first frame is ready. Does nothing more if the file
+     * turns out not to be animated.
+     */
+    void start() {
+        decoder.start();
+    }
+
+    synchronized void pause() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+    }
+
+    synchronized void resume() {
+        if (tick == null && ready != null && !stopped) {
+            restart = true;
+            tick = clock.schedule(this::tick, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    synchronized boolean isPaused() {
+        return tick == null;
+    }
+
+    void stop() {
+        stopped = true;
+        decoder.interrupt();
+        clock.shutdownNow();
+    }
+
+    private void decode() {
+        try (AnimationFrames frames = AnimationFrames.open(file)) {
+            if (frames == null || stopped) {
+                return;
+            }
+            final int width = frames.getWidth();
+            final int height = frames.getHeight();
+            final Dimension shown = size.fit(width, height);
+            final int buffers = bufferCount(shown);
+            synchronized (this) {
+                free = new ArrayBlockingQueue<>(buffers);
+                ready = new ArrayBlockingQueue<>(buffers);
+            }
+            for (int i = 0; i < buffers; i++) {
+                free.add(new BufferedImage(Math.max(1, shown.width), Math.max(1, shown.height), BufferedImage.TYPE_INT_ARGB));
+            }
+            final BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            resume();
+
+            final int loops = frames.getLoops();
+            for (int played = 0; !stopped && (loops == 0 || played < loops); played++) {
+                if (played > 0) {
+                    frames.rewind();
+                }
+                clear(canvas, 0, 0, width, height);
+                BufferedImage saved = null;
+                AnimationFrames.Frame previous = null;
+                boolean any = false;
+                for (AnimationFrames.Frame f = frames.next(); f != null && !stopped; f = frames.next()) {
+                    any = true;
+                    if (previous != null && previous.disposal == AnimationFrames.Disposal.BACKGROUND) {
+                        clear(canvas, previous.x, previous.y, previous.image.getWidth(), previous.image.getHeight());
+                    } else if (saved != null) {
+                        draw(canvas, saved, previous.x, previous.y, AnimationFrames.Blend.SOURCE);
+                    }
+                    saved = f.disposal == AnimationFrames.Disposal.PREVIOUS ? copy(canvas, f.x, f.y, f.image.getWidth(), f.image.getHeight()) : null;
+                    draw(canvas, f.image, f.x, f.y, f.blend);
+                    previous = f;
+
+                    final BufferedImage buffer = free.take();
+                    final Graphics2D g = buffer.createGraphics();
+                    g.setComposite(AlphaComposite.Src);
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(canvas, 0, 0, buffer.getWidth(), buffer.getHeight(), null);
+                    g.dispose();
+                    ready.put(new Ready(buffer, processor.apply(buffer), f.delay));
+                }
+                if (!any) {
+                    break;
+                }
+            }
+        } catch (final InterruptedException e) {
+            // stopped
+        } catch (final IOException | RuntimeException e) {
+            System.err.println("Unable to play animation: " + e);
+        }
+    }
+
+    private static int bufferCount(final Dimension shown) {
+        final long bytes = Math.max(1L, (long) shown.width * shown.height * 4);
+        return (int) Math.max(MIN_BUFFERS, Math.min(MAX_BUFFERS, MemoryBudget.GLOBAL.getLimit() / 16 / bytes));
+    }
+
+    private void tick() {
+        final Ready next;
+        synchronized (this) {
+            if (tick == null || stopped) {
+                return;
+            }
+            next = ready.poll();
+            final long now = System.nanoTime();
+            if (next == null) {
+                // the decoder is behind, or the animation has ended
+                if (decoder.isAlive() || !ready.isEmpty()) {
+                    tick = clock.schedule(this::tick, RETRY_NANOS, TimeUnit.NANOSECONDS);
+                } else {
+                    tick = null;
+                }
+                return;
+            }
+            final long delay = TimeUnit.MILLISECONDS.toNanos(next.delay);
+            deadline = restart || now - deadline > delay ? now + delay : deadline + delay;
+            restart = false;
+            tick = clock.schedule(this::tick, deadline - now, TimeUnit.NANOSECONDS);
+        }
+        SwingUtilities.invokeLater(() -> show(next));
+    }
+
+    private void show(final Ready next) {
+        if (stopped) {
+            return;
+        }
+        display.accept(next.shown);
+        if (showing != null) {
+            free.offer(showing.buffer);
+        }
+        showing = next;
+    }
+
+    private static void clear(final BufferedImage canvas, final int x, final int y, final int w, final int h) {
+        final Graphics2D g = canvas.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(x, y, w, h);
+        g.dispose();
+    }
+
+    private static void draw(final BufferedImage canvas, final BufferedImage image, final int x, final int y, final AnimationFrames.Blend blend) {
+        final Graphics2D g = canvas.createGraphics();
+        g.setComposite(blend == AnimationFrames.Blend.OVER ? AlphaComposite.SrcOver : AlphaComposite.Src);
+        g.drawImage(image, x, y, null);
+        g.dispose();
+    }
+
+    private static BufferedImage copy(final BufferedImage canvas, final int x, final int y, final int w, final int h) {
+        final BufferedImage area = new BufferedImage(Math.max(1, w), Math.max(1, h), BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = area.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(canvas, -x, -y, null);
+        g.dispose();
+        return area;
+    }
+}
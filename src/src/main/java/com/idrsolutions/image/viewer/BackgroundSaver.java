@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import java.awt.Component;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Saves an image off the EDT.
+ * <p>
+ * The encoder streams through a buffered {@link FileChannel} into a temporary file in the target
+ * folder, which is forced to disk and then moved over the target in one step so a failed or
+ * interrupted save never leaves a partial file behind.
+ */
+final class BackgroundSaver extends SwingWorker<File, Integer> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Set<BackgroundSaver> RUNNING = ConcurrentHashMap.newKeySet();
+    // accessed on the EDT only
+    private static final List<Runnable> WHEN_IDLE = new ArrayList<>();
+
+    /**
+     * Writes an image in the given format to a stream.
+     */
+    interface Encoder {
+        void write(RenderedImage image, String format, OutputStream out) throws Exception;
+    }
+
+    private final Component parent;
+    private final Callable<? extends RenderedImage> source;
+    private final String format;
+    private final File target;
+    private final Encoder encoder;
+    private final ProgressMonitor monitor;
+    private final Runnable finished;
+
+    private BackgroundSaver(final Component parent, final Callable<? extends RenderedImage> source, final String format,
+                            final File target, final Encoder encoder, final Runnable finished) {
+        this.parent = parent;
+        this.source = source;
+        this.format = format;
+        this.target = target.getAbsoluteFile();
+        this.encoder = encoder;
+        this.finished = finished;
+        monitor = new ProgressMonitor(parent, "Saving " + target.getName(), null, 0, 100);
+        monitor.setMillisToDecideToPopup(250);
+    }
+
+    /**
+     * Starts a save.
+     *
+     * @param source   supplies the image to write, called on the background thread
+     * @param finished run on the EDT once the save has ended, whether or not it succeeded, to
+     *                 release what source reads from
+     */
+    static void save(final Component parent, final Callable<? extends RenderedImage> source, final String format,
+                     final File target, final Encoder encoder, final Runnable finished) {
+        final BackgroundSaver saver = new BackgroundSaver(parent, source, format, target, encoder, finished);
+        RUNNING.add(saver);
+        saver.execute();
+    }
+
+    /**
+     * Runs action on the EDT once no saves are in progress, straight away if none are, so the
+     * application can exit without cutting a save short or blocking the EDT until it ends.
+     */
+    static void whenIdle(final Runnable action) {
+        if (RUNNING.isEmpty()) {
+            action.run();
+        } else {
+            WHEN_IDLE.add(action);
+        }
+    }
+
+    @Override
+    protected File doInBackground() throws Exception {
+        final RenderedImage image = source.call();
+        if (image == null) {
+            throw new IOException("No image to save");
+        }
+        // compressed output size is unknown, so progress is measured against the raw raster size
+        final long estimate = Math.max(1L, (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8);
+        final Path tmp = createTempFile(target.toPath());
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final OutputStream out = new BufferedOutputStream(new CountingOutputStream(Channels.newOutputStream(channel), estimate), BUFFER_SIZE);
+                encoder.write(image, format, out);
+                out.flush();
+                channel.force(true);
+            }
+            if (Files.exists(target.toPath())) {
+                copyPermissions(target.toPath(), tmp);
+            }
+            try {
+                Files.move(tmp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return target;
+    }
+
+    /**
+     * Creates an empty file beside target with the permissions of any new file, rather than the
+     * owner only permissions of {@link Files#createTempFile}, as it becomes the saved file.
+     */
+    private static Path createTempFile(final Path target) throws IOException {
+        while (true) {
+            final Path tmp = target.resolveSibling("." + target.getFileName() + '.' + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE) + ".tmp");
+            try {
+                return Files.createFile(tmp);
+            } catch (final FileAlreadyExistsException e) {
+                // left by another save, try another name
+            }
+        }
+    }
+
+    /**
+     * Gives the file replacing an existing one that file's permissions.
+     */
+    private static void copyPermissions(final Path from, final Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (final UnsupportedOperationException e) {
+            // permissions are not POSIX, and the new file's defaults are kept
+        }
+    }
+
+    @Override
+    protected void process(final List<Integer> chunks) {
+        monitor.setProgress(chunks.get(chunks.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        RUNNING.remove(this);
+        monitor.close();
+        finished.run();
+        try {
+            get();
+            JOptionPane.showMessageDialog(parent, "File saved");
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            System.err.println("Cannot save file: " + e.getCause());
+            JOptionPane.showMessageDialog(parent, "Cannot save file");
+        }
+        if (RUNNING.isEmpty()) {
+            final List<Runnable> actions = new ArrayList<>(WHEN_IDLE);
+            WHEN_IDLE.clear();
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+        private final long estimate;
+        private long written;
+        private int reported;
+
+        CountingOutputStream(final OutputStream out, final long estimate) {
+            super(out);
+            this.estimate = estimate;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count(1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count(len);
+        }
+
+        private void count(final int n) throws IOException {
+            if (monitor.isCanceled()) {
+                throw new IOException("Save cancelled");
+            }
+            written += n;
+            final int percent = (int) Math.min(99, written * 100 / estimate);
+            if (percent != reported) {
+                reported = percent;
+                publish(percent);
+            }
+        }
+    }
+}
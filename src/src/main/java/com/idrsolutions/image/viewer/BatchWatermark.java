@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import com.idrsolutions.image.JDeli;
+import com.idrsolutions.image.process.Watermark;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless watermark and redaction stamping for sets of documents.
+ * <p>
+ * Usage: {@code BatchWatermark (-text <text> | -shape <name> | -image <file>) [-color RRGGBB]
+ * [-font <family>,<size>] [-position <position>] [-opacity 0-1] [-outline] [-threads <n>]
+ * -out <folder> <files or folders>...}
+ * <p>
+ * Shape names are those of {@link WatermarkLayer#SHAPES}; an opaque filled shape redacts the area.
+ * The watermark layer is rendered once per page size and blitted onto each page. Files are stamped
+ * in parallel and multi-page TIFFs page by page into a new multi-page TIFF. Throughput is reported
+ * at the end.
+ */
+final class BatchWatermark {
+
+    private final WatermarkLayer layer;
+    private final File outFolder;
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong pixels = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private BatchWatermark(final WatermarkLayer layer, final File outFolder) {
+        this.layer = layer;
+        this.outFolder = outFolder;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        String text = null;
+        String shape = null;
+        File mark = null;
+        Color color = Color.BLACK;
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, 48);
+        Watermark.WatermarkPosition position = Watermark.WatermarkPosition.CENTER;
+        float opacity = 1;
+        Watermark.WatermarkShapeProperties properties = Watermark.WatermarkShapeProperties.FILL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File out = null;
+        final List<File> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-text":
+                    text = args[++i];
+                    break;
+                case "-shape":
+                    shape = args[++i];
+                    break;
+                case "-image":
+                    mark = new File(args[++i]);
+                    break;
+                case "-color":
+                    color = new Color(Integer.parseInt(args[++i], 16));
+                    break;
+                case "-font": {
+                    final String[] parts = args[++i].split(",");
+                    font = new Font(parts[0], Font.BOLD, Integer.parseInt(parts[1]));
+                    break;
+                }
+                case "-position":
+                    position = Watermark.WatermarkPosition.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "-opacity":
+                    opacity = Float.parseFloat(args[++i]);
+                    break;
+                case "-outline":
+                    properties = Watermark.WatermarkShapeProperties.OUTLINE;
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-out":
+                    out = new File(args[++i]);
+                    break;
+                default:
+                    inputs.add(new File(args[i]));
+                    break;
+            }
+        }
+
+        final AlphaComposite alpha = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity);
+        final WatermarkLayer layer;
+        if (text != null) {
+            layer = WatermarkLayer.text(text, new Color(color.getRed(), color.getGreen(), color.getBlue(), Math.round(opacity * 255)), font, position);
+        } else if (shape != null) {
+            final Shape s = findShape(shape);
+            if (s == null) {
+                System.err.println("Unknown shape " + shape + ", expected one of " + WatermarkLayer.SHAPES.keySet());
+                return;
+            }
+            layer = WatermarkLayer.shape(s, color, position, alpha, properties);
+        } else if (mark != null) {
+            layer = WatermarkLayer.image(JDeli.read(mark), position, alpha);
+        } else {
+            layer = null;
+        }
+        if (layer == null || out == null || inputs.isEmpty()) {
+            System.err.println("Usage: BatchWatermark (-text <text> | -shape <name> | -image <file>) [-color RRGGBB] [-font <family>,<size>]"
+                    + " [-position <position>] [-opacity 0-1] [-outline] [-threads <n>] -out <folder> <files or folders>...");
+            return;
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            System.err.println("Cannot create output folder " + out);
+            return;
+        }
+        new BatchWatermark(layer, out).run(expand(inputs), threads);
+    }
+
+    private void run(final List<File> sources, final int threads) throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), FolderIndex.daemon("watermark"));
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> tasks = new ArrayList<>();
+            for (final File source : sources) {
+                tasks.add(pool.submit(() -> stamp(source)));
+            }
+            for (final Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (final ExecutionException e) {
+                    failures.incrementAndGet();
+                    System.err.println("Failed: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        final double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.out.printf("%d files, %d pages, %.1f MP in %.2f s: %.1f pages/s, %.1f MP/s, %d failed%n",
+                files.get(), pages.get(), pixels.get() / 1e6, seconds, pages.get() / seconds, pixels.get() / 1e6 / seconds, failures.get());
+    }
+
+    private Void stamp(final File source) throws Exception {
+        final File target = new File(outFolder, source.getName());
+        final String name = source.getName().toLowerCase(Locale.ROOT);
+        final int count = name.endsWith(".tif") || name.endsWith(".tiff") ? TiffPages.getPageCount(source) : 1;
+        if (count > 1) {
+            // files already run in parallel, so a file's pages go one at a time on its thread
+            TiffPages.merge(TiffPages.range(source, 0, count - 1), page -> count(layer.apply(page)), target, n -> {
+            }, 1);
+        } else {
+            final String format = name.substring(name.lastIndexOf('.') + 1);
+            JDeli.write(count(layer.apply(JDeli.read(source))), format, target);
+        }
+        files.incrementAndGet();
+        return null;
+    }
+
+    private BufferedImage count(final BufferedImage page) {
+        pages.incrementAndGet();
+        pixels.addAndGet((long) page.getWidth() * page.getHeight());
+        return page;
+    }
+
+    private static Shape findShape(final String name) {
+        for (final Map.Entry<String, Shape> e : WatermarkLayer.SHAPES.entrySet()) {
+            if (e.getKey().replace(" ", "").equalsIgnoreCase(name.replace(" ", ""))) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static List<File> expand(final List<File> inputs) {
+        final List<File> sources = new ArrayList<>();
+        for (final File f : inputs) {
+            if (f.isDirectory()) {
+                final File[] children = f.listFiles(c -> c.isFile() && !c.isHidden() && c.getName().lastIndexOf('.') > 0);
+                if (children != null) {
+                    for (final File c : children) {
+                        sources.add(c);
+                    }
+                }
+            } else {
+                sources.add(f);
+            }
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import java.awt.BorderLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Training run for the application class data sharing archive built by the {@code cds} profile.
+ * <p>
+ * Usage: {@code CdsTraining [sample images or folders]...}. Run with
+ * {@code -XX:ArchiveClassesAtExit=<archive>}, it loads the classes a viewer needs to show its first
+ * image: the backends and their decoders, the scaling and processing code and, when a display is
+ * available, the look and feel and a frame painting a {@link DisplayIcon}. Without samples a small
+ * image is written and read back in every writable format. The viewer classes are loaded without
+ * being initialised so no window opens.
+ */
+final class CdsTraining {
+
+    private static final String[] VIEWERS = {
+            "com.idrsolutions.image.viewer.ImageIOImageViewer",
+            "com.idrsolutions.image.viewer.JDeliImageViewer"
+    };
+
+    private CdsTraining() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final long start = System.nanoTime();
+        for (final String viewer : VIEWERS) {
+            try {
+                Class.forName(viewer, false, CdsTraining.class.getClassLoader());
+            } catch (final ClassNotFoundException | LinkageError e) {
+                System.err.println("Not archived, unavailable: " + viewer);
+            }
+        }
+
+        final List<File> samples = new ArrayList<>();
+        for (final String arg : args) {
+            collect(new File(arg), samples);
+        }
+        final File tmpDir = Files.createTempDirectory("cds").toFile();
+        try {
+            if (samples.isEmpty()) {
+                samples.addAll(writeSamples(tmpDir));
+            }
+            BufferedImage last = null;
+            for (final File sample : samples) {
+                try {
+                    ImageBackends.getPageCount(sample);
+                    final BufferedImage image = ImageBackends.read(sample);
+                    ImageBackends.readScaled(sample, 800, 600);
+                    ImageStatistics.compute(image);
+                    last = new ProcessingChain().apply(image);
+                } catch (final Exception e) {
+                    System.err.println("Training skipped " + sample.getName() + ": " + e);
+                }
+            }
+            if (last != null && !GraphicsEnvironment.isHeadless()) {
+                showFrame(last);
+            }
+        } finally {
+            final File[] written = tmpDir.listFiles();
+            if (written != null) {
+                for (final File f : written) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+            Files.deleteIfExists(tmpDir.toPath());
+        }
+        System.out.printf("Trained on %d images in %.0f ms%n", samples.size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    private static List<File> writeSamples(final File folder) throws Exception {
+        final BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 4 << 16 | y * 5 << 8 | (x + y) * 2);
+            }
+        }
+        final List<File> samples = new ArrayList<>();
+        for (final String format : ImageBackends.getWritableFormats()) {
+            final File f = new File(folder, "sample." + format);
+            try (OutputStream out = Files.newOutputStream(f.toPath())) {
+                ImageBackends.forWriting(format).write(image, format, out);
+                samples.add(f);
+            } catch (final Exception e) {
+                System.err.println("Training cannot write " + format + ": " + e);
+            }
+        }
+        return samples;
+    }
+
+    private static void showFrame(final BufferedImage image) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (final Exception e) {
+                System.err.println("Look and feel unavailable: " + e);
+            }
+            final JFrame frame = new JFrame("Training");
+            final JMenuBar bar = new JMenuBar();
+            final JMenu menu = new JMenu("File");
+            menu.add(new JMenuItem("Open"));
+            bar.add(menu);
+            frame.setJMenuBar(bar);
+            frame.add(new JScrollPane(new JLabel(new DisplayIcon(image))), BorderLayout.CENTER);
+            frame.pack();
+            // painted offscreen so the rendering pipeline is loaded without a window appearing
+            final BufferedImage target = new BufferedImage(Math.max(1, frame.getWidth()), Math.max(1, frame.getHeight()), BufferedImage.TYPE_INT_RGB);
+            frame.getContentPane().paint(target.getGraphics());
+            frame.dispose();
+        });
+    }
+
+    private static void collect(final File f, final List<File> samples) {
+        if (f.isDirectory()) {
+            final File[] children = f.listFiles();
+            if (children != null) {
+                for (final File c : children) {
+                    collect(c, samples);
+                }
+            }
+        } else if (f.isFile()) {
+            samples.add(f);
+        }
+    }
+}
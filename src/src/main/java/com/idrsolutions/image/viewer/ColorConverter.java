@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Colour space conversions with loops specialised for the common {@link BufferedImage} types.
+ * <p>
+ * Rows are read straight from the backing arrays of INT_RGB, INT_ARGB, 3BYTE_BGR, BYTE_GRAY and
+ * BYTE_BINARY images and written straight into the destination arrays, in parallel bands. Other
+ * types fall back to {@link BufferedImage#getRGB}. Indexed output uses an octree palette and a
+ * 15 bit nearest colour lookup table shared between threads.
+ */
+final class ColorConverter {
+
+    enum Dither {
+        NONE, ORDERED, ERROR_DIFFUSION
+    }
+
+    private static final int MAX_QUANTIZE_SAMPLES = 1 << 20;
+
+    private static final int[][] BAYER = {
+            {0, 32, 8, 40, 2, 34, 10, 42},
+            {48, 16, 56, 24, 50, 18, 58, 26},
+            {12, 44, 4, 36, 14, 46, 6, 38},
+            {60, 28, 52, 20, 62, 30, 54, 22},
+            {3, 35, 11, 43, 1, 33, 9, 41},
+            {51, 19, 59, 27, 49, 17, 57, 25},
+            {15, 47, 7, 39, 13, 45, 5, 37},
+            {63, 31, 55, 23, 61, 29, 53, 21}
+    };
+
+    private interface RowWriter {
+        void write(int y, int[] argb);
+    }
+
+    private ColorConverter() {
+    }
+
+    static BufferedImage toARGB(final BufferedImage src) {
+        return convertInt(src, BufferedImage.TYPE_INT_ARGB, 0);
+    }
+
+    static BufferedImage toRGB(final BufferedImage src) {
+        return convertInt(src, BufferedImage.TYPE_INT_RGB, 0xFF000000);
+    }
+
+    private static BufferedImage convertInt(final BufferedImage src, final int type, final int mask) {
+        final int w = src.getWidth();
+        final BufferedImage dest = new BufferedImage(w, src.getHeight(), type);
+        final int[] data = ((DataBufferInt) dest.getRaster().getDataBuffer()).getData();
+        forEachRow(src, (y, argb) -> {
+            final int off = y * w;
+            for (int x = 0; x < w; x++) {
+                data[off + x] = argb[x] | mask;
+            }
+        });
+        return dest;
+    }
+
+    static BufferedImage toGrayscale(final BufferedImage src) {
+        final int w = src.getWidth();
+        final BufferedImage dest = new BufferedImage(w, src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        final byte[] data = ((DataBufferByte) dest.getRaster().getDataBuffer()).getData();
+        forEachRow(src, (y, argb) -> {
+            final int off = y * w;
+            for (int x = 0; x < w; x++) {
+                data[off + x] = (byte) luminance(argb[x]);
+            }
+        });
+        return dest;
+    }
+
+    static BufferedImage toBinary(final BufferedImage src) {
+        return toBinary(src, Dither.NONE);
+    }
+
+    static BufferedImage toBinary(final BufferedImage src, final Dither dither) {
+        return toBinary(src, dither, 128);
+    }
+
+    /**
+     * @param threshold luminance at or above which a pixel becomes white, ignored for ordered dither
+     */
+    static BufferedImage toBinary(final BufferedImage src, final Dither dither, final int threshold) {
+        final int w = src.getWidth();
+        final int h = src.getHeight();
+        final BufferedImage dest = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY);
+        final byte[] data = ((DataBufferByte) dest.getRaster().getDataBuffer()).getData();
+        final int stride = (w + 7) / 8;
+
+        if (dither == Dither.ERROR_DIFFUSION) {
+            // Floyd-Steinberg carries error to the next row so it runs sequentially
+            int[] err = new int[w + 2];
+            int[] nextErr = new int[w + 2];
+            final int[] argb = new int[w];
+            for (int y = 0; y < h; y++) {
+                readRow(src, y, argb);
+                Arrays.fill(nextErr, 0);
+                for (int x = 0; x < w; x++) {
+                    final int value = luminance(argb[x]) + err[x + 1] / 16;
+                    final int out = value < threshold ? 0 : 255;
+                    if (out != 0) {
+                        data[y * stride + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                    }
+                    final int e = value - out;
+                    err[x + 2] += e * 7;
+                    nextErr[x] += e * 3;
+                    nextErr[x + 1] += e * 5;
+                    nextErr[x + 2] += e;
+                }
+                final int[] swap = err;
+                err = nextErr;
+                nextErr = swap;
+            }
+            return dest;
+        }
+
+        forEachRow(src, (y, argb) -> {
+            final int[] bayer = BAYER[y & 7];
+            final int off = y * stride;
+            for (int x = 0; x < w; x++) {
+                final int level = dither == Dither.ORDERED ? bayer[x & 7] * 4 + 2 : threshold;
+                if (luminance(argb[x]) >= level) {
+                    data[off + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        });
+        return dest;
+    }
+
+    static BufferedImage toIndexed(final BufferedImage src) {
+        return toIndexed(src, 256);
+    }
+
+    static BufferedImage toIndexed(final BufferedImage src, final int maxColors) {
+        final int w = src.getWidth();
+        final int h = src.getHeight();
+        final int[] palette = buildPalette(src, maxColors);
+        final IndexColorModel icm = new IndexColorModel(8, palette.length, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+        final BufferedImage dest = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, icm);
+        final byte[] data = ((DataBufferByte) dest.getRaster().getDataBuffer()).getData();
+
+        // nearest palette entry per 5:5:5 colour, filled on demand; racing threads write the same value
+        final short[] lookup = new short[1 << 15];
+        Arrays.fill(lookup, (short) -1);
+        forEachRow(src, (y, argb) -> {
+            final int off = y * w;
+            for (int x = 0; x < w; x++) {
+                final int c = argb[x];
+                final int key = (c >> 9 & 0x7C00) | (c >> 6 & 0x3E0) | (c >> 3 & 0x1F);
+                int index = lookup[key];
+                if (index < 0) {
+                    index = nearest(palette, c);
+                    lookup[key] = (short) index;
+                }
+                data[off + x] = (byte) index;
+            }
+        });
+        return dest;
+    }
+
+    private static int nearest(final int[] palette, final int c) {
+        final int r = c >> 16 & 0xFF;
+        final int g = c >> 8 & 0xFF;
+        final int b = c & 0xFF;
+        int best = 0;
+        int bestDist = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            final int dr = (palette[i] >> 16 & 0xFF) - r;
+            final int dg = (palette[i] >> 8 & 0xFF) - g;
+            final int db = (palette[i] & 0xFF) - b;
+            final int dist = dr * dr + dg * dg + db * db;
+            if (dist < bestDist) {
+                bestDist = dist;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int[] buildPalette(final BufferedImage src, final int maxColors) {
+        final Octree tree = new Octree(maxColors);
+        final int w = src.getWidth();
+        final int h = src.getHeight();
+        final int step = (int) Math.max(1, Math.sqrt((double) w * h / MAX_QUANTIZE_SAMPLES));
+        final int[] argb = new int[w];
+        for (int y = 0; y < h; y += step) {
+            readRow(src, y, argb);
+            for (int x = 0; x < w; x += step) {
+                tree.add(argb[x]);
+            }
+        }
+        return tree.palette();
+    }
+
+    /**
+     * Octree colour quantiser, merging the deepest nodes until at most maxColors leaves remain.
+     */
+    private static final class Octree {
+        private static final class Node {
+            long r;
+            long g;
+            long b;
+            long count;
+            Node[] children;
+            boolean leaf;
+            Node nextReducible;
+        }
+
+        private final int maxColors;
+        private final Node root = new Node();
+        private final Node[] reducible = new Node[8];
+        private int leaves;
+
+        Octree(final int maxColors) {
+            this.maxColors = maxColors;
+        }
+
+        void add(final int c) {
+            final int r = c >> 16 & 0xFF;
+            final int g = c >> 8 & 0xFF;
+            final int b = c & 0xFF;
+            Node node = root;
+            for (int level = 0; !node.leaf; level++) {
+                if (node.children == null) {
+                    node.children = new Node[8];
+                }
+                final int shift = 7 - level;
+                final int i = (r >> shift & 1) << 2 | (g >> shift & 1) << 1 | (b >> shift & 1);
+                if (node.children[i] == null) {
+                    final Node child = new Node();
+                    if (level == 7) {
+                        child.leaf = true;
+                        leaves++;
+                    } else {
+                        child.nextReducible = reducible[level + 1];
+                        reducible[level + 1] = child;
+                    }
+                    node.children[i] = child;
+                }
+                node = node.children[i];
+            }
+            node.r += r;
+            node.g += g;
+            node.b += b;
+            node.count++;
+            while (leaves > maxColors) {
+                reduce();
+            }
+        }
+
+        private void reduce() {
+            int level = 7;
+            while (level > 0 && reducible[level] == null) {
+                level--;
+            }
+            final Node node = level == 0 ? root : reducible[level];
+            if (level != 0) {
+                reducible[level] = node.nextReducible;
+            }
+            int merged = 0;
+            for (final Node child : node.children) {
+                if (child != null) {
+                    node.r += child.r;
+                    node.g += child.g;
+                    node.b += child.b;
+                    node.count += child.count;
+                    merged++;
+                }
+            }
+            node.children = null;
+            node.leaf = true;
+            leaves -= merged - 1;
+        }
+
+        int[] palette() {
+            final int[] colors = new int[Math.max(1, leaves)];
+            final int n = collect(root, colors, 0);
+            return n == colors.length ? colors : Arrays.copyOf(colors, Math.max(1, n));
+        }
+
+        private static int collect(final Node node, final int[] colors, final int n) {
+            if (node.leaf) {
+                if (node.count > 0 && n < colors.length) {
+                    colors[n] = 0xFF000000 | (int) (node.r / node.count) << 16 | (int) (node.g / node.count) << 8 | (int) (node.b / node.count);
+                    return n + 1;
+                }
+                return n;
+            }
+            int next = n;
+            if (node.children != null) {
+                for (final Node child : node.children) {
+                    if (child != null) {
+                        next = collect(child, colors, next);
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    private static int luminance(final int c) {
+        return ((c >> 16 & 0xFF) * 77 + (c >> 8 & 0xFF) * 150 + (c & 0xFF) * 29) >> 8;
+    }
+
+    /**
+     * Calls writer with each row as packed ARGB, in parallel bands of rows.
+     */
+    private static void forEachRow(final BufferedImage src, final RowWriter writer) {
+        final int w = src.getWidth();
+        final int h = src.getHeight();
+        final int bands = Math.max(1, Math.min(h, Runtime.getRuntime().availableProcessors() * 4));
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            final int[] argb = new int[w];
+            for (int y = band * h / bands; y < (band + 1) * h / bands; y++) {
+                readRow(src, y, argb);
+                writer.write(y, argb);
+            }
+        });
+    }
+
+    /**
+     * Reads one row as packed ARGB, straight from the backing array where the image type allows.
+     */
+    static void readRow(final BufferedImage src, final int y, final int[] argb) {
+        final WritableRaster raster = src.getRaster();
+        final int w = src.getWidth();
+        if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            src.getRGB(0, y, w, 1, argb, 0, w);
+            return;
+        }
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+                System.arraycopy(((DataBufferInt) raster.getDataBuffer()).getData(), y * w, argb, 0, w);
+                break;
+            case BufferedImage.TYPE_INT_RGB: {
+                final int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                for (int x = 0, p = y * w; x < w; x++, p++) {
+                    argb[x] = 0xFF000000 | data[p];
+                }
+                break;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                for (int x = 0, p = y * w * 3; x < w; x++, p += 3) {
+                    argb[x] = 0xFF000000 | (data[p + 2] & 0xFF) << 16 | (data[p + 1] & 0xFF) << 8 | (data[p] & 0xFF);
+                }
+                break;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                for (int x = 0, p = y * w; x < w; x++, p++) {
+                    final int g = data[p] & 0xFF;
+                    argb[x] = 0xFF000000 | g << 16 | g << 8 | g;
+                }
+                break;
+            }
+            case BufferedImage.TYPE_BYTE_BINARY:
+                if (src.getColorModel().getPixelSize() == 1) {
+                    final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                    final IndexColorModel icm = (IndexColorModel) src.getColorModel();
+                    final int black = icm.getRGB(0);
+                    final int white = icm.getRGB(1);
+                    final int off = y * ((w + 7) / 8);
+                    for (int x = 0; x < w; x++) {
+                        argb[x] = (data[off + (x >> 3)] & (0x80 >> (x & 7))) != 0 ? white : black;
+                    }
+                    break;
+                }
+                src.getRGB(0, y, w, 1, argb, 0, w);
+                break;
+            default:
+                src.getRGB(0, y, w, 1, argb, 0, w);
+                break;
+        }
+    }
+}
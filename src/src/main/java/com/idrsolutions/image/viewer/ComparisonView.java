@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two images side by side that zoom and pan together, for comparing an original with its processed
+ * version or with another scan.
+ * <p>
+ * Both panes follow one {@link Viewport}: dragging either pans both and the mouse wheel zooms both
+ * about the pointer. The images are held as {@link TileStore}s and each pane draws only the tiles
+ * it can see, from a copy halved in size as many times as the zoom allows, keeping the tiles in view
+ * ready scaled while the zoom is unchanged. Difference
+ * mode shows the absolute difference of the two images in place of the second, computed once in
+ * the background.
+ */
+final class ComparisonView extends JPanel {
+
+    private static final double ZOOM_STEP = 1.25;
+
+    private final Viewport viewport = new Viewport();
+    private final Map<TileStore, Pyramid> pyramids = new HashMap<>();
+    private final TileStore first;
+    private final TileStore second;
+    private final String secondName;
+    private final Pane left;
+    private final Pane right;
+    private final JCheckBox differenceMode = new JCheckBox("Difference");
+    private final JLabel status = new JLabel(" ");
+    private TileStore difference;
+    private String differenceSummary = "";
+    private SwingWorker<TileStore, Void> differenceWorker;
+    private boolean fitted;
+    private boolean disposed;
+
+    /**
+     * An image and copies of it at a half, a quarter and so on of its size, made in the background,
+     * so a pane zoomed out draws a few tiles of a small copy rather than every tile of the image.
+     */
+    private static final class Pyramid {
+        private final List<TileStore> levels = new CopyOnWriteArrayList<>();
+        private final SwingWorker<Void, Void> builder;
+        private volatile boolean released;
+
+        Pyramid(final TileStore store, final Runnable onLevel) {
+            levels.add(store);
+            builder = new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    // each level is held while the next is made from it, as the view may release it
+                    TileStore level = store.retain();
+                    try {
+                        while (Math.max(level.getWidth(), level.getHeight()) > TileStore.TILE_SIZE) {
+                            final TileStore next = level.halve();
+                            synchronized (levels) {
+                                if (released) {
+                                    close(next);
+                                    return null;
+                                }
+                                levels.add(next.retain());
+                            }
+                            close(level);
+                            level = next;
+                            SwingUtilities.invokeLater(onLevel);
+                        }
+                    } finally {
+                        close(level);
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        get();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (final ExecutionException | CancellationException e) {
+                        // the images were released while the copies were made
+                        if (!released) {
+                            System.err.println("Unable to scale image tiles: " + e.getCause());
+                        }
+                    }
+                }
+            };
+            builder.execute();
+        }
+
+        /**
+         * @return the level at 1 / 2^n of the image's size, or the smallest made so far
+         */
+        TileStore get(final int n) {
+            return levels.get(Math.min(n, levels.size() - 1));
+        }
+
+        int getLevels() {
+            return levels.size();
+        }
+
+        /**
+         * Releases the smaller copies and stops making more. The image itself is left open.
+         */
+        void release() {
+            synchronized (levels) {
+                released = true;
+                for (int i = levels.size() - 1; i > 0; i--) {
+                    close(levels.remove(i));
+                }
+            }
+            builder.cancel(false);
+        }
+    }
+
+    /**
+     * A view of one image through the shared viewport.
+     */
+    private final class Pane extends JComponent {
+        // scaled tiles of the level in use, kept for as long as the zoom is unchanged
+        private final Map<Point, BufferedImage> cache = new LinkedHashMap<Point, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Point, BufferedImage> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+        private String name;
+        private TileStore store;
+        private Pyramid pyramid;
+        private int cacheCapacity = 1;
+        private double cacheScale;
+        private TileStore cacheLevel;
+        private Point drag;
+
+        Pane(final String name, final TileStore store) {
+            this.name = name;
+            this.store = store;
+            pyramid = pyramidOf(store);
+            setOpaque(true);
+            setBackground(Color.DARK_GRAY);
+            final MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(final MouseEvent e) {
+                    drag = e.getPoint();
+                }
+
+                @Override
+                public void mouseDragged(final MouseEvent e) {
+                    if (drag != null) {
+                        viewport.pan(e.getX() - drag.x, e.getY() - drag.y);
+                        drag = e.getPoint();
+                    }
+                }
+
+                @Override
+                public void mouseWheelMoved(final MouseWheelEvent e) {
+                    viewport.zoomAt(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
+        }
+
+        void setStore(final String name, final TileStore store) {
+            this.name = name;
+            this.store = store;
+            pyramid = pyramidOf(store);
+            cache.clear();
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(final Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            final double zoom = viewport.getZoom();
+            // the smallest copy still at least as detailed as the zoom, which a level not yet made
+            // more than twice as large as wanted is not drawn from, as it would be most of the tiles
+            final int wanted = zoom >= 1 ? 0 : (int) Math.floor(Math.log(1 / zoom) / Math.log(2));
+            final int n = Math.min(wanted, pyramid.getLevels() - 1);
+            if (wanted - n > 1) {
+                g.setColor(Color.WHITE);
+                g.drawString(name + " - preparing...", 6, g.getFontMetrics().getAscent() + 4);
+                return;
+            }
+            final TileStore level = pyramid.get(n);
+            final double levelZoom = zoom * (1 << n);
+            // tiles are cached scaled down to the zoom, or at full size and enlarged when drawn
+            final double scale = Math.min(levelZoom, 1);
+            if (scale != cacheScale || level != cacheLevel) {
+                cache.clear();
+                cacheScale = scale;
+                cacheLevel = level;
+            }
+            final double vx = viewport.getX() / (1 << n);
+            final double vy = viewport.getY() / (1 << n);
+            final int size = TileStore.TILE_SIZE;
+            final int firstX = Math.max(0, (int) Math.floor(vx / size));
+            final int firstY = Math.max(0, (int) Math.floor(vy / size));
+            final int lastX = Math.min((level.getWidth() - 1) / size, (int) Math.floor((vx + getWidth() / levelZoom) / size));
+            final int lastY = Math.min((level.getHeight() - 1) / size, (int) Math.floor((vy + getHeight() / levelZoom) / size));
+            // room for every tile in view and as many again, so panning does not scale them again
+            cacheCapacity = Math.max(1, 2 * (lastX - firstX + 1) * (lastY - firstY + 1));
+
+            final Graphics2D g2 = (Graphics2D) g.create();
+            try {
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, levelZoom > 1 ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                        : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                for (int ty = firstY; ty <= lastY; ty++) {
+                    for (int tx = firstX; tx <= lastX; tx++) {
+                        final Rectangle b = level.tileBounds(tx, ty);
+                        final BufferedImage tile = getTile(level, tx, ty, scale);
+                        // both edges rounded the same way so neighbouring tiles meet without a seam
+                        g2.drawImage(tile, (int) Math.floor((b.x - vx) * levelZoom), (int) Math.floor((b.y - vy) * levelZoom),
+                                (int) Math.floor((b.x + b.width - vx) * levelZoom), (int) Math.floor((b.y + b.height - vy) * levelZoom),
+                                0, 0, tile.getWidth(), tile.getHeight(), null);
+                    }
+                }
+            } catch (final IOException e) {
+                System.err.println("Unable to draw image tiles: " + e.getMessage());
+            } finally {
+                g2.dispose();
+            }
+            g.setColor(Color.WHITE);
+            g.drawString(name, 6, g.getFontMetrics().getAscent() + 4);
+        }
+
+        private BufferedImage getTile(final TileStore level, final int tx, final int ty, final double scale) throws IOException {
+            final Point key = new Point(tx, ty);
+            BufferedImage tile = cache.get(key);
+            if (tile == null) {
+                tile = level.getTile(tx, ty);
+                if (scale < 1) {
+                    tile = JavaImageViewer.scaleToSize(tile, (int) Math.ceil(tile.getWidth() * scale), (int) Math.ceil(tile.getHeight() * scale));
+                }
+                cache.put(key, tile);
+            }
+            return tile;
+        }
+    }
+
+    ComparisonView(final String firstName, final TileStore first, final String secondName, final TileStore second) {
+        super(new BorderLayout());
+        this.first = first;
+        this.second = second;
+        this.secondName = secondName;
+        left = new Pane(firstName, first);
+        right = new Pane(secondName, second);
+
+        final JPanel panes = new JPanel(new GridLayout(1, 2, 4, 0));
+        panes.add(left);
+        panes.add(right);
+        add(panes, BorderLayout.CENTER);
+
+        final JButton fit = new JButton("Fit");
+        fit.addActionListener(e -> fit());
+        final JButton actualSize = new JButton("100%");
+        actualSize.addActionListener(e -> viewport.zoomAt(1 / viewport.getZoom(), left.getWidth() / 2, left.getHeight() / 2));
+        final JButton zoomIn = new JButton("+");
+        zoomIn.setToolTipText("Zoom in");
+        zoomIn.addActionListener(e -> viewport.zoomAt(ZOOM_STEP, left.getWidth() / 2, left.getHeight() / 2));
+        final JButton zoomOut = new JButton("-");
+        zoomOut.setToolTipText("Zoom out");
+        zoomOut.addActionListener(e -> viewport.zoomAt(1 / ZOOM_STEP, left.getWidth() / 2, left.getHeight() / 2));
+        differenceMode.setToolTipText("Show the absolute difference of the two images");
+        differenceMode.addActionListener(e -> showDifference(differenceMode.isSelected()));
+
+        final JPanel tools = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        tools.add(fit);
+        tools.add(actualSize);
+        tools.add(zoomIn);
+        tools.add(zoomOut);
+        tools.add(differenceMode);
+        add(tools, BorderLayout.PAGE_START);
+        add(status, BorderLayout.PAGE_END);
+
+        viewport.addChangeListener(e -> {
+            left.repaint();
+            right.repaint();
+            updateStatus();
+        });
+        left.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                if (!fitted && left.getWidth() > 0) {
+                    fitted = true;
+                    fit();
+                }
+            }
+        });
+        updateStatus();
+    }
+
+    private Pyramid pyramidOf(final TileStore store) {
+        return pyramids.computeIfAbsent(store, s -> new Pyramid(s, this::repaint));
+    }
+
+    private void fit() {
+        viewport.fit(Math.max(first.getWidth(), second.getWidth()), Math.max(first.getHeight(), second.getHeight()),
+                Math.max(1, left.getWidth()), Math.max(1, left.getHeight()));
+    }
+
+    private void showDifference(final boolean show) {
+        if (!show) {
+            right.setStore(secondName, second);
+            updateStatus();
+            return;
+        }
+        if (difference != null) {
+            right.setStore("Difference", difference);
+            updateStatus();
+            return;
+        }
+        differenceMode.setEnabled(false);
+        status.setText("Computing difference...");
+        final LongAdder changed = new LongAdder();
+        differenceWorker = new SwingWorker<TileStore, Void>() {
+            @Override
+            protected TileStore doInBackground() {
+                return TileStore.difference(first, second, changed);
+            }
+
+            @Override
+            protected void done() {
+                differenceMode.setEnabled(true);
+                try {
+                    difference = get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    System.err.println("Unable to compute difference: " + e.getCause());
+                    differenceMode.setSelected(false);
+                    status.setText("Unable to compute difference");
+                }
+                if (disposed) {
+                    // closed while the difference was computed from the images
+                    dispose();
+                    return;
+                }
+                if (difference == null) {
+                    return;
+                }
+                differenceSummary = String.format(", %,d of %,d pixels differ", changed.sum(),
+                        (long) difference.getWidth() * difference.getHeight());
+                showDifference(differenceMode.isSelected());
+            }
+        };
+        differenceWorker.execute();
+    }
+
+    private void updateStatus() {
+        String text = String.format("%d x %d and %d x %d, zoom %.0f%%", first.getWidth(), first.getHeight(),
+                second.getWidth(), second.getHeight(), viewport.getZoom() * 100);
+        if (differenceMode.isSelected()) {
+            text += differenceSummary;
+        }
+        status.setText(text);
+    }
+
+    /**
+     * Releases the images, once the view is no longer shown.
+     */
+    void dispose() {
+        disposed = true;
+        if (differenceWorker != null && !differenceWorker.isDone()) {
+            return;
+        }
+        for (final Pyramid p : pyramids.values()) {
+            p.release();
+        }
+        close(first);
+        if (second != first) {
+            close(second);
+        }
+        if (difference != null) {
+            close(difference);
+        }
+    }
+
+    private static void close(final TileStore store) {
+        try {
+            store.close();
+        } catch (final IOException e) {
+            System.err.println("Unable to release image tiles: " + e.getMessage());
+        }
+    }
+}
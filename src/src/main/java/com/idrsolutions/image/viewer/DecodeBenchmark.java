@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decodes a corpus of images with every {@link ImageBackend} that can read them and writes the
+ * fastest backend per format to the routing table read by {@link ImageBackends}.
+ * <p>
+ * Usage: {@code DecodeBenchmark <corpus folder> [iterations] [-out <routing file>]}. Every file
+ * is decoded once untimed per backend to warm up, then timed iterations times. Per format and
+ * backend the latency percentiles, megapixels and megabytes of file per second, bytes allocated
+ * per decode and allocation rate (from the thread allocation counter, where the JVM provides one)
+ * and the largest heap growth seen while decoding a single image are reported. A backend that
+ * fails on any file of a format is not chosen for it.
+ */
+final class DecodeBenchmark {
+
+    /**
+     * Measurements of one backend on the files of one format.
+     */
+    private static final class Result {
+        final String format;
+        final ImageBackend backend;
+        final List<Long> times = new ArrayList<>();
+        long pixels;
+        long bytes;
+        long allocated;
+        long peakHeap;
+        int failures;
+
+        Result(final String format, final ImageBackend backend) {
+            this.format = format;
+            this.backend = backend;
+        }
+
+        long percentile(final int p) {
+            final long[] sorted = times.stream().mapToLong(Long::longValue).sorted().toArray();
+            return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+        }
+
+        double totalSeconds() {
+            return Math.max(1e-9, times.stream().mapToLong(Long::longValue).sum() / 1e9);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private static final List<MemoryPoolMXBean> HEAP = heapPools();
+
+    private DecodeBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        File corpus = null;
+        int iterations = 5;
+        File out = ImageBackends.ROUTING_FILE;
+        for (int i = 0; i < args.length; i++) {
+            if ("-out".equals(args[i])) {
+                out = new File(args[++i]);
+            } else if (corpus == null) {
+                corpus = new File(args[i]);
+            } else {
+                iterations = Integer.parseInt(args[i]);
+            }
+        }
+        if (corpus == null || !corpus.isDirectory()) {
+            System.err.println("Usage: DecodeBenchmark <corpus folder> [iterations] [-out <routing file>]");
+            return;
+        }
+
+        final Map<String, List<File>> byFormat = new TreeMap<>();
+        collect(corpus, byFormat);
+        System.out.printf("%d formats, %d iterations, backends %s%n", byFormat.size(), iterations, names());
+        System.out.printf("%-6s %-8s %6s %9s %9s %9s %9s %8s %8s %10s %9s %9s %5s%n", "format", "backend", "files",
+                "p50 ms", "p90 ms", "p99 ms", "max ms", "MP/s", "MB/s", "alloc MB", "alloc/s", "peak MB", "fail");
+
+        final Map<String, String> routing = new TreeMap<>();
+        for (final Map.Entry<String, List<File>> e : byFormat.entrySet()) {
+            Result best = null;
+            for (final ImageBackend backend : ImageBackends.all()) {
+                if (!backend.canRead(e.getKey())) {
+                    continue;
+                }
+                final Result r = measure(e.getKey(), backend, e.getValue(), iterations);
+                report(r, e.getValue().size());
+                if (r.failures == 0 && !r.times.isEmpty() && (best == null || r.percentile(50) < best.percentile(50))) {
+                    best = r;
+                }
+            }
+            if (best != null) {
+                routing.put(e.getKey(), best.backend.getName());
+            }
+        }
+        ImageBackends.saveRouting(routing, out);
+        System.out.println("Routing " + routing + " written to " + out);
+    }
+
+    private static Result measure(final String format, final ImageBackend backend, final List<File> files, final int iterations) {
+        final Result r = new Result(format, backend);
+        for (final File f : files) {
+            try {
+                backend.read(f);
+                for (int i = 0; i < iterations; i++) {
+                    decode(r, backend, f);
+                }
+            } catch (final Exception | OutOfMemoryError ex) {
+                r.failures++;
+                System.err.println(backend.getName() + " failed on " + f.getName() + ": " + ex);
+            }
+        }
+        return r;
+    }
+
+    private static void decode(final Result r, final ImageBackend backend, final File f) throws Exception {
+        HEAP.forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long heapBefore = heapUsed(false);
+        final long allocBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        final BufferedImage image = backend.read(f);
+        final long time = System.nanoTime() - start;
+        final long allocAfter = allocatedBytes();
+        if (image == null) {
+            throw new IOException("no image decoded");
+        }
+        r.times.add(time);
+        r.pixels += (long) image.getWidth() * image.getHeight();
+        r.bytes += f.length();
+        if (allocBefore >= 0) {
+            r.allocated += allocAfter - allocBefore;
+        }
+        // approximate, as a collection during the decode lowers the peak seen
+        r.peakHeap = Math.max(r.peakHeap, heapUsed(true) - heapBefore);
+    }
+
+    private static void report(final Result r, final int files) {
+        final int decodes = Math.max(1, r.times.size());
+        final double seconds = r.totalSeconds();
+        final boolean counted = THREADS != null;
+        System.out.printf("%-6s %-8s %6d %9.1f %9.1f %9.1f %9.1f %8.1f %8.1f %10s %9s %9.1f %5d%n", r.format, r.backend.getName(), files,
+                r.percentile(50) / 1e6, r.percentile(90) / 1e6, r.percentile(99) / 1e6, r.percentile(100) / 1e6,
+                r.pixels / 1e6 / seconds, r.bytes / 1e6 / seconds,
+                counted ? String.format("%.1f", r.allocated / 1e6 / decodes) : "n/a",
+                counted ? String.format("%.0f", r.allocated / 1e6 / seconds) : "n/a",
+                r.peakHeap / 1e6, r.failures);
+    }
+
+    private static void collect(final File folder, final Map<String, List<File>> byFormat) {
+        final File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (final File c : children) {
+            if (c.isDirectory()) {
+                collect(c, byFormat);
+            } else if (c.isFile() && !c.isHidden() && c.getName().lastIndexOf('.') > 0) {
+                byFormat.computeIfAbsent(ImageBackends.getFormat(c), k -> new ArrayList<>()).add(c);
+            }
+        }
+    }
+
+    private static List<String> names() {
+        final List<String> names = new ArrayList<>();
+        ImageBackends.all().forEach(b -> names.add(b.getName()));
+        return names;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        final List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static long heapUsed(final boolean peak) {
+        long used = 0;
+        for (final MemoryPoolMXBean pool : HEAP) {
+            used += peak ? pool.getPeakUsage().getUsed() : pool.getUsage().getUsed();
+        }
+        return used;
+    }
+}
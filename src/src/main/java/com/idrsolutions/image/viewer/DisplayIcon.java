@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.ImageIcon;
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Icon for the displayed frame which paints from a copy in the screen's native format.
+ * <p>
+ * Decoders hand back CMYK, 16 bit or custom colour model images which Java2D would otherwise
+ * convert on every repaint. The first paint converts the frame once into an image compatible with
+ * the component's {@link GraphicsConfiguration} and, for frames that fit, an accelerated
+ * {@link VolatileImage}. A new icon is only created when the processed image changes, so scrolling
+ * and repainting reuse the cached copy.
+ */
+final class DisplayIcon extends ImageIcon {
+
+    private static final long MAX_VOLATILE_PIXELS = 4096L * 4096L;
+
+    private final int transparency;
+    private transient GraphicsConfiguration config;
+    private transient Image compatible;
+    private transient VolatileImage accelerated;
+
+    DisplayIcon(final Image image) {
+        super(image);
+        transparency = image instanceof BufferedImage ? ((BufferedImage) image).getColorModel().getTransparency() : Transparency.TRANSLUCENT;
+    }
+
+    @Override
+    public synchronized void paintIcon(final Component c, final Graphics g, final int x, final int y) {
+        final GraphicsConfiguration gc = c.getGraphicsConfiguration();
+        final int w = getIconWidth();
+        final int h = getIconHeight();
+        if (gc == null || w <= 0 || h <= 0) {
+            super.paintIcon(c, g, x, y);
+            return;
+        }
+        if (gc != config) {
+            flush();
+            config = gc;
+            compatible = toCompatible(gc, w, h);
+        }
+        if ((long) w * h > MAX_VOLATILE_PIXELS) {
+            g.drawImage(compatible, x, y, c);
+            return;
+        }
+        do {
+            final int state = accelerated == null ? VolatileImage.IMAGE_INCOMPATIBLE : accelerated.validate(gc);
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (accelerated != null) {
+                    accelerated.flush();
+                }
+                accelerated = gc.createCompatibleVolatileImage(w, h, transparency);
+                restore();
+            } else if (state == VolatileImage.IMAGE_RESTORED) {
+                restore();
+            }
+            g.drawImage(accelerated, x, y, c);
+        } while (accelerated.contentsLost());
+    }
+
+    private Image toCompatible(final GraphicsConfiguration gc, final int w, final int h) {
+        final Image source = getImage();
+        if (source instanceof BufferedImage && ((BufferedImage) source).getColorModel().equals(gc.getColorModel(transparency))) {
+            return source;
+        }
+        final BufferedImage out = gc.createCompatibleImage(w, h, transparency);
+        final Graphics2D g = out.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private void restore() {
+        final Graphics2D g = accelerated.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(compatible, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Releases the cached copies, which are rebuilt on the next paint.
+     */
+    synchronized void flush() {
+        if (accelerated != null) {
+            accelerated.flush();
+            accelerated = null;
+        }
+        if (compatible != null && compatible != getImage()) {
+            compatible.flush();
+        }
+        compatible = null;
+        config = null;
+    }
+}
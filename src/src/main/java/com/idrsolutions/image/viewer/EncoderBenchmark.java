@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Compares save throughput of the preferred {@link ImageBackend} encoder against {@link ParallelEncoder}
+ * for PNG and TIFF.
+ * <p>
+ * Usage: {@code EncoderBenchmark [image file] [iterations]}. Without a file a 24 MP synthetic image
+ * is used. Throughput is reported as megabytes of raw RGB input per second.
+ */
+final class EncoderBenchmark {
+
+    private interface Writer {
+        void write(BufferedImage image, String format, ByteArrayOutputStream out) throws Exception;
+    }
+
+    private EncoderBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final BufferedImage image = args.length > 0 ? ImageBackends.read(new File(args[0])) : synthetic(6000, 4000);
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final double megabytes = image.getWidth() * (double) image.getHeight() * 3 / (1 << 20);
+
+        System.out.printf("%dx%d, %d iterations, %d cores%n", image.getWidth(), image.getHeight(), iterations,
+                Runtime.getRuntime().availableProcessors());
+        for (final String format : new String[]{"png", "tiff"}) {
+            final ImageBackend backend = ImageBackends.forWriting(format);
+            if (backend != null) {
+                report(backend.getName(), format, image, iterations, megabytes, backend::write);
+            }
+            report("ParallelEncoder", format, image, iterations, megabytes, ParallelEncoder::write);
+        }
+    }
+
+    private static void report(final String name, final String format, final BufferedImage image, final int iterations,
+                               final double megabytes, final Writer writer) throws Exception {
+        final long[] times = new long[iterations];
+        int size = 0;
+        // one untimed run to warm up the JIT
+        writer.write(image, format, new ByteArrayOutputStream());
+        for (int i = 0; i < iterations; i++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+            final long start = System.nanoTime();
+            writer.write(image, format, out);
+            times[i] = System.nanoTime() - start;
+            size = out.size();
+        }
+        Arrays.sort(times);
+        final double median = times[iterations / 2] / 1e6;
+        System.out.printf("%-16s %-5s median %8.1f ms  %7.1f MB/s  %,12d bytes%n", name, format, median,
+                megabytes / (median / 1000), size);
+    }
+
+    private static BufferedImage synthetic(final int width, final int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int noise = (x * 31 + y * 17) * 1103515245 >>> 28;
+                row[x] = ((x * 255 / width + noise) & 0xFF) << 16 | ((y * 255 / height) & 0xFF) << 8 | ((x + y) >> 4 & 0xFF);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import java.awt.AlphaComposite;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Slider dialog for a parameterised filter with a live preview.
+ * <p>
+ * The preview filters only the part of the displayed image visible in the viewer, starting each
+ * time from the already processed image, and pastes the result over a copy of it. Nothing is added
+ * to the processing history until the dialog is confirmed.
+ */
+final class FilterDialog {
+
+    private FilterDialog() {
+    }
+
+    /**
+     * @param label  the label showing base, used to find the visible region
+     * @param base   the output of the processing chain before this filter
+     * @param margin extra pixels each side the filter reads for a given value, such as a blur radius
+     * @param cropToView false to preview on the whole of base, for filters which depend on the image size
+     * @return the chosen value, or null if cancelled, after which base is shown again
+     */
+    static Integer show(final Component parent, final JLabel label, final BufferedImage base, final String title,
+                        final int min, final int max, final int value, final IntUnaryOperator margin,
+                        final IntFunction<UnaryOperator<BufferedImage>> filter, final boolean cropToView,
+                        final Consumer<BufferedImage> display) {
+        final JSlider slider = new JSlider(min, max, value);
+        final JLabel current = new JLabel(String.valueOf(value));
+        final JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(slider, BorderLayout.CENTER);
+        panel.add(current, BorderLayout.EAST);
+
+        final BufferedImage preview = new BufferedImage(base.getWidth(), base.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        paste(preview, base, 0, 0);
+        final int[] shown = {Integer.MIN_VALUE};
+        final Runnable update = () -> {
+            final int v = slider.getValue();
+            current.setText(String.valueOf(v));
+            if (v == shown[0]) {
+                return;
+            }
+            shown[0] = v;
+            final Rectangle visible = cropToView ? visibleRegion(label, base) : new Rectangle(0, 0, base.getWidth(), base.getHeight());
+            if (visible.isEmpty()) {
+                return;
+            }
+            final int m = margin.applyAsInt(v);
+            final Rectangle source = new Rectangle(visible.x - m, visible.y - m, visible.width + m * 2, visible.height + m * 2)
+                    .intersection(new Rectangle(0, 0, base.getWidth(), base.getHeight()));
+            final BufferedImage filtered = filter.apply(v).apply(base.getSubimage(source.x, source.y, source.width, source.height));
+            paste(preview, filtered.getSubimage(visible.x - source.x, visible.y - source.y, visible.width, visible.height), visible.x, visible.y);
+            display.accept(preview);
+        };
+        slider.addChangeListener(e -> update.run());
+        update.run();
+
+        final boolean ok = JOptionPane.showConfirmDialog(parent, panel, title, JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION;
+        if (!ok) {
+            display.accept(base);
+        }
+        return ok ? slider.getValue() : null;
+    }
+
+    /**
+     * @return the part of image visible in label, in image coordinates
+     */
+    private static Rectangle visibleRegion(final JLabel label, final BufferedImage image) {
+        // the viewers centre the icon in the label
+        final int x = Math.max(0, (label.getWidth() - image.getWidth()) / 2);
+        final int y = Math.max(0, (label.getHeight() - image.getHeight()) / 2);
+        final Rectangle visible = label.getVisibleRect();
+        visible.translate(-x, -y);
+        return visible.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    private static void paste(final BufferedImage dest, final BufferedImage src, final int x, final int y) {
+        final Graphics2D g = dest.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, x, y, null);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Parameterised filters for the adjustment dialogs, each returned as a chain step.
+ * <p>
+ * All filters work on packed ARGB rows in parallel and return TYPE_INT_ARGB images.
+ */
+final class Filters {
+
+    private Filters() {
+    }
+
+    /**
+     * @param amount -100 to 100, the percentage of full range added to each colour channel
+     */
+    static UnaryOperator<BufferedImage> brightness(final int amount) {
+        final int delta = amount * 255 / 100;
+        return src -> {
+            final int w = src.getWidth();
+            final int h = src.getHeight();
+            final int[] in = toArgb(src);
+            final int[] out = new int[w * h];
+            IntStream.range(0, h).parallel().forEach(y -> {
+                for (int p = y * w; p < (y + 1) * w; p++) {
+                    final int c = in[p];
+                    out[p] = (c & 0xFF000000) | clamp((c >> 16 & 0xFF) + delta) << 16
+                            | clamp((c >> 8 & 0xFF) + delta) << 8 | clamp((c & 0xFF) + delta);
+                }
+            });
+            return toImage(out, w, h);
+        };
+    }
+
+    /**
+     * Box blur, applied horizontally then vertically.
+     */
+    static UnaryOperator<BufferedImage> blur(final int radius) {
+        return src -> radius <= 0 ? src : toImage(boxBlur(toArgb(src), src.getWidth(), src.getHeight(), radius), src.getWidth(), src.getHeight());
+    }
+
+    /**
+     * Unsharp mask with a one pixel blur.
+     *
+     * @param strength percentage of the detail (image minus blur) added back
+     */
+    static UnaryOperator<BufferedImage> sharpen(final int strength) {
+        return src -> {
+            final int w = src.getWidth();
+            final int h = src.getHeight();
+            final int[] in = toArgb(src);
+            final int[] blurred = boxBlur(in, w, h, 1);
+            final int[] out = new int[w * h];
+            IntStream.range(0, h).parallel().forEach(y -> {
+                for (int p = y * w; p < (y + 1) * w; p++) {
+                    final int c = in[p];
+                    final int b = blurred[p];
+                    out[p] = (c & 0xFF000000)
+                            | clamp(sharpen(c >> 16 & 0xFF, b >> 16 & 0xFF, strength)) << 16
+                            | clamp(sharpen(c >> 8 & 0xFF, b >> 8 & 0xFF, strength)) << 8
+                            | clamp(sharpen(c & 0xFF, b & 0xFF, strength));
+                }
+            });
+            return toImage(out, w, h);
+        };
+    }
+
+    /**
+     * @param level luminance at or above which a pixel becomes white
+     */
+    static UnaryOperator<BufferedImage> threshold(final int level) {
+        return src -> ColorConverter.toBinary(src, ColorConverter.Dither.NONE, level);
+    }
+
+    /**
+     * @param degrees clockwise rotation, a multiple of 90
+     */
+    static UnaryOperator<BufferedImage> rotate(final int degrees) {
+        final int turns = Math.floorMod(degrees / 90, 4);
+        return src -> {
+            if (turns == 0) {
+                return src;
+            }
+            final int w = src.getWidth();
+            final int h = src.getHeight();
+            final int outWidth = turns == 2 ? w : h;
+            final int[] in = toArgb(src);
+            final int[] out = new int[w * h];
+            IntStream.range(0, h).parallel().forEach(y -> {
+                for (int x = 0; x < w; x++) {
+                    final int p;
+                    if (turns == 1) {
+                        p = x * outWidth + h - 1 - y;
+                    } else if (turns == 2) {
+                        p = (h - 1 - y) * outWidth + w - 1 - x;
+                    } else {
+                        p = (w - 1 - x) * outWidth + y;
+                    }
+                    out[p] = in[y * w + x];
+                }
+            });
+            return toImage(out, outWidth, w * h / outWidth);
+        };
+    }
+
+    /**
+     * @param horizontal true to swap left and right, false to swap top and bottom
+     */
+    static UnaryOperator<BufferedImage> mirror(final boolean horizontal) {
+        return src -> {
+            final int w = src.getWidth();
+            final int h = src.getHeight();
+            final int[] in = toArgb(src);
+            final int[] out = new int[w * h];
+            IntStream.range(0, h).parallel().forEach(y -> {
+                final int from = (horizontal ? y : h - 1 - y) * w;
+                for (int x = 0; x < w; x++) {
+                    out[y * w + x] = in[from + (horizontal ? w - 1 - x : x)];
+                }
+            });
+            return toImage(out, w, h);
+        };
+    }
+
+    private static int sharpen(final int value, final int blurred, final int strength) {
+        return value + (value - blurred) * strength / 100;
+    }
+
+    private static int[] boxBlur(final int[] in, final int w, final int h, final int radius) {
+        final int[] tmp = new int[w * h];
+        final int[] out = new int[w * h];
+        IntStream.range(0, h).parallel().forEach(y -> blurLine(in, tmp, y * w, 1, w, radius));
+        IntStream.range(0, w).parallel().forEach(x -> blurLine(tmp, out, x, w, h, radius));
+        return out;
+    }
+
+    /**
+     * Running sum box blur along one row or column, clamping at the edges.
+     */
+    private static void blurLine(final int[] in, final int[] out, final int start, final int step, final int length, final int radius) {
+        final int window = radius * 2 + 1;
+        int a = 0;
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        for (int i = -radius; i <= radius; i++) {
+            final int c = in[start + Math.min(length - 1, Math.max(0, i)) * step];
+            a += c >>> 24;
+            r += c >> 16 & 0xFF;
+            g += c >> 8 & 0xFF;
+            b += c & 0xFF;
+        }
+        for (int i = 0; i < length; i++) {
+            out[start + i * step] = (a / window) << 24 | (r / window) << 16 | (g / window) << 8 | b / window;
+            final int add = in[start + Math.min(length - 1, i + radius + 1) * step];
+            final int remove = in[start + Math.max(0, i - radius) * step];
+            a += (add >>> 24) - (remove >>> 24);
+            r += (add >> 16 & 0xFF) - (remove >> 16 & 0xFF);
+            g += (add >> 8 & 0xFF) - (remove >> 8 & 0xFF);
+            b += (add & 0xFF) - (remove & 0xFF);
+        }
+    }
+
+    private static int clamp(final int v) {
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+
+    private static int[] toArgb(final BufferedImage src) {
+        final int w = src.getWidth();
+        final int[] out = new int[w * src.getHeight()];
+        IntStream.range(0, src.getHeight()).parallel().forEach(y -> {
+            final int[] row = new int[w];
+            ColorConverter.readRow(src, y, row);
+            System.arraycopy(row, 0, out, y * w, w);
+        });
+        return out;
+    }
+
+    private static BufferedImage toImage(final int[] argb, final int w, final int h) {
+        final BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        System.arraycopy(argb, 0, ((DataBufferInt) out.getRaster().getDataBuffer()).getData(), 0, argb.length);
+        return out;
+    }
+}
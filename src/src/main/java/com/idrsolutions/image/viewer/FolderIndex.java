@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Metadata index of the images in a single folder.
+ * <p>
+ * Entries are probed in parallel on a background pool, held in memory for sorting and filtering
+ * and persisted to a small binary file under the user's home directory. A refresh only probes
+ * files whose modification time or length has changed since the last scan.
+ */
+final class FolderIndex {
+
+    static final Comparator<Entry> BY_NAME = Comparator.comparing(e -> e.name.toLowerCase());
+    static final Comparator<Entry> BY_CAPTURE_DATE = Comparator.comparingLong((Entry e) -> e.captureTime).thenComparing(BY_NAME);
+    static final Comparator<Entry> BY_CAMERA = Comparator.comparing((Entry e) -> e.camera).thenComparing(BY_NAME);
+    static final Comparator<Entry> BY_PIXELS = Comparator.comparingLong((Entry e) -> (long) e.width * e.height).thenComparing(BY_NAME);
+    static final Comparator<Entry> BY_FORMAT = Comparator.comparing((Entry e) -> e.format).thenComparing(BY_NAME);
+
+    private static final int MAGIC = 0x4A444958;
+    private static final int VERSION = 1;
+    private static final File INDEX_DIR = new File(System.getProperty("user.home"), ".idrsolutions/viewer/index");
+
+    /**
+     * Reads the metadata of a single image file.
+     */
+    interface Probe {
+        Entry probe(File file) throws Exception;
+    }
+
+    static final class Entry {
+        final String name;
+        final long lastModified;
+        final long length;
+        final int width;
+        final int height;
+        final String format;
+        final long captureTime;
+        final String camera;
+
+        Entry(final File file, final int width, final int height, final String format, final long captureTime, final String camera) {
+            this(file.getName(), file.lastModified(), file.length(), width, height, format, captureTime, camera);
+        }
+
+        private Entry(final String name, final long lastModified, final long length, final int width, final int height,
+                      final String format, final long captureTime, final String camera) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            this.format = format == null ? "" : format;
+            this.captureTime = captureTime;
+            this.camera = camera == null ? "" : camera;
+        }
+
+        boolean isCurrent(final File file) {
+            return lastModified == file.lastModified() && length == file.length();
+        }
+    }
+
+    private final File folder;
+    private final File indexFile;
+    private final Probe probe;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService scanner = Executors.newSingleThreadExecutor(daemon("folder-index"));
+    private volatile boolean dirty;
+
+    FolderIndex(final File folder, final Probe probe) {
+        this.folder = folder.getAbsoluteFile();
+        this.probe = probe;
+        indexFile = new File(INDEX_DIR, Integer.toHexString(this.folder.getPath().hashCode()) + ".idx");
+    }
+
+    File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Loads the persisted index, then re-probes new or modified files on a background thread.
+     *
+     * @param filter     selects the files to index
+     * @param onComplete run after the index has been updated and saved, may be null
+     * @return the background scan
+     */
+    Future<?> refresh(final FileFilter filter, final Runnable onComplete) {
+        return scanner.submit(() -> {
+            if (entries.isEmpty()) {
+                load();
+            }
+            scan(filter);
+            if (dirty) {
+                save();
+            }
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        });
+    }
+
+    private void scan(final FileFilter filter) {
+        final File[] files = folder.listFiles(f -> f.isFile() && filter.accept(f));
+        if (files == null) {
+            return;
+        }
+
+        final Map<String, File> present = new HashMap<>();
+        final List<File> stale = new ArrayList<>();
+        for (final File f : files) {
+            present.put(f.getName(), f);
+            final Entry existing = entries.get(f.getName());
+            if (existing == null || !existing.isCurrent(f)) {
+                stale.add(f);
+            }
+        }
+        if (entries.keySet().retainAll(present.keySet())) {
+            dirty = true;
+        }
+        probe(stale);
+    }
+
+    private void probe(final List<File> stale) {
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemon("folder-probe"));
+        try {
+            for (final File f : stale) {
+                pool.execute(() -> {
+                    try {
+                        final Entry entry = probe.probe(f);
+                        if (entry != null) {
+                            entries.put(entry.name, entry);
+                            dirty = true;
+                        }
+                    } catch (final Exception e) {
+                        System.err.println("Unable to index " + f.getName() + ": " + e.getMessage());
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Re-probes only the changed files of the folder on the background thread, dropping those that
+     * are gone, or rescans the whole folder if it is itself among the changed paths.
+     *
+     * @param changed    paths as reported by {@link FolderWatcher}
+     * @param filter     selects the files to index
+     * @param onComplete run after the index has been updated and saved, may be null
+     * @return the background update
+     */
+    Future<?> update(final Set<File> changed, final FileFilter filter, final Runnable onComplete) {
+        if (changed.contains(folder)) {
+            return refresh(filter, onComplete);
+        }
+        return scanner.submit(() -> {
+            if (entries.isEmpty()) {
+                load();
+            }
+            final List<File> stale = new ArrayList<>();
+            for (final File f : changed) {
+                if (!folder.equals(f.getParentFile())) {
+                    continue;
+                }
+                if (f.isFile() && filter.accept(f)) {
+                    final Entry existing = entries.get(f.getName());
+                    if (existing == null || !existing.isCurrent(f)) {
+                        stale.add(f);
+                    }
+                } else if (entries.remove(f.getName()) != null) {
+                    dirty = true;
+                }
+            }
+            probe(stale);
+            if (dirty) {
+                save();
+            }
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        });
+    }
+
+    /**
+     * Answers a query from memory without touching the image files.
+     *
+     * @param filter entries to keep, may be null for all
+     * @param order  sort order, may be null for {@link #BY_NAME}
+     * @return matching entries in order
+     */
+    List<Entry> query(final Predicate<Entry> filter, final Comparator<Entry> order) {
+        return entries.values().stream()
+                .filter(filter == null ? e -> true : filter)
+                .sorted(order == null ? BY_NAME : order)
+                .collect(Collectors.toList());
+    }
+
+    Entry get(final File file) {
+        return folder.equals(file.getAbsoluteFile().getParentFile()) ? entries.get(file.getName()) : null;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !folder.getPath().equals(in.readUTF())) {
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry e = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                        in.readUTF(), in.readLong(), in.readUTF());
+                entries.put(e.name, e);
+            }
+        } catch (final IOException e) {
+            System.err.println("Unable to load folder index: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(INDEX_DIR.toPath());
+            final File tmp = File.createTempFile("index", ".tmp", INDEX_DIR);
+            final List<Entry> snapshot = new ArrayList<>(entries.values());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(folder.getPath());
+                out.writeInt(snapshot.size());
+                for (final Entry e : snapshot) {
+                    out.writeUTF(e.name);
+                    out.writeLong(e.lastModified);
+                    out.writeLong(e.length);
+                    out.writeInt(e.width);
+                    out.writeInt(e.height);
+                    out.writeUTF(e.format);
+                    out.writeLong(e.captureTime);
+                    out.writeUTF(e.camera);
+                }
+            }
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (final IOException e) {
+            System.err.println("Unable to save folder index: " + e.getMessage());
+        }
+    }
+
+    void close() {
+        scanner.shutdownNow();
+    }
+
+    static ThreadFactory daemon(final String name) {
+        return r -> {
+            final Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
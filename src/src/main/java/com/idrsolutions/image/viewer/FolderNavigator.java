@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Steps through the supported image files in the folder of the current file.
+ */
+final class FolderNavigator {
+
+    private final File folder;
+    private final List<File> files;
+    private int index;
+    private int direction;
+
+    FolderNavigator(final File current, final Predicate<String> isSupported) {
+        folder = current.getAbsoluteFile().getParentFile();
+        final List<File> siblings = list(folder, isSupported);
+        files = siblings.isEmpty() ? Collections.singletonList(current.getAbsoluteFile()) : siblings;
+        index = Math.max(0, files.indexOf(current.getAbsoluteFile()));
+    }
+
+    boolean contains(final File f) {
+        final File abs = f.getAbsoluteFile();
+        if (!folder.equals(abs.getParentFile())) {
+            return false;
+        }
+        final int i = files.indexOf(abs);
+        if (i != -1) {
+            direction = Integer.signum(i - index);
+            index = i;
+        }
+        return i != -1;
+    }
+
+    /**
+     * Moves by delta files and records the direction of travel.
+     *
+     * @return the new current file, or null if there is no file in that direction
+     */
+    File step(final int delta) {
+        final int next = index + delta;
+        if (next < 0 || next >= files.size()) {
+            return null;
+        }
+        direction = Integer.signum(delta);
+        index = next;
+        return files.get(index);
+    }
+
+    File get(final int i) {
+        return i >= 0 && i < files.size() ? files.get(i) : null;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getDirection() {
+        return direction;
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    /**
+     * @return the supported image files in folder sorted by name, empty if it cannot be listed
+     */
+    static List<File> list(final File folder, final Predicate<String> isSupported) {
+        final File[] children = folder.listFiles(f -> f.isFile() && isSupported.test(extension(f)));
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(children, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return Arrays.asList(children);
+    }
+
+    static String extension(final File f) {
+        final String name = f.getName();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reports files created, modified or deleted in the folders a viewer has open.
+ * <p>
+ * Events are gathered until the folders have been quiet for a moment and handed over in one batch,
+ * so a scanner writing a hundred pages causes a handful of refreshes rather than a hundred. A file
+ * is held back for as long as it is still being written, so it is not read half finished, but files
+ * that are done are handed over at least every couple of seconds during a long burst. If the system
+ * drops events, the folder itself is reported, meaning anything in it may have changed.
+ */
+final class FolderWatcher {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("viewer.watch"));
+
+    private static final long QUIET_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Consumer<Set<File>> onChange;
+    private final Map<File, WatchKey> keys = new HashMap<>();
+    private WatchService service;
+
+    /**
+     * @param onChange called on the event dispatch thread with the absolute paths that changed
+     */
+    FolderWatcher(final Consumer<Set<File>> onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * @return true if file, or the folder it is in, is among the changed paths
+     */
+    static boolean affects(final Set<File> changed, final File file) {
+        final File f = file.getAbsoluteFile();
+        return changed.contains(f) || changed.contains(f.getParentFile());
+    }
+
+    /**
+     * @return true if any of the changed paths is folder or in it
+     */
+    static boolean affectsFolder(final Set<File> changed, final File folder) {
+        final File dir = folder.getAbsoluteFile();
+        for (final File f : changed) {
+            if (f.equals(dir) || dir.equals(f.getParentFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Watches exactly these folders, starting and stopping as needed.
+     */
+    void watch(final Collection<File> folders) {
+        if (!ENABLED) {
+            return;
+        }
+        final Set<File> wanted = new HashSet<>();
+        for (final File folder : folders) {
+            wanted.add(folder.getAbsoluteFile());
+        }
+        final Iterator<Map.Entry<File, WatchKey>> it = keys.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<File, WatchKey> e = it.next();
+            if (!wanted.contains(e.getKey())) {
+                e.getValue().cancel();
+                it.remove();
+            }
+        }
+        for (final File folder : wanted) {
+            if (keys.containsKey(folder) || !folder.isDirectory()) {
+                continue;
+            }
+            try {
+                if (service == null) {
+                    service = FileSystems.getDefault().newWatchService();
+                    final Thread thread = new Thread(this::run, "folder-watch");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                keys.put(folder, folder.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+            } catch (final IOException e) {
+                System.err.println("Unable to watch " + folder + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void close() {
+        keys.clear();
+        if (service != null) {
+            try {
+                service.close();
+            } catch (final IOException e) {
+                System.err.println("Unable to stop watching folders: " + e.getMessage());
+            }
+            service = null;
+        }
+    }
+
+    private void run() {
+        final WatchService watching = service;
+        // changed paths and when each last changed
+        final Map<File, Long> pending = new HashMap<>();
+        long first = 0;
+        try {
+            while (true) {
+                final WatchKey key = pending.isEmpty() ? watching.take() : watching.poll(QUIET_NANOS, TimeUnit.NANOSECONDS);
+                final long now = System.nanoTime();
+                if (key != null) {
+                    final File folder = ((Path) key.watchable()).toFile();
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (pending.isEmpty()) {
+                            first = now;
+                        }
+                        pending.put(event.kind() == StandardWatchEventKinds.OVERFLOW ? folder
+                                : new File(folder, event.context().toString()), now);
+                    }
+                    key.reset();
+                }
+                if (!pending.isEmpty() && (key == null || now - first >= MAX_DELAY_NANOS)) {
+                    final Set<File> changed = new HashSet<>();
+                    final Iterator<Map.Entry<File, Long>> it = pending.entrySet().iterator();
+                    while (it.hasNext()) {
+                        final Map.Entry<File, Long> e = it.next();
+                        if (key == null || now - e.getValue() >= QUIET_NANOS) {
+                            changed.add(e.getKey());
+                            it.remove();
+                        }
+                    }
+                    first = now;
+                    if (!changed.isEmpty()) {
+                        SwingUtilities.invokeLater(() -> onChange.accept(changed));
+                    }
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * A decoder and encoder library the viewer can use, found at runtime through
+ * {@link java.util.ServiceLoader} and chosen per format by {@link ImageBackends}.
+ * <p>
+ * Formats are lower case file extensions as returned by {@link ImageBackends#normalize}.
+ * Implementations must be public with a public no argument constructor and be listed in
+ * {@code META-INF/services/com.idrsolutions.image.viewer.ImageBackend}.
+ */
+interface ImageBackend {
+
+    enum Capability {
+        /**
+         * Decodes at reduced resolution without reading the full image into memory.
+         */
+        SUBSAMPLING,
+        /**
+         * Decodes a rectangle of the image.
+         */
+        REGION_DECODE,
+        /**
+         * Reads and appends pages of multi-page files.
+         */
+        MULTI_PAGE,
+        /**
+         * Reads metadata such as EXIF.
+         */
+        METADATA
+    }
+
+    /**
+     * Receives the pages of a multi-page file in order.
+     */
+    interface PageWriter extends Closeable {
+        void append(BufferedImage page) throws Exception;
+    }
+
+    /**
+     * Decodes rectangles of one page of a file, kept open between reads.
+     */
+    interface RegionReader extends Closeable {
+        int getWidth();
+
+        int getHeight();
+
+        BufferedImage read(Rectangle region) throws IOException;
+    }
+
+    String getName();
+
+    Set<Capability> getCapabilities();
+
+    boolean canRead(String format);
+
+    boolean canWrite(String format);
+
+    /**
+     * @return preference for the format when no measured routing applies, higher first
+     */
+    int getPriority(String format);
+
+    BufferedImage read(File file) throws Exception;
+
+    /**
+     * Decodes an image held in memory, such as a thumbnail embedded in another file.
+     */
+    BufferedImage read(byte[] data) throws Exception;
+
+    Rectangle readDimension(File file) throws Exception;
+
+    /**
+     * @return the format name reported by the decoder, or null if unknown
+     */
+    String getFormatName(File file) throws Exception;
+
+    void write(RenderedImage image, String format, OutputStream out) throws Exception;
+
+    /**
+     * Decodes an image to fit within the given size, keeping its aspect ratio. Backends with
+     * {@link Capability#SUBSAMPLING} do so without decoding the full image.
+     */
+    default BufferedImage readScaled(final File file, final int maxWidth, final int maxHeight) throws Exception {
+        final BufferedImage image = read(file);
+        if (image == null) {
+            return null;
+        }
+        final float zoom = JavaImageViewer.calculateFitToScreen(image.getWidth(), image.getHeight(), maxWidth, maxHeight);
+        return JavaImageViewer.scaleToSize(image, Math.round(image.getWidth() * zoom), Math.round(image.getHeight() * zoom));
+    }
+
+    default int getPageCount(final File file) throws Exception {
+        return 1;
+    }
+
+    default BufferedImage readPage(final File file, final int page) throws Exception {
+        if (page != 0) {
+            throw new IOException(getName() + " cannot read page " + page + " of " + file.getName());
+        }
+        return read(file);
+    }
+
+    /**
+     * Opens a page of file for decoding a region at a time, for backends with
+     * {@link Capability#REGION_DECODE}.
+     */
+    default RegionReader openRegions(final File file, final int page) throws Exception {
+        throw new IOException(getName() + " cannot decode regions of " + file.getName());
+    }
+
+    /**
+     * Starts writing a multi-page file, for backends with {@link Capability#MULTI_PAGE}.
+     */
+    default PageWriter openPages(final File target, final String format) throws Exception {
+        throw new IOException(getName() + " cannot write multi-page " + format);
+    }
+}
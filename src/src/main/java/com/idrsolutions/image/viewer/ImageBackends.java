@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeSet;
+
+/**
+ * Registry of the {@link ImageBackend}s on the classpath.
+ * <p>
+ * Each build lists the backends it compiles in its service file, the JDeli one coming from
+ * {@code src/main/resources-jdeli}. A backend whose library is missing at run time fails to load and
+ * is skipped. The {@code viewer.backend} system property restricts the viewer to the named backend.
+ * <p>
+ * Readers are ordered by the routing table written by {@link DecodeBenchmark}, which names the
+ * measured fastest backend per format, then by {@link ImageBackend#getPriority}. The table is read
+ * from {@code viewer.routing} or {@code ~/.idrsolutions/viewer/routing.properties}.
+ */
+final class ImageBackends {
+
+    static final File ROUTING_FILE = new File(System.getProperty("viewer.routing",
+            new File(System.getProperty("user.home"), ".idrsolutions/viewer/routing.properties").getPath()));
+
+    private static final List<ImageBackend> BACKENDS = load();
+    private static final Properties ROUTING = loadRouting();
+
+    private ImageBackends() {
+    }
+
+    private static List<ImageBackend> load() {
+        final String only = System.getProperty("viewer.backend");
+        final List<ImageBackend> backends = new ArrayList<>();
+        final Iterator<ImageBackend> it = ServiceLoader.load(ImageBackend.class, ImageBackends.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+                final ImageBackend backend = it.next();
+                if (only == null || only.equalsIgnoreCase(backend.getName())) {
+                    backends.add(backend);
+                }
+            } catch (final ServiceConfigurationError | LinkageError e) {
+                System.err.println("Image backend unavailable: " + e.getMessage());
+            }
+        }
+        if (backends.isEmpty()) {
+            backends.add(new ImageIOBackend());
+        }
+        return Collections.unmodifiableList(backends);
+    }
+
+    private static Properties loadRouting() {
+        final Properties routing = new Properties();
+        if (ROUTING_FILE.isFile()) {
+            try (InputStream in = Files.newInputStream(ROUTING_FILE.toPath())) {
+                routing.load(in);
+            } catch (final IOException e) {
+                System.err.println("Unable to read backend routing: " + e.getMessage());
+            }
+        }
+        return routing;
+    }
+
+    /**
+     * Replaces the routing table at target with the given format to backend name mapping.
+     */
+    static void saveRouting(final Map<String, String> routing, final File target) throws IOException {
+        final Properties props = new Properties();
+        props.putAll(routing);
+        final File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (OutputStream out = Files.newOutputStream(target.toPath())) {
+            props.store(out, "Fastest decoder per format, written by DecodeBenchmark");
+        }
+    }
+
+    private static int rank(final ImageBackend backend, final String format) {
+        return backend.getName().equalsIgnoreCase(ROUTING.getProperty(format)) ? Integer.MAX_VALUE : backend.getPriority(format);
+    }
+
+    static List<ImageBackend> all() {
+        return BACKENDS;
+    }
+
+    /**
+     * @return the lower case extension used as a format name, with jpeg and tif folded into jpg and tiff
+     */
+    static String normalize(final String format) {
+        final String f = format.toLowerCase(Locale.ROOT);
+        switch (f) {
+            case "jpeg":
+                return "jpg";
+            case "tif":
+                return "tiff";
+            default:
+                return f;
+        }
+    }
+
+    static String getFormat(final File file) {
+        final String name = file.getName();
+        return normalize(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * @return the backends able to read format with all the given capabilities, preferred first
+     */
+    static List<ImageBackend> forReading(final String format, final ImageBackend.Capability... required) {
+        final String f = normalize(format);
+        final List<ImageBackend> candidates = new ArrayList<>();
+        for (final ImageBackend b : BACKENDS) {
+            if (b.canRead(f) && b.getCapabilities().containsAll(Arrays.asList(required))) {
+                candidates.add(b);
+            }
+        }
+        candidates.sort(Comparator.comparingInt((ImageBackend b) -> rank(b, f)).reversed());
+        return candidates;
+    }
+
+    /**
+     * @return the preferred backend to read file, or null if none can
+     */
+    static ImageBackend forFile(final File file, final ImageBackend.Capability... required) {
+        final List<ImageBackend> candidates = forReading(getFormat(file), required);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    static ImageBackend forWriting(final String format, final ImageBackend.Capability... required) {
+        final String f = normalize(format);
+        ImageBackend best = null;
+        for (final ImageBackend b : BACKENDS) {
+            if (b.canWrite(f) && b.getCapabilities().containsAll(Arrays.asList(required))
+                    && (best == null || b.getPriority(f) > best.getPriority(f))) {
+                best = b;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads file with the preferred backend, falling back to the others if it fails.
+     */
+    static BufferedImage read(final File file) throws Exception {
+        return readPage(file, 0);
+    }
+
+    static BufferedImage readPage(final File file, final int page) throws Exception {
+        Exception failure = null;
+        for (final ImageBackend b : forReading(getFormat(file), page == 0 ? new ImageBackend.Capability[0]
+                : new ImageBackend.Capability[]{ImageBackend.Capability.MULTI_PAGE})) {
+            try {
+                final BufferedImage image = b.readPage(file, page);
+                if (image != null) {
+                    return image;
+                }
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new IOException("No backend can read " + file.getName());
+    }
+
+    /**
+     * Reads the size of file with the preferred backend, falling back to the others if it fails.
+     */
+    static Rectangle readDimension(final File file) throws Exception {
+        Exception failure = null;
+        for (final ImageBackend b : forReading(getFormat(file))) {
+            try {
+                final Rectangle dimension = b.readDimension(file);
+                if (dimension != null) {
+                    return dimension;
+                }
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new IOException("No backend can read " + file.getName());
+    }
+
+    /**
+     * @return the format name reported by the preferred backend that reads metadata, or by any
+     * other if none does, or null if none knows it
+     */
+    static String getFormatName(final File file) throws Exception {
+        final List<ImageBackend> candidates = forReading(getFormat(file), ImageBackend.Capability.METADATA);
+        for (final ImageBackend b : forReading(getFormat(file))) {
+            if (!candidates.contains(b)) {
+                candidates.add(b);
+            }
+        }
+        Exception failure = null;
+        for (final ImageBackend b : candidates) {
+            try {
+                final String name = b.getFormatName(file);
+                if (name != null) {
+                    return name;
+                }
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    static BufferedImage readScaled(final File file, final int maxWidth, final int maxHeight) throws Exception {
+        final ImageBackend b = forFile(file);
+        if (b == null) {
+            throw new IOException("No backend can read " + file.getName());
+        }
+        return b.readScaled(file, maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes file reduced to fit the given size with a backend that subsamples while decoding.
+     *
+     * @return the image, or null if no backend can do so cheaply for this format
+     */
+    static BufferedImage readSubsampled(final File file, final int maxWidth, final int maxHeight) throws Exception {
+        final ImageBackend b = forFile(file, ImageBackend.Capability.SUBSAMPLING);
+        return b == null ? null : b.readScaled(file, maxWidth, maxHeight);
+    }
+
+    /**
+     * Decodes an image held in memory, in the given format.
+     */
+    static BufferedImage read(final byte[] data, final String format) throws Exception {
+        Exception failure = null;
+        for (final ImageBackend b : forReading(format)) {
+            try {
+                final BufferedImage image = b.read(data);
+                if (image != null) {
+                    return image;
+                }
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new IOException("No backend can read " + format);
+    }
+
+    /**
+     * Opens a page of file for decoding a region at a time with the preferred backend that can.
+     *
+     * @return the reader, or null if no backend decodes regions of this format
+     */
+    static ImageBackend.RegionReader openRegions(final File file, final int page) throws Exception {
+        Exception failure = null;
+        for (final ImageBackend b : forReading(getFormat(file), page == 0
+                ? new ImageBackend.Capability[]{ImageBackend.Capability.REGION_DECODE}
+                : new ImageBackend.Capability[]{ImageBackend.Capability.REGION_DECODE, ImageBackend.Capability.MULTI_PAGE})) {
+            try {
+                return b.openRegions(file, page);
+            } catch (final Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    static int getPageCount(final File file) throws Exception {
+        final ImageBackend b = forFile(file, ImageBackend.Capability.MULTI_PAGE);
+        return b == null ? 1 : b.getPageCount(file);
+    }
+
+    static String[] getWritableFormats() {
+        final TreeSet<String> formats = new TreeSet<>();
+        for (final String f : new String[]{"bmp", "gif", "heic", "jpg", "jp2", "png", "tiff", "webp"}) {
+            if (forWriting(f) != null) {
+                formats.add(f);
+            }
+        }
+        return formats.toArray(new String[0]);
+    }
+}
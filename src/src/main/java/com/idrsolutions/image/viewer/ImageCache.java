@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide cache of decoded images shared by all viewer windows, accounted against
+ * {@link MemoryBudget#GLOBAL}.
+ * <p>
+ * Entries are keyed by file, modification time and the size they were decoded for, so a changed
+ * file or another window size misses.
+ */
+final class ImageCache {
+
+    /**
+     * Images decoded to fit a window, filled by {@link ImagePrefetcher}.
+     */
+    static final ImageCache SCREEN = new ImageCache();
+
+    /**
+     * Quick previews shown while a large file decodes, filled from {@link PreviewReader}.
+     */
+    static final ImageCache PREVIEWS = new ImageCache();
+
+    /**
+     * Folder grid thumbnails, backed on disk by {@link ThumbnailCache}.
+     */
+    static final ImageCache THUMBNAILS = new ImageCache();
+
+    private final class Entry implements MemoryBudget.Evictable {
+        final List<Object> key;
+        final BufferedImage image;
+
+        Entry(final List<Object> key, final BufferedImage image) {
+            this.key = key;
+            this.image = image;
+        }
+
+        @Override
+        public boolean evict() {
+            entries.remove(key, this);
+            return true;
+        }
+    }
+
+    private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+
+    private ImageCache() {
+    }
+
+    private static List<Object> key(final File file, final int width, final int height) {
+        final File f = file.getAbsoluteFile();
+        return Arrays.asList(f, f.lastModified(), width, height);
+    }
+
+    /**
+     * @return the image cached for file at this size, or null
+     */
+    BufferedImage get(final File file, final int width, final int height) {
+        final Entry e = entries.get(key(file, width, height));
+        if (e == null) {
+            return null;
+        }
+        MemoryBudget.GLOBAL.touch(e);
+        return e.image;
+    }
+
+    void put(final File file, final int width, final int height, final BufferedImage image) {
+        if (image == null) {
+            return;
+        }
+        final Entry e = new Entry(key(file, width, height), image);
+        final Entry previous = entries.put(e.key, e);
+        if (previous != null) {
+            MemoryBudget.GLOBAL.release(previous);
+        }
+        MemoryBudget.GLOBAL.reserve(e, (long) image.getWidth() * image.getHeight() * Math.max(1, image.getColorModel().getPixelSize()) / 8);
+    }
+
+    /**
+     * Drops the entries of files that have changed on disk. They would miss anyway, being keyed by
+     * modification time, but would otherwise hold their memory until the budget reclaimed it.
+     *
+     * @param changed paths as reported by {@link FolderWatcher}
+     */
+    void invalidate(final Set<File> changed) {
+        for (final Entry e : entries.values()) {
+            if (FolderWatcher.affects(changed, (File) e.key.get(0)) && entries.remove(e.key, e)) {
+                MemoryBudget.GLOBAL.release(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * {@link ImageBackend} using the ImageIO readers and writers of the running JRE. Always available.
+ * <p>
+ * Public only so {@link java.util.ServiceLoader} can instantiate it.
+ */
+public final class ImageIOBackend implements ImageBackend {
+
+    private interface ReaderTask<T> {
+        T run(ImageReader reader) throws IOException;
+    }
+
+    public ImageIOBackend() {
+    }
+
+    @Override
+    public String getName() {
+        return "imageio";
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return EnumSet.of(Capability.SUBSAMPLING, Capability.REGION_DECODE, Capability.MULTI_PAGE, Capability.METADATA);
+    }
+
+    @Override
+    public boolean canRead(final String format) {
+        return ImageIO.getImageReadersBySuffix(format).hasNext() || ImageIO.getImageReadersByFormatName(format).hasNext();
+    }
+
+    @Override
+    public boolean canWrite(final String format) {
+        return ImageIO.getImageWritersBySuffix(format).hasNext() || ImageIO.getImageWritersByFormatName(format).hasNext();
+    }
+
+    @Override
+    public int getPriority(final String format) {
+        return 10;
+    }
+
+    @Override
+    public BufferedImage read(final File file) throws IOException {
+        return ImageIO.read(file);
+    }
+
+    @Override
+    public BufferedImage read(final byte[] data) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+
+    @Override
+    public Rectangle readDimension(final File file) throws IOException {
+        return withReader(file, reader -> new Rectangle(reader.getWidth(0), reader.getHeight(0)));
+    }
+
+    @Override
+    public String getFormatName(final File file) throws IOException {
+        return withReader(file, ImageReader::getFormatName);
+    }
+
+    @Override
+    public BufferedImage readScaled(final File file, final int maxWidth, final int maxHeight) throws IOException {
+        return withReader(file, reader -> {
+            final int w = reader.getWidth(0);
+            final int h = reader.getHeight(0);
+            final float zoom = JavaImageViewer.calculateFitToScreen(w, h, maxWidth, maxHeight);
+            final ImageReadParam param = reader.getDefaultReadParam();
+            final int step = Math.max(1, (int) (1 / zoom));
+            param.setSourceSubsampling(step, step, 0, 0);
+            return JavaImageViewer.scaleToSize(reader.read(0, param), (int) (w * zoom), (int) (h * zoom));
+        });
+    }
+
+    @Override
+    public int getPageCount(final File file) throws IOException {
+        return withReader(file, reader -> reader.getNumImages(true));
+    }
+
+    @Override
+    public BufferedImage readPage(final File file, final int page) throws IOException {
+        return withReader(file, reader -> reader.read(page));
+    }
+
+    @Override
+    public RegionReader openRegions(final File file, final int page) throws IOException {
+        final ImageInputStream iis = ImageIO.createImageInputStream(file);
+        final Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+        if (readers == null || !readers.hasNext()) {
+            if (iis != null) {
+                iis.close();
+            }
+            throw new IOException("No ImageIO reader for " + file.getName());
+        }
+        final ImageReader reader = readers.next();
+        try {
+            reader.setInput(iis, false);
+            final int width = reader.getWidth(page);
+            final int height = reader.getHeight(page);
+            return new RegionReader() {
+                @Override
+                public int getWidth() {
+                    return width;
+                }
+
+                @Override
+                public int getHeight() {
+                    return height;
+                }
+
+                @Override
+                public BufferedImage read(final Rectangle region) throws IOException {
+                    final ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(region);
+                    return reader.read(page, param);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.dispose();
+                    iis.close();
+                }
+            };
+        } catch (final IOException | RuntimeException e) {
+            reader.dispose();
+            iis.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(final RenderedImage image, final String format, final OutputStream out) throws IOException {
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+    }
+
+    @Override
+    public PageWriter openPages(final File target, final String format) throws IOException {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(format);
+        while (writers.hasNext()) {
+            final ImageWriter writer = writers.next();
+            if (writer.canWriteSequence()) {
+                Files.deleteIfExists(target.toPath());
+                final ImageOutputStream out = ImageIO.createImageOutputStream(target);
+                writer.setOutput(out);
+                writer.prepareWriteSequence(null);
+                return new PageWriter() {
+                    @Override
+                    public void append(final BufferedImage page) throws IOException {
+                        writer.writeToSequence(new IIOImage(page, null, null), null);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            writer.endWriteSequence();
+                        } finally {
+                            writer.dispose();
+                            out.close();
+                        }
+                    }
+                };
+            }
+            writer.dispose();
+        }
+        throw new IOException("No ImageIO writer for multi-page " + format);
+    }
+
+    private static <T> T withReader(final File file, final ReaderTask<T> task) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            final Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No ImageIO reader for " + file.getName());
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, false);
+                return task.run(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the neighbours of the current file at screen resolution on a background thread.
+ * <p>
+ * The number of files kept around is derived from the part of {@link MemoryBudget#GLOBAL} not
+ * reserved by anything else, and most of the window is placed in the direction the user is moving. Finished decodes go into {@link ImageCache#SCREEN},
+ * so other windows showing the same files reuse them.
+ */
+final class ImagePrefetcher {
+
+    private static final int MAX_WINDOW = 8;
+
+    /**
+     * Decodes a file to fit within the given screen area.
+     */
+    interface Decoder {
+        BufferedImage decode(File file, int width, int height) throws Exception;
+    }
+
+    private static final class Slot {
+        final long lastModified;
+        final int width;
+        final int height;
+        final Future<BufferedImage> image;
+
+        Slot(final File file, final int width, final int height, final Future<BufferedImage> image) {
+            lastModified = file.lastModified();
+            this.width = width;
+            this.height = height;
+            this.image = image;
+        }
+
+        boolean matches(final File file, final int width, final int height) {
+            return lastModified == file.lastModified() && this.width == width && this.height == height;
+        }
+    }
+
+    private final Decoder decoder;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(FolderIndex.daemon("image-prefetch"));
+    private final Map<File, Slot> slots = new HashMap<>();
+
+    ImagePrefetcher(final Decoder decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Returns the prefetched image for file without waiting, so a decode still queued or running
+     * leaves the caller to read the file itself.
+     *
+     * @return the image, or null if it was not prefetched for this screen size or is not ready
+     */
+    BufferedImage get(final File file, final int width, final int height) {
+        final Slot slot;
+        synchronized (slots) {
+            slot = slots.get(file.getAbsoluteFile());
+        }
+        if (slot == null || !slot.matches(file, width, height)) {
+            return ImageCache.SCREEN.get(file, width, height);
+        }
+        if (!slot.image.isDone()) {
+            return null;
+        }
+        try {
+            return slot.image.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final CancellationException e) {
+            // dropped from the window by a later prefetch
+        } catch (final ExecutionException e) {
+            System.err.println("Prefetch failed: " + e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Schedules the files around the navigator's position and drops everything outside the window.
+     */
+    void prefetch(final FolderNavigator navigator, final int width, final int height) {
+        final int window = window(width, height);
+        final int direction = navigator.getDirection();
+        final int ahead;
+        if (direction == 0) {
+            ahead = (window + 1) / 2;
+        } else {
+            ahead = window - window / 4;
+        }
+        final int behind = window - ahead;
+        final int index = navigator.getIndex();
+
+        final List<File> wanted = new ArrayList<>();
+        final int forward = direction < 0 ? -1 : 1;
+        for (int i = 1; i <= Math.max(ahead, behind); i++) {
+            if (i <= ahead) {
+                addIfPresent(wanted, navigator.get(index + forward * i));
+            }
+            if (i <= behind) {
+                addIfPresent(wanted, navigator.get(index - forward * i));
+            }
+        }
+        addIfPresent(wanted, navigator.get(index));
+
+        synchronized (slots) {
+            final Iterator<Map.Entry<File, Slot>> it = slots.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<File, Slot> e = it.next();
+                if (!wanted.contains(e.getKey()) || !e.getValue().matches(e.getKey(), width, height)) {
+                    e.getValue().image.cancel(false);
+                    it.remove();
+                }
+            }
+            for (final File f : wanted) {
+                if (!slots.containsKey(f)) {
+                    final BufferedImage cached = ImageCache.SCREEN.get(f, width, height);
+                    slots.put(f, new Slot(f, width, height, cached != null ? CompletableFuture.completedFuture(cached) : executor.submit(() -> {
+                        final BufferedImage image = decoder.decode(f, width, height);
+                        ImageCache.SCREEN.put(f, width, height, image);
+                        return image;
+                    })));
+                }
+            }
+        }
+    }
+
+    private static void addIfPresent(final List<File> files, final File f) {
+        if (f != null) {
+            files.add(f.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * @return how many files to keep decoded, at most half the budget left after what others have
+     * reserved, counting the decodes this prefetcher already holds as its own
+     */
+    private int window(final int width, final int height) {
+        final long perImage = Math.max(1L, (long) width * height * 4);
+        long held = 0;
+        synchronized (slots) {
+            for (final Slot slot : slots.values()) {
+                if (slot.image.isDone() && !slot.image.isCancelled()) {
+                    held += perImage;
+                }
+            }
+        }
+        final long available = MemoryBudget.GLOBAL.getLimit() - MemoryBudget.GLOBAL.getUsed() + held;
+        return (int) Math.max(1, Math.min(MAX_WINDOW, available / 2 / perImage));
+    }
+
+    /**
+     * Cancels pending decodes and stops the worker. Finished decodes stay in the shared cache.
+     */
+    void shutdown() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    void clear() {
+        synchronized (slots) {
+            slots.values().forEach(s -> s.image.cancel(false));
+            slots.clear();
+        }
+    }
+}
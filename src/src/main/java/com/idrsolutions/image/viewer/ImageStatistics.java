@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Per channel histograms, range, mean and clipped pixel counts of an image.
+ * <p>
+ * Computed in one fork-join pass: the rows (or tiles) are split until each task covers a small
+ * band, each task fills its own histograms and the partial results are merged as the tasks join.
+ */
+final class ImageStatistics {
+
+    static final int RED = 0;
+    static final int GREEN = 1;
+    static final int BLUE = 2;
+    static final int ALPHA = 3;
+    static final int LUMINANCE = 4;
+    static final String[] CHANNEL_NAMES = {"Red", "Green", "Blue", "Alpha", "Luminance"};
+
+    private static final int CHANNELS = 5;
+    private static final int MIN_PIXELS_PER_TASK = 1 << 16;
+
+    final long[][] histogram = new long[CHANNELS][256];
+    final int width;
+    final int height;
+
+    private ImageStatistics(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    static ImageStatistics compute(final BufferedImage image) {
+        final ImageStatistics stats = ForkJoinPool.commonPool().invoke(new RowTask(image, 0, image.getHeight()));
+        return stats.resize(image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Statistics of a tiled image, one task per tile, without copying it onto the heap in full.
+     */
+    static ImageStatistics compute(final TileStore store) {
+        final int tilesX = (store.getWidth() + TileStore.TILE_SIZE - 1) / TileStore.TILE_SIZE;
+        final int tilesY = (store.getHeight() + TileStore.TILE_SIZE - 1) / TileStore.TILE_SIZE;
+        final ImageStatistics stats = ForkJoinPool.commonPool().invoke(new TileTask(store, tilesX, 0, tilesX * tilesY));
+        return stats.resize(store.getWidth(), store.getHeight());
+    }
+
+    long getPixelCount() {
+        long n = 0;
+        for (final long count : histogram[RED]) {
+            n += count;
+        }
+        return n;
+    }
+
+    int getMin(final int channel) {
+        for (int i = 0; i < 256; i++) {
+            if (histogram[channel][i] != 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    int getMax(final int channel) {
+        for (int i = 255; i >= 0; i--) {
+            if (histogram[channel][i] != 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    double getMean(final int channel) {
+        long sum = 0;
+        long n = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += histogram[channel][i] * i;
+            n += histogram[channel][i];
+        }
+        return n == 0 ? 0 : sum / (double) n;
+    }
+
+    /**
+     * @return the number of pixels at 0 in the channel, which have lost shadow detail
+     */
+    long getClippedLow(final int channel) {
+        return histogram[channel][0];
+    }
+
+    /**
+     * @return the number of pixels at 255 in the channel, which have lost highlight detail
+     */
+    long getClippedHigh(final int channel) {
+        return histogram[channel][255];
+    }
+
+    private ImageStatistics resize(final int w, final int h) {
+        final ImageStatistics out = new ImageStatistics(w, h);
+        out.merge(this);
+        return out;
+    }
+
+    private ImageStatistics merge(final ImageStatistics other) {
+        for (int c = 0; c < CHANNELS; c++) {
+            for (int i = 0; i < 256; i++) {
+                histogram[c][i] += other.histogram[c][i];
+            }
+        }
+        return this;
+    }
+
+    private void add(final int[] argb, final int n) {
+        final long[] r = histogram[RED];
+        final long[] g = histogram[GREEN];
+        final long[] b = histogram[BLUE];
+        final long[] a = histogram[ALPHA];
+        final long[] l = histogram[LUMINANCE];
+        for (int i = 0; i < n; i++) {
+            final int c = argb[i];
+            final int red = c >> 16 & 0xFF;
+            final int green = c >> 8 & 0xFF;
+            final int blue = c & 0xFF;
+            r[red]++;
+            g[green]++;
+            b[blue]++;
+            a[c >>> 24]++;
+            l[(red * 77 + green * 150 + blue * 29) >> 8]++;
+        }
+    }
+
+    private static final class RowTask extends RecursiveTask<ImageStatistics> {
+        private final BufferedImage image;
+        private final int from;
+        private final int to;
+
+        RowTask(final BufferedImage image, final int from, final int to) {
+            this.image = image;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ImageStatistics compute() {
+            final int w = image.getWidth();
+            if (to - from <= 1 || (long) (to - from) * w <= MIN_PIXELS_PER_TASK) {
+                final ImageStatistics stats = new ImageStatistics(w, to - from);
+                final int[] argb = new int[w];
+                for (int y = from; y < to; y++) {
+                    ColorConverter.readRow(image, y, argb);
+                    stats.add(argb, w);
+                }
+                return stats;
+            }
+            final int mid = (from + to) >>> 1;
+            final RowTask top = new RowTask(image, from, mid);
+            top.fork();
+            return new RowTask(image, mid, to).compute().merge(top.join());
+        }
+    }
+
+    private static final class TileTask extends RecursiveTask<ImageStatistics> {
+        private final TileStore store;
+        private final int tilesX;
+        private final int from;
+        private final int to;
+
+        TileTask(final TileStore store, final int tilesX, final int from, final int to) {
+            this.store = store;
+            this.tilesX = tilesX;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ImageStatistics compute() {
+            if (to - from < 1) {
+                return new ImageStatistics(0, 0);
+            }
+            if (to - from == 1) {
+                try {
+                    final BufferedImage tile = store.getTile(from % tilesX, from / tilesX);
+                    return ImageStatistics.compute(tile);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            final int mid = (from + to) >>> 1;
+            final TileTask first = new TileTask(store, tilesX, from, mid);
+            first.fork();
+            return new TileTask(store, tilesX, mid, to).compute().merge(first.join());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import com.idrsolutions.image.JDeli;
+import com.idrsolutions.image.encoder.OutputFormat;
+import com.idrsolutions.image.process.ImageProcessingOperations;
+import com.idrsolutions.image.tiff.TiffDecoder;
+import com.idrsolutions.image.tiff.TiffEncoder;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link ImageBackend} using JDeli. Only loaded when JDeli is on the classpath.
+ * <p>
+ * Public only so {@link java.util.ServiceLoader} can instantiate it.
+ */
+public final class JDeliBackend implements ImageBackend {
+
+    public JDeliBackend() {
+        // fail here rather than on first use if JDeli is missing, so the backend is skipped
+        JDeli.class.getName();
+    }
+
+    @Override
+    public String getName() {
+        return "jdeli";
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return EnumSet.of(Capability.MULTI_PAGE, Capability.METADATA);
+    }
+
+    @Override
+    public boolean canRead(final String format) {
+        return JDeli.isImageSupportedForInput(format);
+    }
+
+    @Override
+    public boolean canWrite(final String format) {
+        return toOutputFormat(format) != null;
+    }
+
+    @Override
+    public int getPriority(final String format) {
+        return 20;
+    }
+
+    @Override
+    public BufferedImage read(final File file) throws Exception {
+        return JDeli.read(file);
+    }
+
+    @Override
+    public BufferedImage read(final byte[] data) throws Exception {
+        return JDeli.read(data);
+    }
+
+    @Override
+    public Rectangle readDimension(final File file) throws Exception {
+        return JDeli.readDimension(file);
+    }
+
+    @Override
+    public String getFormatName(final File file) throws Exception {
+        return JDeli.getImageInfo(file).getImageMetadataType().toString();
+    }
+
+    @Override
+    public BufferedImage readScaled(final File file, final int maxWidth, final int maxHeight) throws Exception {
+        final ImageProcessingOperations fit = new ImageProcessingOperations();
+        fit.resizeToFit(maxWidth, maxHeight);
+        return fit.apply(JDeli.read(file));
+    }
+
+    @Override
+    public int getPageCount(final File file) throws Exception {
+        return isTiff(ImageBackends.getFormat(file)) ? new TiffDecoder().getImageCount(file) : 1;
+    }
+
+    @Override
+    public BufferedImage readPage(final File file, final int page) throws Exception {
+        if (isTiff(ImageBackends.getFormat(file))) {
+            return new TiffDecoder().readImageAt(page, file);
+        }
+        return ImageBackend.super.readPage(file, page);
+    }
+
+    @Override
+    public void write(final RenderedImage image, final String format, final OutputStream out) throws Exception {
+        final OutputFormat outputFormat = toOutputFormat(format);
+        if (outputFormat == null) {
+            throw new IOException("JDeli cannot write " + format);
+        }
+        // JDeli encodes a BufferedImage, so any other image is copied onto the heap first
+        final BufferedImage buffered = image instanceof BufferedImage ? (BufferedImage) image
+                : new BufferedImage(image.getColorModel(), image.copyData(null), image.getColorModel().isAlphaPremultiplied(), null);
+        JDeli.write(buffered, outputFormat, out);
+    }
+
+    @Override
+    public PageWriter openPages(final File target, final String format) throws Exception {
+        if (!isTiff(ImageBackends.normalize(format))) {
+            return ImageBackend.super.openPages(target, format);
+        }
+        Files.deleteIfExists(target.toPath());
+        final TiffEncoder encoder = new TiffEncoder();
+        encoder.setCompressed(true);
+        return new PageWriter() {
+            @Override
+            public void append(final BufferedImage page) throws IOException {
+                encoder.append(page, target);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static boolean isTiff(final String format) {
+        return "tiff".equals(format);
+    }
+
+    private static OutputFormat toOutputFormat(final String format) {
+        switch (ImageBackends.normalize(format)) {
+            case "bmp":
+                return OutputFormat.BMP;
+            case "gif":
+                return OutputFormat.GIF;
+            case "heic":
+                return OutputFormat.HEIC;
+            case "jpg":
+                return OutputFormat.JPEG;
+            case "jp2":
+            case "jpeg2000":
+                return OutputFormat.JPEG2000;
+            case "png":
+                return OutputFormat.PNG;
+            case "tiff":
+                return OutputFormat.TIFF;
+            case "webp":
+                return OutputFormat.WEBP;
+            default:
+                return null;
+        }
+    }
+}
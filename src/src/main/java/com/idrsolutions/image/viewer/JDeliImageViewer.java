@@ -4,38 +4,35 @@
 
 package com.idrsolutions.image.viewer;
 
-import com.idrsolutions.image.ImageFormat;
 import com.idrsolutions.image.JDeli;
-import com.idrsolutions.image.encoder.OutputFormat;
 import com.idrsolutions.image.heic.HeicDecoder;
 import com.idrsolutions.image.metadata.Exif;
-import com.idrsolutions.image.metadata.Metadata;
 import com.idrsolutions.image.metadata.ifd.IFDData;
 import com.idrsolutions.image.process.ImageProcessingOperations;
-import com.idrsolutions.image.process.MirrorOperations;
 import com.idrsolutions.image.process.Watermark;
-import com.idrsolutions.image.tiff.TiffDecoder;
 import org.jpedal.utils.LogWriter;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
 import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.JScrollPane;
 import javax.swing.BoxLayout;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
-import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
-import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JTable;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
-import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.BorderLayout;
@@ -43,11 +40,11 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.FileDialog;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridLayout;
 import java.awt.GridBagLayout;
@@ -57,360 +54,142 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.event.ActionEvent;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
-import java.awt.event.ItemEvent;
-import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.awt.geom.Arc2D;
 import java.awt.geom.Line2D;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.TreeMap;
-import java.util.HashMap;
-import java.util.Objects;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
 
-public final class JDeliImageViewer extends JavaImageViewer implements ItemListener {
-
-    private static final String noZoomMessage = "No Image to zoom";
-    private JComboBox<String> zoomCombo;
-    private JButton zoomIn;
-    private JButton zoomOut;
-    private JButton rotateClockwise;
-    private JButton rotateAntiClockwise;
-
-    private JButton metadataMenu;
-    private JMenu processOptions;
-    private JButton blur, brighten, crop, darken, edgeDetection, emboss, gaussianBlur, invertColors, mirrorV, mirrorH, sharpen, stretch, watermark, reset, undo, redo;
-    private JButton toARGB, toBinary, toGrayscale, toIndexed, toRGB;
-    private double zoom;
-    private double scale;
-    private static BufferedImage image;
-    private ImageProcessingOperations operations;
+public final class JDeliImageViewer extends JavaImageViewer {
+
+    /**
+     * The crop, clip and folder state of a tab that is not selected.
+     */
+    private static final class ViewState {
+        int cropOpIndex;
+        int clipOpIndex;
+        File tmp;
+        FolderIndex folderIndex;
+    }
+
+    private final JButton metadataMenu = iconButton("/jdeli/viewer/metadataIcon.png", "Info");
+    private final JButton folderMenu = new JButton("Folder");
+    private JButton blur, brighten, crop, darken, edgeDetection, emboss, gaussianBlur, invertColors, sharpen, stretch, watermark;
     private CroppingLabel cropLabel;
 
     private ClippingLabel clippingLabel;
 
     private Dimension imageLabelSize;
 
-    public Metadata metadata;
     private JFrame info;
+    private JFrame watermarkFrame;
     private int cropOpIndex;
     private int clipOpIndex;
 
     private File tmp;
-    private boolean isMulti;
-    private int imageCount;
-    private int currIm;
+    private FolderIndex folderIndex;
+
+    // pixels around a selection read by the library filters, whose kernel sizes are not exposed
+    private static final int LIBRARY_FILTER_MARGIN = 8;
+    // enough for the headers and EXIF segment that folder indexing reads
+    private static final int PROBE_BYTES = 256 * 1024;
 
     private JDeliImageViewer() {
         super("JDeli Viewer");
-        operations = new ImageProcessingOperations();
-        imageCount = 1;
-        currIm = 0;
     }
 
     public static void main(final String[] args) {
-        final JDeliImageViewer viewer = new JDeliImageViewer();
+        Startup.begin();
         try {
-            viewer.run();
-            if (args.length == 1) {
-                viewer.setAndDisplayFile(new File(args[0]));
-            }
+            launch("jdeli", args, JDeliImageViewer::new);
         } catch (final Exception e) {
             LogWriter.writeLog(e);
         }
     }
 
-    @Override
-    BufferedImage getImage() {
-        try {
-            if (isMulti) {
-                final TiffDecoder tiff = new TiffDecoder();
-                return tiff.readImageAt(currIm, file);
-            }
-            return tmp == null ? JDeli.read(file) : JDeli.read(tmp);
-        } catch (final Exception e) {
-            LogWriter.writeLog("Unable to read file: " + e.getMessage());
-            JOptionPane.showMessageDialog(this, "Unable to read file: " + file.getName());
-            file = null;
-        }
-        return null;
-    }
-
-    @Override
-    protected Rectangle getImageDimension() {
-        try {
-            return JDeli.readDimension(tmp == null ? file : tmp);
-        } catch (final Exception e) {
-            LogWriter.writeLog("Unable to read file for dimensions: " + e.getMessage());
-            return new Rectangle(0, 0);
-        }
-    }
-
-    @Override
-    protected String getImageType() {
-        try {
-            metadata = JDeli.getImageInfo(tmp == null ? file : tmp);
-        } catch (final Exception e) {
-            LogWriter.writeLog("Unable to get image type: " + e.getMessage());
-            return "N/A";
-        }
-        return metadata.getImageMetadataType().toString();
-    }
-
     @Override
     void displayImage() {
-        try {
-            if ("tif".equals(getExtension()) || "tiff".equals(getExtension())) {
-                final TiffDecoder tiff = new TiffDecoder();
-                imageCount = tiff.getImageCount(file);
-                isMulti = imageCount > 1;
-                if (isMulti) {
-                   setUpMulti();
-                }
-            }
-        } catch (final IOException e) {
-            LogWriter.writeLog(e);
-        }
-        resetImage();
-        draw();
-        resetScale();
-        reset();
-
-        imageLabelSize = new Dimension(imageLabel.getWidth(), imageLabel.getHeight());
-        enableMenus(true);
-    }
-
-    private void setUpMulti() {
-        final JButton next = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/next.gif"))));
-        final JButton prev = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/prev.gif"))));
-        final JComboBox<Integer> img = new JComboBox<>(IntStream.iterate(0, x -> x + 1).limit(imageCount).boxed().toArray(Integer[]::new));
-        next.setToolTipText("Next Image");
-        next.addActionListener(a -> {
-            if (currIm < imageCount - 1) {
-                currIm++;
-                draw();
-                img.setSelectedIndex(currIm);
-            }
-        });
-        prev.setToolTipText("Previous Image");
-        prev.addActionListener(a -> {
-            if (currIm > 0) {
-                currIm--;
-                draw();
-                img.setSelectedIndex(currIm);
-            }
-        });
-        img.addItemListener(i -> {
-            if (i.getStateChange() == ItemEvent.SELECTED) {
-                currIm = img.getSelectedIndex();
-                draw();
-            }
-        });
-
-        final JPanel multiButtons = new JPanel();
-        multiButtons.setLayout(new GridLayout(1, 5));
-        multiButtons.setVisible(true);
-        multiButtons.add(prev);
-        multiButtons.add(img);
-        multiButtons.add(next);
-
-        add(multiButtons, BorderLayout.PAGE_END);
-        final JPanel thumbnails = new JPanel();
-        thumbnails.setLayout(new GridLayout(imageCount, 1, 0, 5));
-        thumbnails.setVisible(true);
-        final JScrollPane sp = new JScrollPane(thumbnails);
-        for (int i = 0; i < imageCount; i++) {
-            currIm = i;
-            BufferedImage im = getImage();
-            final ImageProcessingOperations imops = new ImageProcessingOperations();
-            imops.thumbnail(100, 100);
-            im = imops.apply(im);
-            final JButton t = new JButton(String.valueOf(i), new ImageIcon(im));
-            final int finalI = i;
-            t.addActionListener(a -> img.setSelectedIndex(finalI));
-            thumbnails.add(t);
-        }
-        currIm = 0;
-        add(sp, BorderLayout.EAST);
-        pack();
-    }
-
-    void resetImage() {
-        image = Objects.requireNonNull(getImage());
-    }
-
-    void resetScale() {
-        scale = calculateFitToScreen(image.getWidth(), image.getHeight());
+        super.displayImage();
+        indexFolder();
     }
 
     @Override
-    boolean isImageFormatSupported(final String format) {
-        return JDeli.isImageSupportedForInput(format);
+    void imageLoaded() {
+        super.imageLoaded();
+        imageLabelSize = new Dimension(imageLabel.getWidth(), imageLabel.getHeight());
     }
 
     @Override
     void run() throws Exception {
         super.run();
-        final JMenuBar buttonPanel = new JMenuBar();
-        buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.LINE_AXIS));
-
-        processOptions = new JMenu("Process");
-        processOptions.setToolTipText("Process image");
-
-        buttonPanel.add(processOptions);
-        zoomIn = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/zoom.gif"))));
-        zoomIn.setToolTipText("Zoom in");
-        zoomIn.addActionListener(this);
-        zoomOut = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/minimise.gif"))));
-        zoomOut.setToolTipText("Zoom out");
-        zoomOut.addActionListener(this);
-
-        zoomCombo = new JComboBox<>(new String[]{"fit page", "fit height", "fit width", "10%", "20%", "30%", "40%", "50%", "60%", "70%", "80%", "90%", "100%", "110%",
-                "120%", "130%", "140%", "150%", "160%", "170%", "180%", "190%", "200%", "210%", "220%", "230%", "240%", "250%"});
-        zoomCombo.setSelectedIndex(0);
-        zoomCombo.setMaximumSize(zoomCombo.getPreferredSize());
-        zoomCombo.setToolTipText("Change zoom");
-        zoomCombo.addItemListener(this);
-
-        metadataMenu = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/metadataIcon.png"))));
         metadataMenu.setToolTipText("Image info");
         metadataMenu.addActionListener(this);
-        buttonPanel.add(metadataMenu);
-
-
-        rotateAntiClockwise = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/rotateLeft.gif"))));
-        rotateAntiClockwise.setToolTipText("Rotate anticlockwise");
-        rotateAntiClockwise.addActionListener(this);
-        rotateClockwise = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/rotateRight.gif"))));
-        rotateClockwise.setToolTipText("Rotate clockwise");
-        rotateClockwise.addActionListener(this);
-
-
-        rotateAntiClockwise.setBounds(0, 0, 20, 20);
-        rotateClockwise.setBounds(0, 0, 20, 20);
-        buttonPanel.add(rotateAntiClockwise);
-        buttonPanel.add(rotateClockwise);
-
-        zoomIn.setBounds(0, 0, 20, 20);
-        zoomOut.setBounds(0, 0, 20, 20);
-
-        undo = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/undo.png"))));
-        undo.setToolTipText("undo");
-        undo.addActionListener(this);
-        redo = new JButton(new ImageIcon(Objects.requireNonNull(getClass().getResource("/jdeli/viewer/redo.png"))));
-        redo.setToolTipText("redo");
-        redo.addActionListener(this);
-        undo.setBounds(0, 0, 20, 20);
-        redo.setBounds(0, 0, 20, 20);
-        buttonPanel.add(undo);
-        buttonPanel.add(redo);
-
-        reset = new JButton("Reset");
-        reset.setToolTipText("Reset Image");
-        reset.addActionListener(this);
+        buttonBar.add(metadataMenu, 1);
 
-        addProcesses();
-        buttonPanel.add(zoomIn);
-        buttonPanel.add(zoomOut);
-        buttonPanel.add(zoomCombo);
-        buttonPanel.add(reset);
+        folderMenu.setToolTipText("Browse folder metadata");
+        folderMenu.addActionListener(this);
+        buttonBar.add(folderMenu, 4);
 
-        add(buttonPanel, BorderLayout.PAGE_START);
+        cropOpIndex = -1;
+        clipOpIndex = -1;
 
         setJMenuBar(toolBar);
-        setVisible(true);
-
-        if (image == null) {
-            enableMenus(false);
-        }
-        addComponentListener(new ComponentAdapter() {
-            @Override
-            public void componentResized(final ComponentEvent e) {
-                if (e.getComponent() == JDeliImageViewer.this && image != null) {
-                    if (frameWidth != e.getComponent().getWidth() || frameHeight != e.getComponent().getHeight()) {
-                        windowWidth = frameWidth - 20;
-                        windowHeight = frameHeight - 100;
-                        resetScale();
-                        draw();
-                    }
-                }
-            }
-        });
-
+        showFrame();
     }
 
     @Override
-    void draw() {
-        BufferedImage im = Objects.requireNonNull(getImage());
-
-        final ImageProcessingOperations zoomOps = new ImageProcessingOperations();
-        switch (zoomCombo.getSelectedIndex()) {
-            case 0 :
-                zoomOps.resizeToFit(windowWidth, windowHeight);
-                break;
-            case 1 :
-                zoomOps.resizeToHeight(windowHeight);
-                break;
-            case 2 :
-                zoomOps.resizeToWidth(windowWidth);
-                break;
-            default :
-                zoomOps.scale(zoom);
-                break;
+    void startAnimation() {
+        if (tmp == null) {
+            super.startAnimation();
+        } else {
+            stopAnimation();
         }
+    }
 
-        im = zoomOps.apply(im);
-        image = operations.apply(im);
-        imageLabel.setIcon(new ImageIcon(image));
+    @Override
+    File getSourceFile() {
+        return getPageCount() > 1 || tmp == null ? file : tmp;
     }
 
+    @Override
     void enableMenus(final boolean status) {
+        super.enableMenus(status);
         metadataMenu.setEnabled(status);
-        processOptions.setEnabled(status);
-        redo.setEnabled(status);
-        reset.setEnabled(status);
-        rotateAntiClockwise.setEnabled(status);
-        rotateClockwise.setEnabled(status);
-        undo.setEnabled(status);
-        zoomCombo.setEnabled(status);
-        zoomIn.setEnabled(status);
-        zoomOut.setEnabled(status);
+        folderMenu.setEnabled(status);
     }
 
     @Override
     public void actionPerformed(final ActionEvent e) {
         final Object source = e.getSource();
-        if (source == zoomIn) {
-            actionZoomIn();
-        } else if (source == zoomOut) {
-            actionZoomOut();
-        } else if (source == rotateClockwise) {
-            actionRotateClockwise();
-        } else if (source == rotateAntiClockwise) {
-            actonRotateAntiClockwise();
-        } else if (source == undo) {
-           actionUndo();
-            draw();
-        } else if (source == redo) {
-            actionRedo();
-            draw();
-        } else if (source == metadataMenu) {
+        if (source == metadataMenu) {
             showImageInfo();
+        } else if (source == folderMenu) {
+            showFolderIndex();
         } else if (source == blur) {
-            operations.blur();
+            addFilter("blur", ImageProcessingOperations::blur);
             draw();
         } else if (source == brighten) {
-            operations.brighten(10);
+            addFilter("brighten", ops -> ops.brighten(10));
             draw();
         } else if (source == crop) {
             zoomCombo.setSelectedIndex(0);
@@ -418,58 +197,37 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             processOptions.setPopupMenuVisible(false);
             actionCrop();
         } else if (source == darken) {
-            operations.brighten(-10);
+            addFilter("darken", ops -> ops.brighten(-10));
             draw();
         } else if (source == edgeDetection) {
-            operations.edgeDetection();
+            addFilter("edgeDetection", ImageProcessingOperations::edgeDetection);
             draw();
         } else if (source == emboss) {
-            operations.emboss();
+            addFilter("emboss", ImageProcessingOperations::emboss);
             draw();
         } else if (source == gaussianBlur) {
-            operations.gaussianBlur();
+            addFilter("gaussianBlur", ImageProcessingOperations::gaussianBlur);
             draw();
         } else if (source == invertColors) {
-            operations.invertColors();
-            draw();
-        } else if (source == mirrorH) {
-            operations.mirror(MirrorOperations.HORIZONTAL);
-            draw();
-        } else if (source == mirrorV) {
-            operations.mirror(MirrorOperations.VERTICAL);
+            addFilter("invertColors", ImageProcessingOperations::invertColors);
             draw();
         } else if (source == sharpen) {
-            operations.sharpen();
+            addFilter("sharpen", ImageProcessingOperations::sharpen);
             draw();
         } else if (source == stretch) {
-            operations.stretchToFill(windowWidth, windowHeight);
-            draw();
-        } else if (source == toARGB) {
-            operations.toARGB();
-            draw();
-        } else if (source == toBinary) {
-            operations.toBinary();
-            draw();
-        } else if (source == toGrayscale) {
-            operations.toGrayscale();
-            draw();
-        } else if (source == toIndexed) {
-            operations.toIndexed();
-            draw();
-        } else if (source == toRGB) {
-            operations.toRGB();
+            final int w = windowWidth;
+            final int h = windowHeight;
+            addOperation("stretch", ops -> ops.stretchToFill(w, h));
             draw();
         } else if (source == watermark) {
             watermarkPopup();
-        } else if (source == reset) {
-            reset();
-            draw();
         } else {
             super.actionPerformed(e);
         }
     }
 
-    private void actionUndo() {
+    @Override
+    void undo() {
         if (cropOpIndex == 5) {
             try {
                 final File temp;
@@ -498,15 +256,16 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             clipOpIndex--;
             cropOpIndex = cropOpIndex != -1 ? cropOpIndex - 1 : -1;
         } else {
-            if (operations.operationsListSize() != 0) {
-                operations.undo();
+            if (operations.size() != 0) {
+                super.undo();
                 cropOpIndex = cropOpIndex > 0 ? cropOpIndex - 1 : -1;
                 clipOpIndex = clipOpIndex > 0 ? clipOpIndex - 1 : -1;
             }
         }
     }
 
-    private void actionRedo() {
+    @Override
+    void redo() {
         if (cropOpIndex == 4) {
             try {
                 cropLabel.imops.redo().redo();
@@ -528,7 +287,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         } else {
             cropOpIndex = cropOpIndex > 0 ? cropOpIndex + 1 : -1;
             clipOpIndex = clipOpIndex > 0 ? clipOpIndex + 1 : -1;
-            operations.redo();
+            super.redo();
         }
     }
 
@@ -562,6 +321,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         private final Shape[] polyLines;
         private final Point[] points;
         private int pointsNum;
+        private JDeliImageViewer viewer;
         protected ImageProcessingOperations imops;
 
         public ClippingLabel(final JDeliImageViewer v, final shape s) {
@@ -572,6 +332,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         }
 
         protected void clip(final JDeliImageViewer v, final shape s) {
+            viewer = v;
             setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
 
             final boolean[] drawing = {false};
@@ -653,6 +414,21 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
                                 });
                                 popup.add(clipShape);
                                 popup.addSeparator();
+                                final JButton select = new JButton("Use as selection");
+                                select.setToolTipText("Limit filters to inside the shape");
+                                select.addActionListener(ev -> {
+                                    final Shape selected = updateShape(s, new Point(e.getX(), e.getY()), false, true);
+                                    if (selected != null) {
+                                        v.setSelection(new RegionMask(selected, v.image.getWidth(), v.image.getHeight()));
+                                    }
+                                    setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+                                    popup.setVisible(false);
+                                    removeMouseListener(this);
+                                    v.draw();
+                                    v.imageLabel.remove(v.clippingLabel);
+                                });
+                                popup.add(select);
+                                popup.addSeparator();
                                 final JButton cancel = new JButton("Cancel");
                                 cancel.addActionListener(ev -> {
                                     setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
@@ -741,8 +517,8 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             final File tmp;
             try {
                 tmp = File.createTempFile("tmp", '.' + format);
-                image = imops.apply(image);
-                JDeli.write(image, format, tmp);
+                viewer.image = imops.apply(viewer.image);
+                JDeli.write(viewer.image, format, tmp);
             } catch (final Exception ex) {
                 throw new RuntimeException(ex);
             }
@@ -754,6 +530,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
 
     static class CroppingLabel extends JLabel {
         private Rectangle rec;
+        private JDeliImageViewer viewer;
         protected ImageProcessingOperations imops;
 
         public CroppingLabel(final JDeliImageViewer v) {
@@ -761,6 +538,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         }
 
         protected void crop(final JDeliImageViewer viewer) {
+            this.viewer = viewer;
             setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
             final Point[] start = {null};
             final Dimension[] d = {null};
@@ -804,8 +582,8 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
                     if (rec.width != 0 || rec.height != 0) {
                         final int x, y;
                         final Rectangle r = viewer.getImageDimension();
-                        final int imageh = image.getHeight();
-                        final int imagew = image.getWidth();
+                        final int imageh = viewer.image.getHeight();
+                        final int imagew = viewer.image.getWidth();
 
                         if (cropSelected[0] && d[0] == null && start[0] != null) {
                             if (e.getX() > e.getComponent().getWidth() || e.getY() > e.getComponent().getHeight()) {
@@ -849,8 +627,8 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         protected File applyCrop(final File prevFile) throws Exception {
             final String format = prevFile.getName().substring(prevFile.getName().lastIndexOf('.') + 1);
             final File newFile = File.createTempFile("tmp", '.' + format);
-            image = imops.apply(image);
-            JDeli.write(image, format, newFile);
+            viewer.image = imops.apply(viewer.image);
+            JDeli.write(viewer.image, format, newFile);
             return newFile;
         }
 
@@ -886,106 +664,8 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         clipOpIndex = clipOpIndex == 5 ? clipOpIndex + 1 : clipOpIndex;
     }
 
-    private void actonRotateAntiClockwise() {
-        if (image != null) {
-            operations.rotate(270);
-            final int temp = windowWidth;
-            windowWidth = windowHeight;
-            windowHeight = temp;
-            draw();
-        } else {
-            JOptionPane.showMessageDialog(this, "No Image to rotate");
-        }
-    }
-
-    private void actionRotateClockwise() {
-        if (image != null) {
-            operations.rotate(90);
-            final int temp = windowWidth;
-            windowWidth = windowHeight;
-            windowHeight = temp;
-            draw();
-        } else {
-            JOptionPane.showMessageDialog(this, "No Image to rotate");
-        }
-    }
-
-    private void actionZoomOut() {
-        if (image != null) {
-            final int selectedIndex = zoomCombo.getSelectedIndex();
-            if (selectedIndex < 3) {
-                final double s = (Math.round(scale * 10) * 10);
-                zoomCombo.setSelectedItem((int) s + "%");
-                if (s > 250) {
-                    zoomCombo.setSelectedItem("250%");
-                } else if ((s / 100) > scale) {
-
-                    zoomCombo.setSelectedIndex(zoomCombo.getSelectedIndex() - 1);
-                }
-            } else if (selectedIndex > 3 && selectedIndex < zoomCombo.getItemCount() - 3) {
-                zoomCombo.setSelectedIndex(selectedIndex - 1);
-                zoom = parseZoomCombo();
-            }
-            draw();
-        } else {
-            JOptionPane.showMessageDialog(this, noZoomMessage);
-        }
-    }
-
-    private void actionZoomIn() {
-        if (image != null) {
-            final int selectedIndex = zoomCombo.getSelectedIndex();
-            if (selectedIndex < zoomCombo.getItemCount() - 1) {
-                if (selectedIndex < 3) {
-                    final double s = (Math.round(scale * 10) * 10);
-                    zoomCombo.setSelectedItem((int) s + "%");
-                    if (s < 10) {
-                        zoomCombo.setSelectedItem("10%");
-                    }
-                    if ((s / 100) < scale) {
-                        zoomCombo.setSelectedIndex(zoomCombo.getSelectedIndex() + 1);
-                    }
-                } else {
-                    zoomCombo.setSelectedIndex(selectedIndex + 1);
-                    zoom = parseZoomCombo();
-                }
-            }
-            draw();
-        } else {
-            JOptionPane.showMessageDialog(this, noZoomMessage);
-
-        }
-    }
-
     @Override
-    public void itemStateChanged(final ItemEvent e) {
-        if (e.getSource() == zoomCombo && e.getStateChange() == ItemEvent.SELECTED) {
-            if (image != null) {
-                if (zoomCombo.getSelectedIndex() > 3) {
-                    zoom = parseZoomCombo();
-                }
-                draw();
-            } else {
-                zoomCombo.removeItemListener(this);
-                JOptionPane.showMessageDialog(this, noZoomMessage);
-                zoomCombo.setSelectedIndex(0);
-                zoomCombo.addItemListener(this);
-            }
-        }
-    }
-
-    private double parseZoomCombo() {
-        final String zoom = Objects.requireNonNull(zoomCombo.getSelectedItem()).toString();
-        return (Double.parseDouble(zoom.substring(0, zoom.lastIndexOf('%'))) / 100);
-    }
-
-    private void addProcesses() {
-
-        final JMenu colorSpaceChange = new JMenu("change colorSpace");
-        colorSpaceChange.setBorderPainted(true);
-        processOptions.add(colorSpaceChange);
-        processOptions.addSeparator();
-
+    void addLibraryProcesses(final JMenu menu) {
         blur = new JButton("Blur");
         brighten = new JButton("Brighten");
         crop = new JButton("Crop");
@@ -994,47 +674,20 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         emboss = new JButton("Emboss");
         gaussianBlur = new JButton("Gaussian Blur");
         invertColors = new JButton("Invert Colors");
-        mirrorH = new JButton("Mirror Horizontally");
-        mirrorV = new JButton("Mirror Vertically");
-        final JMenu mirror = new JMenu("mirror");
-        colorSpaceChange.setBorderPainted(true);
-        processOptions.add(mirror);
-        processOptions.addSeparator();
         sharpen = new JButton("Sharpen");
         stretch = new JButton("Stretch");
         watermark = new JButton("Watermark");
 
-        toARGB = new JButton("To ARGB");
-        toBinary = new JButton("To Binary");
-        toGrayscale = new JButton("To Grayscale");
-        toIndexed = new JButton("To Indexed");
-        toRGB = new JButton("To RGB");
-
-
-        final JButton[] colorSpace = {toARGB, toBinary, toGrayscale, toIndexed, toRGB};
-        for (final JButton b : colorSpace) {
-            b.addActionListener(this);
-            colorSpaceChange.add(b);
-            colorSpaceChange.addSeparator();
-        }
-
-        mirrorH.addActionListener(this);
-        mirror.add(mirrorH);
-        colorSpaceChange.addSeparator();
-
-        mirrorV.addActionListener(this);
-        mirror.add(mirrorV);
-        colorSpaceChange.addSeparator();
-
         final JButton[] processes = {blur, brighten, crop, darken, edgeDetection, emboss, gaussianBlur, invertColors, sharpen, stretch, watermark};
         for (final JButton b : processes) {
             b.addActionListener(this);
-            processOptions.add(b);
-            processOptions.addSeparator();
+            menu.add(b);
+            menu.addSeparator();
         }
 
         final JMenu clip = new JMenu("Clip");
-        processOptions.add(clip);
+        menu.add(clip);
+        menu.addSeparator();
 
         final JButton rec = new JButton("Rectangle");
         rec.addActionListener(e -> {
@@ -1062,8 +715,6 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             processOptions.setPopupMenuVisible(false);
         });
         clip.add(polygon);
-        cropOpIndex = -1;
-        clipOpIndex = -1;
     }
 
     void showImageInfo() {
@@ -1071,37 +722,11 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             info = new JFrame("Image Info");
             final JPanel infoPanel = new JPanel();
             infoPanel.setLayout(new GridLayout(22, 2, 1, 1));
-            Exif exif = null;
             try (FileImageInputStream fios = new FileImageInputStream(tmp == null ? file : tmp)) {
                 final byte[] data = new byte[(int) fios.length()];
                 fios.read(data);
-                metadata = JDeli.getImageInfo(data);
-                final TreeMap<String, String> metadataMap = (TreeMap<String, String>) metadata.toMap();
-                if (getImageType().equals(ImageFormat.HEIC_IMAGE.toString())) {
-                    final HeicDecoder hdec = new HeicDecoder();
-                    exif = hdec.readExif(data);
-                } else if (getImageType().equals(ImageFormat.JPEG_IMAGE.toString())) {
-                    if (data[0] == 'E' && data[1] == 'x' && data[2] == 'i' && data[3] == 'f') {
-                        final byte[] edata = new byte[data.length - 6];
-                        System.arraycopy(data, 6, edata, 0, edata.length);
-                        exif = Exif.readExif(edata);
-                    }
-                } else if (getImageType().equals(ImageFormat.TIFF_IMAGE.toString())) {
-                    exif = Exif.readExif(data);
-                }
-                if (exif != null && !exif.getIfdDataList().isEmpty()) {
-                    final List<IFDData> exifList = exif.getIfdDataList();
-                    String remainingexif = exifList.get(0).toString();
-                    int p = 0;
-                    while (p < remainingexif.length() && remainingexif.contains("\n")) {
-                        if (!remainingexif.startsWith("imageHeight") && !remainingexif.startsWith("imageWidth")) {
-                            metadataMap.put(remainingexif.substring(0, remainingexif.indexOf(':') + 1), remainingexif.substring(remainingexif.indexOf(':') + 1, remainingexif.indexOf('\n')));
-                        }
-                        p = remainingexif.indexOf('\n') + 1;
-                        remainingexif = remainingexif.substring(p);
-
-                    }
-                }
+                final TreeMap<String, String> metadataMap = (TreeMap<String, String>) JDeli.getImageInfo(data).toMap();
+                metadataMap.putAll(readExifFields(data, ImageBackends.getFormat(getSourceFile())));
 
                 metadataMap.forEach((k, v) -> {
                     final JTextField text = new JTextField("   " + k + " : " + v);
@@ -1120,8 +745,302 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         info.setVisible(true);
     }
 
+    /**
+     * @param format file format as given by {@link ImageBackends#getFormat}
+     */
+    static TreeMap<String, String> readExifFields(final byte[] data, final String format) throws Exception {
+        final TreeMap<String, String> fields = new TreeMap<>();
+        Exif exif = null;
+        switch (format) {
+            case "heic":
+                exif = new HeicDecoder().readExif(data);
+                break;
+            case "jpg":
+                final byte[] edata = findJpegExif(data);
+                if (edata != null) {
+                    exif = Exif.readExif(edata);
+                }
+                break;
+            case "tiff":
+                exif = Exif.readExif(data);
+                break;
+            default:
+                break;
+        }
+        if (exif != null && !exif.getIfdDataList().isEmpty()) {
+            final List<IFDData> exifList = exif.getIfdDataList();
+            String remainingexif = exifList.get(0).toString();
+            int p = 0;
+            while (p < remainingexif.length() && remainingexif.contains("\n")) {
+                if (!remainingexif.startsWith("imageHeight") && !remainingexif.startsWith("imageWidth")) {
+                    fields.put(remainingexif.substring(0, remainingexif.indexOf(':') + 1), remainingexif.substring(remainingexif.indexOf(':') + 1, remainingexif.indexOf('\n')));
+                }
+                p = remainingexif.indexOf('\n') + 1;
+                remainingexif = remainingexif.substring(p);
+
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Walks the JPEG markers to the APP1 segment holding EXIF.
+     *
+     * @return the TIFF structure of the EXIF data, or null if there is none
+     */
+    static byte[] findJpegExif(final byte[] data) {
+        if (data.length < 4 || (data[0] & 0xff) != 0xFF || (data[1] & 0xff) != 0xD8) {
+            return null;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xff) == 0xFF) {
+            final int marker = data[pos + 1] & 0xff;
+            if (marker == 0xDA || marker == 0xD9) {
+                // image data follows, and EXIF comes before it
+                break;
+            }
+            final int length = (data[pos + 2] & 0xff) << 8 | data[pos + 3] & 0xff;
+            final int start = pos + 4;
+            if (marker == 0xE1 && length >= 8 && start + length - 2 <= data.length
+                    && data[start] == 'E' && data[start + 1] == 'x' && data[start + 2] == 'i' && data[start + 3] == 'f') {
+                return Arrays.copyOfRange(data, start + 6, start + length - 2);
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    static FolderIndex.Entry probe(final File f) throws Exception {
+        // the metadata, EXIF and dimensions all come from the start of the file, read once
+        final byte[] header = new byte[(int) Math.min(f.length(), PROBE_BYTES)];
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            int n = 0;
+            while (n < header.length) {
+                final int read = in.read(header, n, header.length - n);
+                if (read < 0) {
+                    break;
+                }
+                n += read;
+            }
+        }
+        final String format = ImageBackends.getFormat(f);
+        String type = ImageBackends.getFormatName(f);
+        if (type == null) {
+            type = format.toUpperCase(Locale.ROOT);
+        }
+        Rectangle dimension = readDimension(header);
+        if (dimension == null) {
+            // not sized from the header by ImageIO, such as HEIC or WebP
+            dimension = ImageBackends.readDimension(f);
+        }
+
+        long captureTime = 0;
+        String camera = null;
+        Map<String, String> fields;
+        try {
+            fields = readExifFields(header, format);
+        } catch (final Exception e) {
+            // EXIF beyond the part of the file read, or malformed
+            fields = new TreeMap<>();
+        }
+        for (final Map.Entry<String, String> field : fields.entrySet()) {
+            final String key = field.getKey().toLowerCase();
+            final String value = field.getValue().trim();
+            if (key.startsWith("datetimeoriginal") || (captureTime == 0 && key.startsWith("datetime"))) {
+                try {
+                    captureTime = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss").parse(value).getTime();
+                } catch (final ParseException e) {
+                    LogWriter.writeLog("Unable to parse capture date: " + value);
+                }
+            } else if (key.startsWith("model")) {
+                camera = value;
+            }
+        }
+        return new FolderIndex.Entry(f, dimension.width, dimension.height, type, captureTime, camera);
+    }
+
+    /**
+     * @return the size given in the header of the image, or null if no ImageIO reader can tell
+     */
+    private static Rectangle readDimension(final byte[] header) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(header))) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (readers.hasNext()) {
+                final ImageReader reader = readers.next();
+                try {
+                    reader.setInput(iis, true, true);
+                    return new Rectangle(reader.getWidth(0), reader.getHeight(0));
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            // header too short or not understood
+        }
+        return null;
+    }
+
+    private void indexFolder() {
+        final File folder = file.getAbsoluteFile().getParentFile();
+        if (folderIndex == null || !folderIndex.getFolder().equals(folder)) {
+            if (folderIndex != null) {
+                folderIndex.close();
+            }
+            folderIndex = new FolderIndex(folder, JDeliImageViewer::probe);
+        }
+        folderIndex.refresh(this::isIndexable, null);
+    }
+
+    private boolean isIndexable(final File f) {
+        return isImageFormatSupported(f.getName().substring(f.getName().lastIndexOf('.') + 1));
+    }
+
+    @Override
+    void filesChanged(final Set<File> changed) {
+        super.filesChanged(changed);
+        updateFolderIndex(folderIndex, changed);
+    }
+
+    @Override
+    void viewStateFilesChanged(final Object viewState, final Set<File> changed) {
+        updateFolderIndex(((ViewState) viewState).folderIndex, changed);
+    }
+
+    private void updateFolderIndex(final FolderIndex index, final Set<File> changed) {
+        if (index != null && FolderWatcher.affectsFolder(changed, index.getFolder())) {
+            index.update(changed, this::isIndexable, null);
+        }
+    }
+
+    @Override
+    boolean hasEdits() {
+        return tmp != null || super.hasEdits();
+    }
+
+    private void showFolderIndex() {
+        if (folderIndex == null) {
+            JOptionPane.showMessageDialog(this, "No folder indexed");
+            return;
+        }
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        final DefaultTableModel model = new DefaultTableModel(new String[]{"Name", "Format", "Width", "Height", "Captured", "Camera"}, 0) {
+            @Override
+            public Class<?> getColumnClass(final int column) {
+                return column == 2 || column == 3 ? Integer.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(final int row, final int column) {
+                return false;
+            }
+        };
+        final JTable table = new JTable(model);
+        final TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(final MouseEvent e) {
+                if (e.getClickCount() == 2 && table.getSelectedRow() != -1) {
+                    final String name = (String) model.getValueAt(table.convertRowIndexToModel(table.getSelectedRow()), 0);
+                    setAndDisplayFile(new File(folderIndex.getFolder(), name));
+                }
+            }
+        });
+
+        final JTextField text = new JTextField(12);
+        text.setToolTipText("Name, format or camera contains");
+        final JTextField from = new JTextField(8);
+        from.setToolTipText("Captured on or after, yyyy-mm-dd");
+        final JTextField to = new JTextField(8);
+        to.setToolTipText("Captured on or before, yyyy-mm-dd");
+        final JTextField minSize = new JTextField(4);
+        minSize.setToolTipText("At least this many megapixels");
+        final JComboBox<String> order = new JComboBox<>(new String[]{"Captured", "Name", "Camera", "Size", "Format"});
+        final List<Comparator<FolderIndex.Entry>> orders = Arrays.asList(FolderIndex.BY_CAPTURE_DATE, FolderIndex.BY_NAME,
+                FolderIndex.BY_CAMERA, FolderIndex.BY_PIXELS, FolderIndex.BY_FORMAT);
+
+        final JFrame folderFrame = new JFrame();
+        final Runnable update = () -> {
+            final Predicate<FolderIndex.Entry> filter;
+            try {
+                filter = indexFilter(text.getText(), from.getText(), to.getText(), minSize.getText());
+            } catch (final ParseException | NumberFormatException e) {
+                JOptionPane.showMessageDialog(folderFrame, "Dates are yyyy-mm-dd and sizes are in megapixels");
+                return;
+            }
+            final List<FolderIndex.Entry> entries = folderIndex.query(filter, orders.get(order.getSelectedIndex()));
+            model.setRowCount(0);
+            for (final FolderIndex.Entry e : entries) {
+                model.addRow(new Object[]{e.name, e.format, e.width, e.height,
+                        e.captureTime == 0 ? "" : dateFormat.format(new Date(e.captureTime)), e.camera});
+            }
+            // shown in the order asked for until a column is clicked
+            sorter.setSortKeys(null);
+            folderFrame.setTitle("Folder - " + folderIndex.getFolder().getName() + " (" + entries.size() + " of " + folderIndex.size() + " images)");
+        };
+        for (final JTextField field : new JTextField[]{text, from, to, minSize}) {
+            field.addActionListener(a -> update.run());
+        }
+        order.addActionListener(a -> update.run());
+        update.run();
+
+        final JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        filters.add(new JLabel("Find"));
+        filters.add(text);
+        filters.add(new JLabel("Captured"));
+        filters.add(from);
+        filters.add(new JLabel("to"));
+        filters.add(to);
+        filters.add(new JLabel("Min MP"));
+        filters.add(minSize);
+        filters.add(new JLabel("Order"));
+        filters.add(order);
+
+        folderFrame.add(filters, BorderLayout.PAGE_START);
+        folderFrame.add(new JScrollPane(table), BorderLayout.CENTER);
+        folderFrame.setLocation(250, 250);
+        folderFrame.setSize(800, 500);
+        folderFrame.setVisible(true);
+    }
+
+    /**
+     * Builds a folder index query from the filter fields, each ignored when blank.
+     */
+    static Predicate<FolderIndex.Entry> indexFilter(final String text, final String from, final String to, final String minMegapixels)
+            throws ParseException {
+        Predicate<FolderIndex.Entry> filter = e -> true;
+        if (!text.trim().isEmpty()) {
+            final String t = text.trim().toLowerCase();
+            filter = filter.and(e -> e.name.toLowerCase().contains(t) || e.format.toLowerCase().contains(t)
+                    || e.camera.toLowerCase().contains(t));
+        }
+        final SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd");
+        day.setLenient(false);
+        if (!from.trim().isEmpty()) {
+            final long start = day.parse(from.trim()).getTime();
+            filter = filter.and(e -> e.captureTime != 0 && e.captureTime >= start);
+        }
+        if (!to.trim().isEmpty()) {
+            final long end = day.parse(to.trim()).getTime() + TimeUnit.DAYS.toMillis(1);
+            filter = filter.and(e -> e.captureTime != 0 && e.captureTime < end);
+        }
+        if (!minMegapixels.trim().isEmpty()) {
+            final double pixels = Double.parseDouble(minMegapixels.trim()) * 1_000_000;
+            filter = filter.and(e -> (double) e.width * e.height >= pixels);
+        }
+        return filter;
+    }
+
     @SuppressWarnings({"OverlyLongMethod", "ConstantConditions", "java:S138"})
     private void watermarkPopup() {
+        if (watermarkFrame == null) {
+            watermarkFrame = createWatermarkFrame();
+        }
+        watermarkFrame.setVisible(true);
+        watermarkFrame.toFront();
+    }
+
+    private JFrame createWatermarkFrame() {
         final JFrame watermarkFrame = new JFrame("Watermark");
         final JPanel popup = new JPanel();
         popup.setLayout(new BoxLayout(popup, BoxLayout.Y_AXIS));
@@ -1141,8 +1060,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         final JLabel tColorLabel = new JLabel("Color : ");
         final JColorChooser tColor = new JColorChooser();
         final JLabel fontLabel = new JLabel("Font : ");
-        final GraphicsEnvironment gEnv = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        final JComboBox<String> font = new JComboBox<>(gEnv.getAvailableFontFamilyNames());
+        final JComboBox<String> font = new JComboBox<>(Startup.getFontFamilies());
         final JLabel fontSizeLabel = new JLabel("Font Size : ");
 
         final JComboBox<Integer> fontSize = new JComboBox<>(IntStream.iterate(10, i -> i + 2).limit(96).boxed().toArray(Integer[]::new));
@@ -1185,11 +1103,7 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         final JPanel shapePanel = new JPanel();
         shapePanel.setLayout(new GridBagLayout());
         final JLabel shapeLabel = new JLabel("Shape : ");
-        final HashMap<String, Shape> shapeHashMap = new HashMap<>();
-        shapeHashMap.put("Tall Rectangle", new Rectangle(0, 0, 80, 100));
-        shapeHashMap.put("Wide Rectangle", new Rectangle(0, 0, 100, 80));
-        shapeHashMap.put("Square", new Rectangle(0, 0, 100, 100));
-        shapeHashMap.put("Triangle", new Polygon(new int[]{0, 100, 200}, new int[]{100, 0, 100}, 3));
+        final Map<String, Shape> shapeHashMap = WatermarkLayer.SHAPES;
         final JComboBox<String> shape = new JComboBox<>(shapeHashMap.keySet().toArray(new String[4]));
         final JLabel colorLabel = new JLabel("Color : ");
         final JColorChooser sColor = new JColorChooser();
@@ -1198,19 +1112,9 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         final JLabel shapePropLabel = new JLabel("Properties : ");
         final JComboBox<Watermark.WatermarkShapeProperties> properties = new JComboBox<>(Watermark.WatermarkShapeProperties.values());
         final JLabel shapeAlphaLabel = new JLabel("Alpha Composite : ");
-        final HashMap<String, AlphaComposite> alphaHashMap = new HashMap<>();
-        final Field[] fields = AlphaComposite.class.getDeclaredFields();
-        for (final Field f : fields) {
-            final int modifiers = f.getModifiers();
-            if (Modifier.isStatic(modifiers) && f.getType() == AlphaComposite.class) {
-                try {
-                    alphaHashMap.put(f.toString().substring(f.toString().lastIndexOf('.') + 1), (AlphaComposite) f.get(AlphaComposite.class));
-                } catch (final IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }
-        final JComboBox<String> alpha = new JComboBox<>(alphaHashMap.keySet().toArray(new String[12]));
+        final Map<String, AlphaComposite> alphaHashMap = Startup.getAlphaComposites();
+        final JComboBox<String> alpha = new JComboBox<>(alphaHashMap.keySet().toArray(new String[0]));
+        alpha.setSelectedItem("SrcOver");
 
         // shape panel layout
         c.gridx = 0;
@@ -1244,7 +1148,8 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         imagePanel.setLayout(new GridBagLayout());
         final JLabel fileLabel = new JLabel("Image file : ");
         final JButton selectFile = new JButton("Select File");
-        final String[] filename = {""};
+        // decoded once when chosen, so applying or redrawing never goes back to the file
+        final BufferedImage[] markImage = {null};
         selectFile.addActionListener(e -> {
             final FileDialog imFile = new FileDialog(watermarkFrame, "File chooser");
             imFile.setMode(FileDialog.LOAD);
@@ -1253,14 +1158,21 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
             imFile.setVisible(true);
 
             if (imFile.getDirectory() != null && imFile.getFile() != null) {
-                filename[0] = imFile.getDirectory() + imFile.getFile();
-                fileLabel.setText("Image file : " + filename[0]);
+                final File markFile = new File(imFile.getDirectory(), imFile.getFile());
+                try {
+                    markImage[0] = JDeli.read(markFile);
+                    fileLabel.setText("Image file : " + markFile.getPath());
+                } catch (final Exception ex) {
+                    LogWriter.writeLog("Unable to read watermark image: " + ex.getMessage());
+                    JOptionPane.showMessageDialog(watermarkFrame, "Cannot read image file");
+                }
             }
         });
         final JLabel imPropLabel = new JLabel("Image position : ");
         final JComboBox<Watermark.WatermarkPosition> imPos = new JComboBox<>(Watermark.WatermarkPosition.values());
         final JLabel imAlphaLabel = new JLabel("Alpha Composite : ");
-        final JComboBox<String> imAlpha = new JComboBox<>(alphaHashMap.keySet().toArray(new String[12]));
+        final JComboBox<String> imAlpha = new JComboBox<>(alphaHashMap.keySet().toArray(new String[0]));
+        imAlpha.setSelectedItem("SrcOver");
 
         // image panel layout
         c.gridx = 0;
@@ -1289,15 +1201,25 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         applyWatermark.addActionListener(e -> {
             if (tabsPane.getSelectedComponent() == textPanel) {
                 final Font f = new Font((String) font.getSelectedItem(), fontStyle.getSelectedIndex(), (Integer) fontSize.getSelectedItem());
-                operations.watermark(text.getText(), tColor.getColor(), f, (Watermark.WatermarkPosition) tPos.getSelectedItem());
+                final String t = text.getText();
+                final Color colour = tColor.getColor();
+                final Watermark.WatermarkPosition pos = (Watermark.WatermarkPosition) tPos.getSelectedItem();
+                addWatermark(WatermarkLayer.text(t, colour, f, pos));
             } else if (tabsPane.getSelectedComponent() == shapePanel) {
-                operations.watermark(shapeHashMap.get(shape.getSelectedItem()), sColor.getColor(), (Watermark.WatermarkPosition) sPos.getSelectedItem(), alphaHashMap.get(alpha.getSelectedItem()), (Watermark.WatermarkShapeProperties) properties.getSelectedItem());
+                final Shape ws = shapeHashMap.get(shape.getSelectedItem());
+                final Color colour = sColor.getColor();
+                final Watermark.WatermarkPosition pos = (Watermark.WatermarkPosition) sPos.getSelectedItem();
+                final AlphaComposite a = alphaHashMap.get(alpha.getSelectedItem());
+                final Watermark.WatermarkShapeProperties props = (Watermark.WatermarkShapeProperties) properties.getSelectedItem();
+                addWatermark(WatermarkLayer.shape(ws, colour, pos, a, props));
             } else if (tabsPane.getSelectedComponent() == imagePanel) {
-                try {
-                    operations.watermark(JDeli.read(new File(filename[0])), (Watermark.WatermarkPosition) imPos.getSelectedItem(), alphaHashMap.get(imAlpha.getSelectedItem()));
-                } catch (final Exception ex) {
-                    JOptionPane.showMessageDialog(popup, "Cannot read image file");
+                if (markImage[0] == null) {
+                    JOptionPane.showMessageDialog(popup, "Please select an image file");
+                    return;
                 }
+                final Watermark.WatermarkPosition pos = (Watermark.WatermarkPosition) imPos.getSelectedItem();
+                final AlphaComposite a = alphaHashMap.get(imAlpha.getSelectedItem());
+                addWatermark(WatermarkLayer.image(markImage[0], pos, a));
             }
             draw();
         });
@@ -1305,46 +1227,101 @@ public final class JDeliImageViewer extends JavaImageViewer implements ItemListe
         watermarkFrame.add(popup, BorderLayout.PAGE_START);
         watermarkFrame.setLocation(250, 250);
         watermarkFrame.setSize(650, 650);
-        watermarkFrame.setVisible(true);
+        return watermarkFrame;
+    }
+
+    /**
+     * Adds a single JDeli operation to the processing chain.
+     */
+    private void addOperation(final String key, final Consumer<ImageProcessingOperations> op) {
+        final ImageProcessingOperations single = new ImageProcessingOperations();
+        op.accept(single);
+        operations.add(key, single::apply);
+    }
+
+    /**
+     * Adds a single JDeli filter to the processing chain, limited to the selection if there is one.
+     */
+    private void addFilter(final String key, final Consumer<ImageProcessingOperations> op) {
+        final ImageProcessingOperations single = new ImageProcessingOperations();
+        op.accept(single);
+        operations.add(key, selection == null ? single::apply : selection.mask(single::apply, LIBRARY_FILTER_MARGIN));
+    }
+
+    /**
+     * Adds a watermark to the processing chain. Its layer is rendered once per image size, so
+     * redraws only composite it.
+     */
+    private void addWatermark(final WatermarkLayer layer) {
+        operations.add(layer.getKey(), layer::apply);
     }
 
-    private void reset() {
-        operations = new ImageProcessingOperations();
-        zoom = scale;
+    @Override
+    void reset() {
+        super.reset();
         if (cropLabel != null) {
             imageLabel.remove(cropLabel);
         }
         if (clippingLabel != null) {
             imageLabel.remove(clippingLabel);
         }
-        zoomCombo.setSelectedIndex(0);
-        if (tmp != null) {
-            try {
-                Files.delete(tmp.toPath());
-            } catch (final IOException e) {
-                throw new RuntimeException(e);
-            }
-            tmp = null;
+        discardTmp();
+        info = null;
+    }
+
+    @Override
+    Object saveViewState() {
+        if (cropLabel != null) {
+            imageLabel.remove(cropLabel);
         }
+        if (clippingLabel != null) {
+            imageLabel.remove(clippingLabel);
+        }
+        final ViewState state = new ViewState();
+        state.cropOpIndex = cropOpIndex;
+        state.clipOpIndex = clipOpIndex;
+        state.tmp = tmp;
+        state.folderIndex = folderIndex;
+        return state;
+    }
+
+    @Override
+    void restoreViewState(final Object viewState) {
+        final ViewState state = viewState != null ? (ViewState) viewState : new ViewState();
+        if (viewState == null) {
+            state.cropOpIndex = -1;
+            state.clipOpIndex = -1;
+        }
+        cropOpIndex = state.cropOpIndex;
+        clipOpIndex = state.clipOpIndex;
+        tmp = state.tmp;
+        folderIndex = state.folderIndex;
         info = null;
     }
 
     @Override
-    protected void saveFile() {
-        final JFileChooser fileChooser = new JFileChooser();
-        Arrays.stream(OutputFormat.values()).forEach(x -> fileChooser.addChoosableFileFilter(new FileNameExtensionFilter(x.name(), x.name())));
-        fileChooser.setFileHidingEnabled(true);
-        fileChooser.setAcceptAllFileFilterUsed(false);
-        fileChooser.showSaveDialog(this);
-        try {
-            if (fileChooser.getSelectedFile() != null) {
-                final String format = fileChooser.getFileFilter().getDescription();
-                JDeli.write(image, format, new File(fileChooser.getSelectedFile().getAbsolutePath() + '.' + format));
-                JOptionPane.showMessageDialog(this, "File saved");
+    void disposeViewState(final Object viewState) {
+        final ViewState state = (ViewState) viewState;
+        if (state.folderIndex != null) {
+            state.folderIndex.close();
+        }
+        if (state.tmp != null) {
+            try {
+                Files.delete(state.tmp.toPath());
+            } catch (final IOException e) {
+                LogWriter.writeLog("Unable to delete " + state.tmp + ": " + e.getMessage());
             }
-        } catch (final Exception e) {
-            JOptionPane.showMessageDialog(this, "Cannot save file");
+        }
+    }
 
+    private void discardTmp() {
+        if (tmp != null) {
+            try {
+                Files.delete(tmp.toPath());
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+            tmp = null;
         }
     }
 }
@@ -6,7 +6,12 @@ package com.idrsolutions.image.viewer;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -15,51 +20,193 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.KeyStroke;
+import javax.swing.ProgressMonitor;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+abstract class JavaImageViewer extends JFrame implements ActionListener, ItemListener {
+
+    /**
+     * An open tab. The viewer's fields hold the state of the selected tab, the others keep theirs
+     * here, and the image label moves to whichever tab is selected.
+     */
+    private static final class Document {
+        final JPanel panel = new JPanel(new BorderLayout());
+        File file;
+        FolderNavigator navigator;
+        TileStore tiles;
+        Object tilesKey;
+        Object viewState;
+        // the file changed on disk while the tab was in the background
+        boolean changed;
+        ProcessingChain operations = new ProcessingChain();
+        RegionMask selection;
+        double zoom;
+        double scale;
+        int zoomIndex;
+        int page;
+        int pageCount = 1;
+        JPanel pageControls;
+        JScrollPane pageThumbnails;
+        SwingWorker<Void, Integer> thumbnailLoader;
+        int windowWidth = frameWidth - 20;
+        int windowHeight = frameHeight - 100;
+    }
+
+    /**
+     * Shows the latest animation frame straight from the player's buffer.
+     */
+    private static final class FrameIcon implements Icon {
+        private BufferedImage frame;
+
+        @Override
+        public void paintIcon(final Component c, final Graphics g, final int x, final int y) {
+            g.drawImage(frame, x, y, null);
+        }
 
-abstract class JavaImageViewer extends JFrame implements ActionListener {
+        @Override
+        public int getIconWidth() {
+            return frame.getWidth();
+        }
+
+        @Override
+        public int getIconHeight() {
+            return frame.getHeight();
+        }
+    }
 
     JLabel imageLabel;
     private JMenuItem docProperties;
     private JMenuItem open;
+    private JMenuItem openInTab;
+    private JMenuItem closeTab;
     private JMenuItem close;
+    private JMenuItem nextImage;
+    private JMenuItem previousImage;
+    private JMenuItem pauseAnimation;
+    private JMenuItem folderGrid;
 
     private JMenuItem save;
     private JMenuItem about;
     private JMenuItem visitWebsite;
     private JMenuItem openTutorials;
+    private JFrame aboutWindow;
     private final String viewerTitle;
 
     final JMenuBar toolBar = new JMenuBar();
+    final JMenuBar buttonBar = new JMenuBar();
     static int frameWidth;
     static int frameHeight;
 
     int windowWidth, windowHeight;
 
-
+    private static final String noZoomMessage = "No Image to zoom";
+    private static final int THUMBNAIL_SIZE = 100;
+    JMenu processOptions;
+    JComboBox<String> zoomCombo;
+    private JButton zoomIn;
+    private JButton zoomOut;
+    private JButton rotateClockwise;
+    private JButton rotateAntiClockwise;
+    private JButton statsMenu;
+    private JButton compareMenu;
+    private JButton undo, redo, reset;
+    private JButton toARGB, toBinary, toGrayscale, toIndexed, toRGB, mirrorH, mirrorV;
+    private JButton clearSelection;
+    private JFrame statsFrame;
+    private StatisticsPanel statsPanel;
+    private SwingWorker<ImageStatistics, Void> statsWorker;
+
+    // the image as shown, and the processing, zoom and page state of the selected tab
+    BufferedImage image;
+    ProcessingChain operations = new ProcessingChain();
+    RegionMask selection;
+    double zoom;
+    double scale;
+    private int page;
+    private int pageCount = 1;
+    private JPanel pageControls;
+    private JScrollPane pageThumbnails;
+    private SwingWorker<Void, Integer> thumbnailLoader;
+
+    private static final long PREVIEW_THRESHOLD = 1 << 20;
+    private static final int PREVIEW_SIZE = 256;
 
     File file;
+    private FolderNavigator navigator;
+    private ImagePrefetcher prefetcher;
+    private TileStore tiles;
+    // decoded off the EDT for the next draw, with the source and page it is of
+    private BufferedImage decoded;
+    private Object decodedKey;
+    private volatile SwingWorker<Object, Void> loader;
+    private Object tilesKey;
     private static final String VERSION;
+    private static final Set<JavaImageViewer> OPEN = ConcurrentHashMap.newKeySet();
+
+    private final List<Document> documents = new ArrayList<>();
+    private Document current;
+    private JTabbedPane tabs;
+    private JScrollPane scrollPane;
+    private AnimationPlayer animation;
+    private final FrameIcon frameIcon = new FrameIcon();
+    private ThumbnailGrid grid;
+    private JScrollPane gridPane;
+    private final FolderWatcher watcher = new FolderWatcher(this::filesChanged);
 
     static {
-        final Dimension screenDimension = Toolkit.getDefaultToolkit().getScreenSize();
+        // headless tools such as the class data sharing training still use the scaling helpers
+        final Dimension screenDimension = GraphicsEnvironment.isHeadless() ? new Dimension(1920, 1080)
+                : Toolkit.getDefaultToolkit().getScreenSize();
         frameWidth = (int) (screenDimension.getWidth() / 1.5);
         frameHeight = (int) (screenDimension.getHeight() / 1.5);
         final Properties props = new Properties();
@@ -113,7 +260,7 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
         imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
         imageLabel.setVerticalAlignment(SwingConstants.CENTER);
 
-        final JScrollPane scrollPane = new JScrollPane(imageLabel);
+        scrollPane = new JScrollPane(imageLabel);
 
         scrollPane.setSize(600, 600);
         toolBar.setBounds(0, 0, 400, 20);
@@ -124,10 +271,28 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
         docProperties.addActionListener(this);
         open = new JMenuItem("Open");
         open.addActionListener(this);
+        openInTab = new JMenuItem("Open in New Tab");
+        openInTab.setAccelerator(menuShortcut(KeyEvent.VK_T));
+        openInTab.addActionListener(this);
+        closeTab = new JMenuItem("Close Tab");
+        closeTab.setAccelerator(menuShortcut(KeyEvent.VK_W));
+        closeTab.addActionListener(this);
         close = new JMenuItem("Close");
         close.addActionListener(this);
         save = new JMenuItem("Save");
         save.addActionListener(this);
+        nextImage = new JMenuItem("Next Image");
+        nextImage.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, 0));
+        nextImage.addActionListener(this);
+        previousImage = new JMenuItem("Previous Image");
+        previousImage.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, 0));
+        previousImage.addActionListener(this);
+        pauseAnimation = new JMenuItem("Pause Animation");
+        pauseAnimation.setEnabled(false);
+        pauseAnimation.addActionListener(this);
+        folderGrid = new JMenuItem("Folder Grid");
+        folderGrid.setAccelerator(menuShortcut(KeyEvent.VK_G));
+        folderGrid.addActionListener(this);
 
         about = new JMenuItem("About");
         about.addActionListener(this);
@@ -145,11 +310,18 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
         toolBar.add(helpMenu);
 
         fileMenu.add(open);
+        fileMenu.add(openInTab);
+        fileMenu.addSeparator();
+        fileMenu.add(previousImage);
+        fileMenu.add(nextImage);
+        fileMenu.add(pauseAnimation);
+        fileMenu.add(folderGrid);
         fileMenu.addSeparator();
         fileMenu.add(save);
         fileMenu.addSeparator();
         fileMenu.add(docProperties);
         fileMenu.addSeparator();
+        fileMenu.add(closeTab);
         fileMenu.add(close);
 
         helpMenu.add(about);
@@ -158,8 +330,497 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
         helpMenu.addSeparator();
         helpMenu.add(openTutorials);
 
+        current = new Document();
+        current.panel.add(scrollPane, BorderLayout.CENTER);
+        documents.add(current);
+        tabs = new JTabbedPane();
+        tabs.addTab("New", current.panel);
+        tabs.addChangeListener(e -> selectDocument(tabs.getSelectedIndex()));
+
         window.setLayout(new BorderLayout());
-        window.add(scrollPane, BorderLayout.CENTER);
+        window.add(tabs, BorderLayout.CENTER);
+
+        buttonBar.setLayout(new BoxLayout(buttonBar, BoxLayout.LINE_AXIS));
+        processOptions = new JMenu("Process");
+        processOptions.setToolTipText("Process image");
+        // the process menu is only built when first opened
+        processOptions.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(final MenuEvent e) {
+                if (toARGB == null) {
+                    addProcesses();
+                }
+            }
+
+            @Override
+            public void menuDeselected(final MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(final MenuEvent e) {
+            }
+        });
+        buttonBar.add(processOptions);
+
+        statsMenu = new JButton("Stats");
+        statsMenu.setToolTipText("Histogram and statistics");
+        statsMenu.addActionListener(this);
+        buttonBar.add(statsMenu);
+
+        compareMenu = new JButton("Compare");
+        compareMenu.setToolTipText("Compare with the original or another image");
+        compareMenu.addActionListener(this);
+        buttonBar.add(compareMenu);
+
+        rotateAntiClockwise = iconButton("/jdeli/viewer/rotateLeft.gif", "Left");
+        rotateAntiClockwise.setToolTipText("Rotate anticlockwise");
+        rotateAntiClockwise.addActionListener(this);
+        buttonBar.add(rotateAntiClockwise);
+        rotateClockwise = iconButton("/jdeli/viewer/rotateRight.gif", "Right");
+        rotateClockwise.setToolTipText("Rotate clockwise");
+        rotateClockwise.addActionListener(this);
+        buttonBar.add(rotateClockwise);
+
+        undo = iconButton("/jdeli/viewer/undo.png", "Undo");
+        undo.setToolTipText("undo");
+        undo.addActionListener(this);
+        buttonBar.add(undo);
+        redo = iconButton("/jdeli/viewer/redo.png", "Redo");
+        redo.setToolTipText("redo");
+        redo.addActionListener(this);
+        buttonBar.add(redo);
+
+        zoomIn = iconButton("/jdeli/viewer/zoom.gif", "+");
+        zoomIn.setToolTipText("Zoom in");
+        zoomIn.addActionListener(this);
+        buttonBar.add(zoomIn);
+        zoomOut = iconButton("/jdeli/viewer/minimise.gif", "-");
+        zoomOut.setToolTipText("Zoom out");
+        zoomOut.addActionListener(this);
+        buttonBar.add(zoomOut);
+
+        zoomCombo = new JComboBox<>(new String[]{"fit page", "fit height", "fit width", "10%", "20%", "30%", "40%", "50%", "60%", "70%", "80%", "90%", "100%", "110%",
+                "120%", "130%", "140%", "150%", "160%", "170%", "180%", "190%", "200%", "210%", "220%", "230%", "240%", "250%"});
+        zoomCombo.setSelectedIndex(0);
+        zoomCombo.setMaximumSize(zoomCombo.getPreferredSize());
+        zoomCombo.setToolTipText("Change zoom");
+        zoomCombo.addItemListener(this);
+        buttonBar.add(zoomCombo);
+
+        reset = new JButton("Reset");
+        reset.setToolTipText("Reset Image");
+        reset.addActionListener(this);
+        buttonBar.add(reset);
+
+        add(buttonBar, BorderLayout.PAGE_START);
+        enableMenus(false);
+
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                if (e.getComponent() == JavaImageViewer.this && image != null) {
+                    if (frameWidth != e.getComponent().getWidth() || frameHeight != e.getComponent().getHeight()) {
+                        windowWidth = frameWidth - 20;
+                        windowHeight = frameHeight - 100;
+                        resetScale();
+                        draw();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return a button whose icon is loaded in the background, so the frame can show without
+     * waiting, or which shows text if the build does not include the icon
+     */
+    final JButton iconButton(final String resource, final String text) {
+        final JButton button = new JButton();
+        final URL url = getClass().getResource(resource);
+        if (url == null) {
+            button.setText(text);
+        } else {
+            CompletableFuture.supplyAsync(() -> new ImageIcon(url))
+                    .thenAccept(icon -> SwingUtilities.invokeLater(() -> button.setIcon(icon)));
+        }
+        return button;
+    }
+
+    void enableMenus(final boolean status) {
+        statsMenu.setEnabled(status);
+        compareMenu.setEnabled(status);
+        processOptions.setEnabled(status);
+        redo.setEnabled(status);
+        reset.setEnabled(status);
+        rotateAntiClockwise.setEnabled(status);
+        rotateClockwise.setEnabled(status);
+        undo.setEnabled(status);
+        zoomCombo.setEnabled(status);
+        zoomIn.setEnabled(status);
+        zoomOut.setEnabled(status);
+    }
+
+    /**
+     * @return the panel of the selected tab, for controls that belong to its document
+     */
+    JPanel getDocumentPanel() {
+        return current.panel;
+    }
+
+    /**
+     * Opens file in a new tab, or in the selected tab if it is empty.
+     */
+    void openInNewTab(final File file) {
+        if (this.file != null) {
+            final Document d = new Document();
+            documents.add(d);
+            tabs.addTab(file.getName(), d.panel);
+            tabs.setSelectedComponent(d.panel);
+        }
+        setAndDisplayFile(file);
+    }
+
+    private void selectDocument(final int index) {
+        if (index < 0 || index >= documents.size() || documents.get(index) == current) {
+            return;
+        }
+        hideGrid();
+        storeDocument();
+        current = documents.get(index);
+        file = current.file;
+        navigator = current.navigator;
+        tiles = current.tiles;
+        tilesKey = current.tilesKey;
+        current.panel.add(scrollPane, BorderLayout.CENTER);
+        operations = current.operations;
+        setSelection(current.selection);
+        zoom = current.zoom;
+        scale = current.scale;
+        setZoomIndex(current.zoomIndex);
+        page = current.page;
+        pageCount = current.pageCount;
+        pageControls = current.pageControls;
+        pageThumbnails = current.pageThumbnails;
+        thumbnailLoader = current.thumbnailLoader;
+        windowWidth = current.windowWidth;
+        windowHeight = current.windowHeight;
+        // redrawn from the processing chain's cache
+        image = null;
+        enableMenus(file != null);
+        restoreViewState(current.viewState);
+        current.viewState = null;
+        if (file == null) {
+            setDisplayImage(null);
+            setTitle(viewerTitle);
+        } else {
+            setTitle(file.getName() + " - " + viewerTitle);
+            if (current.changed) {
+                current.changed = false;
+                fileChanged();
+            } else {
+                // served from the processing and image caches unless the budget has taken them back
+                draw();
+                startAnimation();
+            }
+            prefetchNeighbours();
+        }
+        current.panel.revalidate();
+    }
+
+    /**
+     * Moves the selected tab's state into its document and lets the memory budget reclaim its
+     * cached images before those of the tab being shown.
+     */
+    private void storeDocument() {
+        stopAnimation();
+        current.file = file;
+        current.navigator = navigator;
+        current.tiles = tiles;
+        current.tilesKey = tilesKey;
+        current.operations = operations;
+        current.selection = selection;
+        current.zoom = zoom;
+        current.scale = scale;
+        current.zoomIndex = zoomCombo.getSelectedIndex();
+        current.page = page;
+        current.pageCount = pageCount;
+        current.pageControls = pageControls;
+        current.pageThumbnails = pageThumbnails;
+        current.thumbnailLoader = thumbnailLoader;
+        current.windowWidth = windowWidth;
+        current.windowHeight = windowHeight;
+        current.viewState = saveViewState();
+        if (tiles != null) {
+            tiles.demote();
+        }
+        operations.demote();
+    }
+
+    /**
+     * Shows the folder of the current image, or one the user picks, as a grid of thumbnails in
+     * place of the image. Double clicking a thumbnail opens that image.
+     */
+    private void showGrid() {
+        File folder = file != null ? file.getAbsoluteFile().getParentFile() : null;
+        if (folder == null) {
+            final JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            folder = chooser.getSelectedFile();
+        }
+        final List<File> files = FolderNavigator.list(folder, this::isImageFormatSupported);
+        if (files.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No images in " + folder);
+            return;
+        }
+        grid = new ThumbnailGrid(folder, files, this::setAndDisplayFile);
+        gridPane = new JScrollPane(grid);
+        current.panel.remove(scrollPane);
+        current.panel.add(gridPane, BorderLayout.CENTER);
+        current.panel.revalidate();
+        current.panel.repaint();
+        if (file != null) {
+            SwingUtilities.invokeLater(() -> {
+                if (grid != null) {
+                    grid.reveal(file);
+                }
+            });
+        }
+        folderGrid.setText("Hide Folder Grid");
+        watchFolders();
+    }
+
+    private void hideGrid() {
+        if (grid == null) {
+            return;
+        }
+        grid.dispose();
+        current.panel.remove(gridPane);
+        current.panel.add(scrollPane, BorderLayout.CENTER);
+        current.panel.revalidate();
+        current.panel.repaint();
+        grid = null;
+        gridPane = null;
+        folderGrid.setText("Folder Grid");
+        watchFolders();
+    }
+
+    /**
+     * Watches the folders of the open documents and of the folder grid for changes.
+     */
+    private void watchFolders() {
+        final Set<File> folders = new HashSet<>();
+        for (final Document d : documents) {
+            final File f = d == current ? file : d.file;
+            if (f != null) {
+                folders.add(f.getAbsoluteFile().getParentFile());
+            }
+        }
+        if (grid != null) {
+            folders.add(grid.getFolder());
+        }
+        watcher.watch(folders);
+    }
+
+    /**
+     * Brings the image caches, folder listings and open documents up to date with files changed
+     * on disk. Only what involves a changed file is dropped or reloaded; a document in a
+     * background tab is reloaded when it is next selected.
+     *
+     * @param changed paths as reported by {@link FolderWatcher}
+     */
+    void filesChanged(final Set<File> changed) {
+        if (!OPEN.contains(this)) {
+            // a batch reported as the window closed
+            return;
+        }
+        ImageCache.SCREEN.invalidate(changed);
+        ImageCache.PREVIEWS.invalidate(changed);
+        ImageCache.THUMBNAILS.invalidate(changed);
+        if (grid != null && FolderWatcher.affectsFolder(changed, grid.getFolder())) {
+            grid.update(FolderNavigator.list(grid.getFolder(), this::isImageFormatSupported), changed);
+        }
+        for (final Document d : documents) {
+            if (d == current || d.file == null) {
+                continue;
+            }
+            if (FolderWatcher.affectsFolder(changed, d.file.getAbsoluteFile().getParentFile())) {
+                d.navigator = null;
+            }
+            if (FolderWatcher.affects(changed, d.file)) {
+                d.changed = true;
+                if (d.tiles != null) {
+                    try {
+                        d.tiles.close();
+                    } catch (final IOException e) {
+                        System.err.println("Unable to release image tiles: " + e.getMessage());
+                    }
+                    d.tiles = null;
+                    d.tilesKey = null;
+                }
+            }
+            if (d.viewState != null) {
+                viewStateFilesChanged(d.viewState, changed);
+            }
+        }
+        if (file != null && FolderWatcher.affectsFolder(changed, file.getAbsoluteFile().getParentFile())) {
+            navigator = null;
+            if (FolderWatcher.affects(changed, file) && file.isFile()) {
+                fileChanged();
+            }
+            prefetchNeighbours();
+        }
+    }
+
+    /**
+     * Reloads the current file after it changed on disk, first asking whether to drop the edits
+     * made to it.
+     */
+    void fileChanged() {
+        if (hasEdits() && JOptionPane.showConfirmDialog(this,
+                file.getName() + " has changed on disk. Reload it and discard your edits?", "File Changed",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        stopAnimation();
+        closeTileStore();
+        displayImage();
+        startAnimation();
+    }
+
+    /**
+     * @return whether the image being viewed has edits that reloading it would lose
+     */
+    boolean hasEdits() {
+        return operations.size() > 0;
+    }
+
+    /**
+     * Updates the subclass state of a background tab for files changed on disk.
+     */
+    void viewStateFilesChanged(final Object viewState, final Set<File> changed) {
+    }
+
+    private void closeTab() {
+        if (documents.size() == 1) {
+            close();
+            return;
+        }
+        offerSave();
+        final Document closing = current;
+        final int index = documents.indexOf(closing);
+        tabs.setSelectedIndex(index == documents.size() - 1 ? index - 1 : index + 1);
+        disposeDocument(closing);
+        documents.remove(closing);
+        tabs.remove(closing.panel);
+        watchFolders();
+    }
+
+    private void disposeDocument(final Document d) {
+        if (d.tiles != null) {
+            try {
+                d.tiles.close();
+            } catch (final IOException e) {
+                System.err.println("Unable to release image tiles: " + e.getMessage());
+            }
+        }
+        d.operations.clearResults();
+        if (d.thumbnailLoader != null) {
+            d.thumbnailLoader.cancel(true);
+        }
+        disposeViewState(d.viewState);
+    }
+
+    /**
+     * @return the subclass state of the selected tab, handed back to {@link #restoreViewState}
+     * when the tab is selected again
+     */
+    Object saveViewState() {
+        return null;
+    }
+
+    /**
+     * Restores state from {@link #saveViewState}, or resets it for a new tab if state is null.
+     */
+    void restoreViewState(final Object state) {
+    }
+
+    /**
+     * Releases the state of a closed tab.
+     */
+    void disposeViewState(final Object state) {
+    }
+
+    /**
+     * Shows the frame, before any image or rarely used dialog has been loaded.
+     */
+    void showFrame() {
+        OPEN.add(this);
+        setVisible(true);
+        Startup.mark("frame");
+    }
+
+    /**
+     * Starts a viewer for the files in args, or hands them to a running viewer of the same name
+     * and returns. Files forwarded by later launches open in new tabs of a window already open.
+     */
+    static void launch(final String name, final String[] args, final Supplier<JavaImageViewer> factory) throws Exception {
+        final List<File> files = new ArrayList<>();
+        for (final String arg : args) {
+            files.add(new File(arg));
+        }
+        SingleInstance instance = null;
+        if (SingleInstance.ENABLED) {
+            try {
+                instance = SingleInstance.lock(name);
+            } catch (final IOException e) {
+                System.err.println("Single instance unavailable: " + e.getMessage());
+            }
+        }
+        try {
+            if (instance != null && instance.forward(files)) {
+                return;
+            }
+            openWindows(factory, files);
+            if (instance != null) {
+                instance.listen(forwarded -> {
+                    try {
+                        openForwarded(factory, forwarded);
+                    } catch (final Exception e) {
+                        System.err.println("Unable to open window: " + e);
+                    }
+                });
+            }
+        } finally {
+            if (instance != null) {
+                instance.close();
+            }
+        }
+    }
+
+    private static void openWindows(final Supplier<JavaImageViewer> factory, final List<File> files) throws Exception {
+        if (files.isEmpty()) {
+            factory.get().run();
+        }
+        for (final File f : files) {
+            final JavaImageViewer viewer = factory.get();
+            viewer.run();
+            viewer.setAndDisplayFile(f);
+        }
+    }
+
+    private static void openForwarded(final Supplier<JavaImageViewer> factory, final List<File> files) throws Exception {
+        final JavaImageViewer target = OPEN.isEmpty() ? null : OPEN.iterator().next();
+        if (target == null || files.isEmpty()) {
+            openWindows(factory, files);
+            return;
+        }
+        for (final File f : files) {
+            target.openInNewTab(f);
+        }
+        target.toFront();
     }
 
     private static JMenu getMenu(final String name) {
@@ -172,6 +833,14 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
 
     }
 
+    /**
+     * Command on macOS, Control elsewhere. getMenuShortcutKeyMaskEx only arrives in Java 10.
+     */
+    @SuppressWarnings("deprecation")
+    private static KeyStroke menuShortcut(final int keyCode) {
+        return KeyStroke.getKeyStroke(keyCode, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask());
+    }
+
     private void selectFile() {
         final FileDialog fileChooser = new FileDialog((Frame) null, "File chooser");
         fileChooser.setMode(FileDialog.LOAD);
@@ -210,24 +879,455 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
     }
 
     void setAndDisplayFile(final File file) {
+        stopAnimation();
+        hideGrid();
         this.file = file;
         if (canConvert()) {
+            showFileName();
             displayImage();
+            startAnimation();
+            prefetchNeighbours();
+        }
+        watchFolders();
+    }
+
+    /**
+     * Plays the current file if it is an animation, replacing the still image once the first
+     * frame is decoded.
+     */
+    void startAnimation() {
+        stopAnimation();
+        if (file == null || !AnimationFrames.mayBeAnimated(getExtension())) {
+            return;
+        }
+        animation = new AnimationPlayer(file, getFrameSize(), getFrameProcessor(), this::showAnimationFrame);
+        animation.start();
+        pauseAnimation.setText("Pause Animation");
+        pauseAnimation.setEnabled(true);
+    }
+
+    void stopAnimation() {
+        if (animation != null) {
+            animation.stop();
+            animation = null;
+            pauseAnimation.setEnabled(false);
+        }
+    }
+
+    boolean isAnimating() {
+        return animation != null;
+    }
+
+    /**
+     * @return the size animation frames are shown at for a canvas size, captured for use off the
+     * event dispatch thread
+     */
+    AnimationPlayer.FrameSize getFrameSize() {
+        final int index = zoomCombo.getSelectedIndex();
+        final double z = zoom;
+        final int width = getScreenWidth();
+        final int height = getScreenHeight();
+        return (w, h) -> {
+            final double s = zoomScale(index, z, width / (double) w, height / (double) h);
+            return new Dimension((int) Math.round(w * s), (int) Math.round(h * s));
+        };
+    }
+
+    /**
+     * @return the processing applied to every animation frame, safe to run off the event dispatch thread
+     */
+    UnaryOperator<BufferedImage> getFrameProcessor() {
+        if (operations.size() == 0) {
+            return UnaryOperator.identity();
+        }
+        final ProcessingChain ops = operations.snapshot();
+        return ops::apply;
+    }
+
+    private void showAnimationFrame(final BufferedImage frame) {
+        final boolean resized = frameIcon.frame == null || frameIcon.frame.getWidth() != frame.getWidth()
+                || frameIcon.frame.getHeight() != frame.getHeight();
+        frameIcon.frame = frame;
+        if (imageLabel.getIcon() != frameIcon) {
+            setDisplayImage(null);
+            imageLabel.setIcon(frameIcon);
+        } else if (resized) {
+            imageLabel.revalidate();
+        }
+        imageLabel.repaint();
+    }
+
+    private void showFileName() {
+        tabs.setTitleAt(documents.indexOf(current), file.getName());
+        tabs.setToolTipTextAt(documents.indexOf(current), file.getPath());
+        setTitle(file.getName() + " - " + viewerTitle);
+    }
+
+    private void navigate(final int step) {
+        if (file == null) {
+            return;
+        }
+        if (navigator == null || !navigator.contains(file)) {
+            navigator = new FolderNavigator(file, this::isImageFormatSupported);
+        }
+        final File next = navigator.step(step);
+        if (next != null) {
+            setAndDisplayFile(next);
+        }
+    }
+
+    private void prefetchNeighbours() {
+        if (navigator == null || !navigator.contains(file)) {
+            navigator = new FolderNavigator(file, this::isImageFormatSupported);
+        }
+        if (prefetcher == null) {
+            prefetcher = new ImagePrefetcher(this::decodeForScreen);
+        }
+        prefetcher.prefetch(navigator, getScreenWidth(), getScreenHeight());
+    }
+
+    /**
+     * Returns the current file decoded at screen size if it was read ahead, otherwise null.
+     */
+    BufferedImage getPrefetchedImage() {
+        return prefetcher == null || file == null || getPage() != 0 || !file.equals(getSourceFile()) ? null
+                : prefetcher.get(file, getScreenWidth(), getScreenHeight());
+    }
+
+    /**
+     * Returns the image being viewed as an off-heap tile store if it is too large to keep on the heap.
+     *
+     * @return the store, or null if the image is small enough or cannot be read in regions
+     */
+    TileStore getTileStore() {
+        final File source = getSourceFile();
+        if (source == null) {
+            return null;
+        }
+        final Object key = Arrays.asList(source, getPage());
+        if (tiles != null && key.equals(tilesKey)) {
+            return tiles;
+        }
+        closeTileStore();
+        final Rectangle dimension = getImageDimension();
+        if ((long) dimension.width * dimension.height * 4 <= MemoryBudget.GLOBAL.getLimit()) {
+            return null;
+        }
+        try {
+            tiles = TileStore.read(source, getPage());
+            tilesKey = key;
+        } catch (final IOException e) {
+            System.err.println("Unable to read image tiles: " + e.getMessage());
+        }
+        return tiles;
+    }
+
+    /**
+     * @return the file holding the image being viewed, which a viewer that edits may have replaced
+     * with a temporary copy
+     */
+    File getSourceFile() {
+        return file;
+    }
+
+    /**
+     * @return the page of the source file being viewed
+     */
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * @return the number of pages in the file being viewed
+     */
+    int getPageCount() {
+        return pageCount;
+    }
+
+    private void closeTileStore() {
+        if (tiles != null) {
+            close(tiles);
+            tiles = null;
+            tilesKey = null;
+        }
+    }
+
+    private static void close(final TileStore store) {
+        try {
+            store.close();
+        } catch (final IOException e) {
+            System.err.println("Unable to release image tiles: " + e.getMessage());
+        }
+    }
+
+    int getScreenWidth() {
+        return windowWidth;
+    }
+
+    int getScreenHeight() {
+        return windowHeight;
+    }
+
+    BufferedImage getImage() {
+        final File source = getSourceFile();
+        try {
+            return ImageBackends.readPage(source, getPage());
+        } catch (final Exception e) {
+            System.err.println("Unable to read file: " + e);
+            JOptionPane.showMessageDialog(this, "Unable to read file: " + source.getName());
         }
+        return null;
     }
 
-    abstract BufferedImage getImage();
+    Rectangle getImageDimension() {
+        try {
+            return ImageBackends.readDimension(getSourceFile());
+        } catch (final Exception e) {
+            System.err.println("Unable to get image dimensions: " + e);
+        }
+        return new Rectangle(0, 0);
+    }
 
-    abstract Rectangle getImageDimension();
+    String getImageType() {
+        try {
+            final String type = ImageBackends.getFormatName(getSourceFile());
+            if (type != null) {
+                return type;
+            }
+        } catch (final Exception e) {
+            System.err.println("Unable to get image type: " + e);
+        }
+        return "N/A";
+    }
 
-    abstract String getImageType();
+    void saveFile() {
+        final TileStore store = getTileStore();
+        if (store == null) {
+            saveFile(fullResolution(), () -> { });
+            return;
+        }
+        if (!operations.isPerPixel()) {
+            // steps that move or mix pixels are applied to whole images, and this one is too large for the heap
+            if (JOptionPane.showConfirmDialog(this, "This image is too large to process at full size. Save it as shown?",
+                    "Save", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+                return;
+            }
+            final BufferedImage shown = image;
+            saveFile(() -> shown, () -> { });
+            return;
+        }
+        // an image too large for the heap is written from its tiles a band at a time, held until
+        // the save ends so closing or changing the document does not free them
+        final TileStore held;
+        try {
+            held = store.retain();
+        } catch (final IOException e) {
+            System.err.println("Unable to save image tiles: " + e.getMessage());
+            return;
+        }
+        if (operations.size() == 0) {
+            saveFile(held::asRenderedImage, () -> close(held));
+            return;
+        }
+        final ProcessingChain ops = operations.snapshot();
+        final AtomicReference<TileStore> processed = new AtomicReference<>();
+        saveFile(() -> {
+            processed.set(ops.apply(held));
+            return processed.get().asRenderedImage();
+        }, () -> {
+            close(held);
+            final TileStore p = processed.getAndSet(null);
+            if (p != null) {
+                close(p);
+            }
+        });
+    }
 
-    abstract void saveFile();
+    /**
+     * Asks for a target file and format and saves the image from source in the background.
+     *
+     * @param finished run on the EDT once the save has ended, or straight away if no file is chosen
+     */
+    final void saveFile(final Callable<? extends RenderedImage> source, final Runnable finished) {
+        final JFileChooser fileChooser = new JFileChooser();
+        for (final String format : ImageBackends.getWritableFormats()) {
+            fileChooser.addChoosableFileFilter(new FileNameExtensionFilter(format.toUpperCase(Locale.ROOT), format));
+        }
+        ParallelEncoder.addChoosableFilters(fileChooser);
+        fileChooser.setFileHidingEnabled(true);
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        fileChooser.showSaveDialog(this);
+        if (fileChooser.getSelectedFile() != null) {
+            final String parallel = ParallelEncoder.getFormat(fileChooser.getFileFilter());
+            final String format = parallel != null ? parallel
+                    : ((FileNameExtensionFilter) fileChooser.getFileFilter()).getExtensions()[0];
+            BackgroundSaver.save(this, source, format, new File(fileChooser.getSelectedFile().getAbsolutePath() + '.' + format),
+                    parallel != null ? ParallelEncoder::write : (image, f, out) -> ImageBackends.forWriting(f).write(image, f, out), finished);
+        } else {
+            finished.run();
+        }
+    }
+
+    boolean isImageFormatSupported(final String format) {
+        return !ImageBackends.forReading(format).isEmpty();
+    }
 
-    abstract boolean isImageFormatSupported(final String format);
+    BufferedImage decodeForScreen(final File f, final int width, final int height) throws Exception {
+        return ImageBackends.readScaled(f, width, height);
+    }
 
+    /**
+     * Shows a newly opened file, dropping the processing, zoom and pages of the previous one.
+     */
     void displayImage() {
+        removePageControls();
+        page = 0;
+        pageCount = 1;
+        image = null;
+        reset();
+        enableMenus(false);
+        showPreview();
+        if ("tiff".equals(ImageBackends.getFormat(file))) {
+            try {
+                pageCount = ImageBackends.getPageCount(file);
+            } catch (final Exception e) {
+                System.err.println("Unable to count pages: " + e);
+            }
+            if (pageCount > 1) {
+                setUpPages();
+            }
+        }
+        loadImage();
+    }
+
+    /**
+     * Decodes the image being viewed off the EDT, as tiles if it is too large for the heap, then
+     * calls {@link #imageLoaded()}. Any preview stays up meanwhile.
+     */
+    final void loadImage() {
+        loader = null;
+        final File source = getSourceFile();
+        if (source == null) {
+            return;
+        }
+        final int page = getPage();
+        final Object key = Arrays.asList(source, page);
+        if (getPrefetchedImage() != null || tiles != null && key.equals(tilesKey)) {
+            imageLoaded();
+            return;
+        }
+        closeTileStore();
+        final Rectangle dimension = getImageDimension();
+        final boolean large = (long) dimension.width * dimension.height * 4 > MemoryBudget.GLOBAL.getLimit();
+        final SwingWorker<Object, Void> worker = new SwingWorker<Object, Void>() {
+            @Override
+            protected Object doInBackground() throws Exception {
+                if (loader != this) {
+                    // another image was opened before this one started
+                    return null;
+                }
+                final TileStore store = large ? TileStore.read(source, page) : null;
+                if (store != null) {
+                    return store;
+                }
+                return page == 0 ? ImageBackends.read(source) : ImageBackends.readPage(source, page);
+            }
+
+            @Override
+            protected void done() {
+                Object result = null;
+                try {
+                    result = get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    // left to the draw, which reads again and reports the failure as usual
+                }
+                if (loader != this) {
+                    if (result instanceof TileStore) {
+                        close((TileStore) result);
+                    }
+                    return;
+                }
+                loader = null;
+                if (result instanceof TileStore) {
+                    tiles = (TileStore) result;
+                    tilesKey = key;
+                } else if (result != null) {
+                    decoded = (BufferedImage) result;
+                    decodedKey = key;
+                }
+                imageLoaded();
+            }
+        };
+        loader = worker;
+        worker.execute();
+    }
+
+    /**
+     * Draws the image once {@link #loadImage()} has it ready.
+     */
+    void imageLoaded() {
         draw();
+        if (image != null) {
+            resetScale();
+        }
+        enableMenus(image != null);
+        Startup.imageDisplayed();
+    }
+
+    /**
+     * @return the image {@link #loadImage()} decoded for the source and page being viewed, handed
+     * over once, or null
+     */
+    BufferedImage takeDecoded() {
+        final BufferedImage im = decoded;
+        final boolean current = im != null && decodedKey.equals(Arrays.asList(getSourceFile(), getPage()));
+        decoded = null;
+        decodedKey = null;
+        return current ? im : null;
+    }
+
+    /**
+     * Shows an embedded thumbnail or subsampled decode of a large file while the full decode runs.
+     */
+    void showPreview() {
+        if (file.length() < PREVIEW_THRESHOLD || getPrefetchedImage() != null) {
+            return;
+        }
+        final File f = file;
+        final BufferedImage cached = ImageCache.PREVIEWS.get(f, PREVIEW_SIZE, PREVIEW_SIZE);
+        if (cached != null) {
+            setPreview(cached);
+            return;
+        }
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() {
+                return PreviewReader.read(f, PREVIEW_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    final BufferedImage preview = get();
+                    ImageCache.PREVIEWS.put(f, PREVIEW_SIZE, PREVIEW_SIZE, preview);
+                    // only while the full image is still on its way
+                    if (preview != null && f.equals(file) && loader != null) {
+                        setPreview(preview);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    System.err.println("Unable to read preview: " + e.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    private void setPreview(final BufferedImage preview) {
+        final float zoom = calculateFitToScreen(preview.getWidth(), preview.getHeight(), getScreenWidth(), getScreenHeight());
+        setDisplayImage(scaleToSize(preview, (int) (preview.getWidth() * zoom), (int) (preview.getHeight() * zoom)));
     }
 
     private void displayProperties() {
@@ -271,24 +1371,64 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
 
     }
 
-    private void close() {
+    private void offerSave() {
         if (file != null) {
             final int saveOnClose = JOptionPane.showOptionDialog(this, "Save Image?", "Save", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE, null, null, null);
             if (saveOnClose == JOptionPane.YES_OPTION) {
                 saveFile();
             }
         }
-        dispose();
-        System.exit(0);
     }
 
-    @SuppressWarnings({"OverlyLongMethod", "java:S138"})
+    private void close() {
+        offerSave();
+        stopAnimation();
+        hideGrid();
+        watcher.close();
+        OPEN.remove(this);
+        if (!OPEN.isEmpty()) {
+            // other windows forwarded to this JVM are still open, the caches stay for them
+            if (prefetcher != null) {
+                prefetcher.shutdown();
+            }
+            closeTileStore();
+            for (final Document d : documents) {
+                if (d != current) {
+                    disposeDocument(d);
+                }
+            }
+            operations.clearResults();
+            if (thumbnailLoader != null) {
+                thumbnailLoader.cancel(true);
+            }
+            disposeViewState(saveViewState());
+            dispose();
+            return;
+        }
+        // saves still running finish with the window already gone, and the last one exits
+        setVisible(false);
+        BackgroundSaver.whenIdle(() -> {
+            dispose();
+            if (OPEN.isEmpty()) {
+                System.exit(0);
+            }
+        });
+    }
+
     void displayAbout() {
+        if (aboutWindow == null) {
+            aboutWindow = createAboutWindow();
+        }
+        aboutWindow.setVisible(true);
+        aboutWindow.toFront();
+    }
+
+    @SuppressWarnings({"OverlyLongMethod", "java:S138"})
+    private JFrame createAboutWindow() {
         final JFrame aboutWindow = new JFrame("About");
-        aboutWindow.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        aboutWindow.setDefaultCloseOperation(HIDE_ON_CLOSE);
         aboutWindow.setSize(450, 400);
         aboutWindow.setLocationRelativeTo(null);
-        aboutWindow.setVisible(true);
 
         final JPanel aboutPanel = new JPanel();
         aboutPanel.setBackground(new Color(84, 130, 31));
@@ -389,7 +1529,7 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
         constraints.gridy = 5;
         aboutPanel.add(url, constraints);
         aboutWindow.getContentPane().add(aboutPanel);
-        aboutPanel.paint(aboutPanel.getGraphics());
+        return aboutWindow;
     }
 
     private static void openWebsite(final String url) {
@@ -401,34 +1541,795 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
     }
 
     void draw() {
-        final BufferedImage original = getImage();
-        if (original == null) {
+        final File source = getSourceFile();
+        if (source == null) {
+            return;
+        }
+        final Object key = Arrays.asList(source, source.lastModified(), getPage(), zoomCombo.getSelectedIndex(), zoom, windowWidth, windowHeight);
+        image = operations.apply(key, this::getZoomedImage);
+        setDisplayImage(image);
+        if (statsFrame != null && statsFrame.isVisible()) {
+            updateStatistics();
+        }
+        if (isAnimating()) {
+            // play on with the new zoom and processing
+            startAnimation();
+        }
+    }
+
+    /**
+     * @return the current image scaled for the zoom setting, the input to the processing chain
+     */
+    private BufferedImage getZoomedImage() {
+        BufferedImage im = zoomCombo.getSelectedIndex() == 0 ? getPrefetchedImage() : null;
+
+        if (im == null) {
+            im = getScaledTiles();
+        }
+
+        if (im == null) {
+            im = takeDecoded();
+            if (im == null) {
+                im = getImage();
+            }
+            if (im != null) {
+                final double s = zoomScale(im.getWidth(), im.getHeight());
+                im = scaleToSize(im, (int) Math.round(im.getWidth() * s), (int) Math.round(im.getHeight() * s));
+            }
+        }
+        return im;
+    }
+
+    private BufferedImage getScaledTiles() {
+        final TileStore store = getTileStore();
+        if (store == null) {
+            return null;
+        }
+        final double s = zoomScale(store.getWidth(), store.getHeight());
+        try {
+            return store.scale((int) (store.getWidth() * s), (int) (store.getHeight() * s));
+        } catch (final IOException e) {
+            System.err.println("Unable to scale image tiles: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the scale the zoom setting shows an image of the given size at
+     */
+    private double zoomScale(final int w, final int h) {
+        return zoomScale(zoomCombo.getSelectedIndex(), zoom, windowWidth / (double) w, windowHeight / (double) h);
+    }
+
+    private static double zoomScale(final int index, final double zoom, final double fitWidth, final double fitHeight) {
+        switch (index) {
+            case 0 :
+                return Math.min(fitWidth, fitHeight);
+            case 1 :
+                return fitHeight;
+            case 2 :
+                return fitWidth;
+            default :
+                return zoom;
+        }
+    }
+
+    void resetScale() {
+        scale = calculateFitToScreen(image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Selects a zoom setting without the listener, which would redraw or complain that there is
+     * no image.
+     */
+    private void setZoomIndex(final int index) {
+        zoomCombo.removeItemListener(this);
+        zoomCombo.setSelectedIndex(index);
+        zoomCombo.addItemListener(this);
+    }
+
+    private void actionZoomOut() {
+        if (image != null) {
+            final int selectedIndex = zoomCombo.getSelectedIndex();
+            if (selectedIndex < 3) {
+                final double s = (Math.round(scale * 10) * 10);
+                zoomCombo.setSelectedItem((int) s + "%");
+                if (s > 250) {
+                    zoomCombo.setSelectedItem("250%");
+                } else if ((s / 100) > scale) {
+
+                    zoomCombo.setSelectedIndex(zoomCombo.getSelectedIndex() - 1);
+                }
+            } else if (selectedIndex > 3 && selectedIndex < zoomCombo.getItemCount() - 3) {
+                zoomCombo.setSelectedIndex(selectedIndex - 1);
+                zoom = parseZoomCombo();
+            }
+            draw();
+        } else {
+            JOptionPane.showMessageDialog(this, noZoomMessage);
+        }
+    }
+
+    private void actionZoomIn() {
+        if (image != null) {
+            final int selectedIndex = zoomCombo.getSelectedIndex();
+            if (selectedIndex < zoomCombo.getItemCount() - 1) {
+                if (selectedIndex < 3) {
+                    final double s = (Math.round(scale * 10) * 10);
+                    zoomCombo.setSelectedItem((int) s + "%");
+                    if (s < 10) {
+                        zoomCombo.setSelectedItem("10%");
+                    }
+                    if ((s / 100) < scale) {
+                        zoomCombo.setSelectedIndex(zoomCombo.getSelectedIndex() + 1);
+                    }
+                } else {
+                    zoomCombo.setSelectedIndex(selectedIndex + 1);
+                    zoom = parseZoomCombo();
+                }
+            }
+            draw();
+        } else {
+            JOptionPane.showMessageDialog(this, noZoomMessage);
+
+        }
+    }
+
+    @Override
+    public void itemStateChanged(final ItemEvent e) {
+        if (e.getSource() == zoomCombo && e.getStateChange() == ItemEvent.SELECTED) {
+            if (image != null) {
+                if (zoomCombo.getSelectedIndex() >= 3) {
+                    zoom = parseZoomCombo();
+                }
+                draw();
+            } else {
+                JOptionPane.showMessageDialog(this, noZoomMessage);
+                setZoomIndex(0);
+            }
+        }
+    }
+
+    private double parseZoomCombo() {
+        final String zoom = Objects.requireNonNull(zoomCombo.getSelectedItem()).toString();
+        return (Double.parseDouble(zoom.substring(0, zoom.lastIndexOf('%'))) / 100);
+    }
+
+    private void addProcesses() {
+
+        final JMenu colorSpaceChange = new JMenu("change colorSpace");
+        colorSpaceChange.setBorderPainted(true);
+        processOptions.add(colorSpaceChange);
+        processOptions.addSeparator();
+
+        final JMenu mirror = new JMenu("mirror");
+        mirror.setBorderPainted(true);
+        processOptions.add(mirror);
+        processOptions.addSeparator();
+
+        toARGB = new JButton("To ARGB");
+        toBinary = new JButton("To Binary");
+        toGrayscale = new JButton("To Grayscale");
+        toIndexed = new JButton("To Indexed");
+        toRGB = new JButton("To RGB");
+
+        final JButton[] colorSpace = {toARGB, toBinary, toGrayscale, toIndexed, toRGB};
+        for (final JButton b : colorSpace) {
+            b.addActionListener(this);
+            colorSpaceChange.add(b);
+            colorSpaceChange.addSeparator();
+        }
+
+        mirrorH = new JButton("Mirror Horizontally");
+        mirrorH.addActionListener(this);
+        mirror.add(mirrorH);
+        mirrorV = new JButton("Mirror Vertically");
+        mirrorV.addActionListener(this);
+        mirror.add(mirrorV);
+
+        addLibraryProcesses(processOptions);
+
+        final JMenu adjust = new JMenu("Adjust");
+        processOptions.add(adjust);
+        processOptions.addSeparator();
+        addAdjustment(adjust, "Brightness...", "brightness", -100, 100, 0, v -> 0, Filters::brightness);
+        addAdjustment(adjust, "Blur...", "blurRadius", 0, 50, 3, v -> v, Filters::blur);
+        addAdjustment(adjust, "Sharpen...", "sharpenStrength", 0, 300, 100, v -> 1, Filters::sharpen);
+        addAdjustment(adjust, "Threshold...", "threshold", 0, 255, 128, v -> 0, Filters::threshold);
+
+        final JMenu select = new JMenu("Select");
+        select.setToolTipText("Limit adjustments to part of the image");
+        processOptions.add(select);
+        processOptions.addSeparator();
+        final JButton rectangle = new JButton("Rectangle");
+        rectangle.addActionListener(e -> selectShape(false));
+        select.add(rectangle);
+        final JButton ellipse = new JButton("Ellipse");
+        ellipse.addActionListener(e -> selectShape(true));
+        select.add(ellipse);
+
+        clearSelection = new JButton("Clear Selection");
+        clearSelection.setToolTipText("Process the whole image again");
+        clearSelection.addActionListener(e -> setSelection(null));
+        processOptions.add(clearSelection);
+        processOptions.addSeparator();
+        clearSelection.setEnabled(selection != null);
+    }
+
+    /**
+     * Adds the processes of an image library to the process menu, after the colour space and
+     * mirror operations.
+     */
+    void addLibraryProcesses(final JMenu menu) {
+    }
+
+    private void addAdjustment(final JMenu menu, final String title, final String key, final int min, final int max, final int value,
+                               final IntUnaryOperator margin, final IntFunction<UnaryOperator<BufferedImage>> filter) {
+        final JButton b = new JButton(title);
+        b.addActionListener(e -> {
+            processOptions.setSelected(false);
+            processOptions.setPopupMenuVisible(false);
+            if (image == null) {
+                return;
+            }
+            final RegionMask mask = selection;
+            final IntFunction<UnaryOperator<BufferedImage>> masked = mask == null ? filter : v -> mask.mask(filter.apply(v), margin.applyAsInt(v));
+            final Integer chosen = FilterDialog.show(this, imageLabel, image, title.substring(0, title.length() - 3),
+                    min, max, value, margin, masked, mask == null, this::setDisplayImage);
+            if (chosen != null) {
+                if (margin.applyAsInt(chosen) == 0) {
+                    // reads no neighbouring pixels, so can also be applied a tile at a time
+                    operations.addPerPixel(key + '=' + chosen, filter.apply(chosen), mask);
+                } else {
+                    operations.add(key + '=' + chosen, masked.apply(chosen));
+                }
+                draw();
+            }
+        });
+        menu.add(b);
+    }
+
+    /**
+     * Lets the user drag out a selection over the image as shown.
+     */
+    private void selectShape(final boolean ellipse) {
+        processOptions.setSelected(false);
+        processOptions.setPopupMenuVisible(false);
+        if (image == null) {
+            return;
+        }
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        SelectionOverlay.show(imageLabel, w, h, ellipse, shape -> setSelection(new RegionMask(shape, w, h)));
+    }
+
+    void setSelection(final RegionMask mask) {
+        selection = mask;
+        if (clearSelection != null) {
+            clearSelection.setEnabled(mask != null);
+        }
+    }
+
+    /**
+     * Drops the processing and selection and fits the image to the window again.
+     */
+    void reset() {
+        setSelection(null);
+        operations.clearResults();
+        operations = new ProcessingChain();
+        zoom = scale;
+        setZoomIndex(0);
+    }
+
+    void undo() {
+        operations.undo();
+    }
+
+    void redo() {
+        operations.redo();
+    }
+
+    private void rotate(final int degrees) {
+        if (image != null) {
+            operations.add("rotate", Filters.rotate(degrees));
+            final int temp = windowWidth;
+            windowWidth = windowHeight;
+            windowHeight = temp;
+            draw();
+        } else {
+            JOptionPane.showMessageDialog(this, "No Image to rotate");
+        }
+    }
+
+    /**
+     * Adds page controls and thumbnails for a multi-page file to the selected tab, decoding the
+     * thumbnails in the background.
+     */
+    private void setUpPages() {
+        final JButton next = iconButton("/jdeli/viewer/next.gif", ">");
+        final JButton prev = iconButton("/jdeli/viewer/prev.gif", "<");
+        final JComboBox<Integer> img = new JComboBox<>(IntStream.range(0, pageCount).boxed().toArray(Integer[]::new));
+        next.setToolTipText("Next Image");
+        next.addActionListener(a -> {
+            if (page < pageCount - 1) {
+                img.setSelectedIndex(page + 1);
+            }
+        });
+        prev.setToolTipText("Previous Image");
+        prev.addActionListener(a -> {
+            if (page > 0) {
+                img.setSelectedIndex(page - 1);
+            }
+        });
+        img.addItemListener(i -> {
+            if (i.getStateChange() == ItemEvent.SELECTED) {
+                showPage(img.getSelectedIndex());
+            }
+        });
+
+        final JButton pages = new JButton("Pages");
+        pages.setToolTipText("Export, split or merge pages");
+        pages.addActionListener(a -> pagesPopup());
+
+        pageControls = new JPanel();
+        pageControls.setLayout(new GridLayout(1, 5));
+        pageControls.add(prev);
+        pageControls.add(img);
+        pageControls.add(next);
+        pageControls.add(pages);
+        getDocumentPanel().add(pageControls, BorderLayout.PAGE_END);
+
+        final JPanel pageList = new JPanel();
+        pageList.setLayout(new GridLayout(pageCount, 1, 0, 5));
+        final JButton[] buttons = new JButton[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            final int p = i;
+            buttons[i] = new JButton(String.valueOf(i));
+            buttons[i].addActionListener(a -> img.setSelectedIndex(p));
+            pageList.add(buttons[i]);
+        }
+        pageThumbnails = new JScrollPane(pageList);
+        getDocumentPanel().add(pageThumbnails, BorderLayout.EAST);
+        getDocumentPanel().revalidate();
+        thumbnailLoader = loadThumbnails(file, buttons);
+    }
+
+    private void removePageControls() {
+        if (thumbnailLoader != null) {
+            thumbnailLoader.cancel(true);
+            thumbnailLoader = null;
+        }
+        if (pageControls != null) {
+            getDocumentPanel().remove(pageControls);
+            getDocumentPanel().remove(pageThumbnails);
+            pageControls = null;
+            pageThumbnails = null;
+        }
+    }
+
+    /**
+     * Decodes a thumbnail of each page of source in turn and sets it as the icon of its button.
+     */
+    private static SwingWorker<Void, Integer> loadThumbnails(final File source, final JButton[] buttons) {
+        final ImageIcon[] icons = new ImageIcon[buttons.length];
+        final SwingWorker<Void, Integer> worker = new SwingWorker<Void, Integer>() {
+            @Override
+            protected Void doInBackground() {
+                for (int i = 0; i < icons.length && !isCancelled(); i++) {
+                    try {
+                        final BufferedImage im = ImageBackends.readPage(source, i);
+                        final float s = calculateFitToScreen(im.getWidth(), im.getHeight(), THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+                        icons[i] = new ImageIcon(scaleToSize(im, Math.round(im.getWidth() * s), Math.round(im.getHeight() * s)));
+                        publish(i);
+                    } catch (final Exception e) {
+                        if (!isCancelled()) {
+                            System.err.println("Unable to read page " + i + ": " + e);
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(final List<Integer> chunks) {
+                for (final int i : chunks) {
+                    buttons[i].setIcon(icons[i]);
+                }
+            }
+        };
+        worker.execute();
+        return worker;
+    }
+
+    /**
+     * Shows another page of a multi-page file, decoding it off the EDT.
+     */
+    private void showPage(final int p) {
+        if (p != page) {
+            page = p;
+            loadImage();
+        }
+    }
+
+    private void pagesPopup() {
+        final JSpinner from = new JSpinner(new SpinnerNumberModel(1, 1, pageCount, 1));
+        final JSpinner to = new JSpinner(new SpinnerNumberModel(pageCount, 1, pageCount, 1));
+        final JComboBox<String> mode = new JComboBox<>(new String[]{"Export to TIFF", "Split to files", "Merge with other TIFFs"});
+        final JComboBox<String> format = new JComboBox<>(ImageBackends.getWritableFormats());
+        format.setSelectedItem("tiff");
+        final JCheckBox applyOps = new JCheckBox("Apply current processing", operations.size() != 0);
+
+        final JPanel panel = new JPanel(new GridLayout(5, 2, 5, 5));
+        panel.add(new JLabel("Mode : "));
+        panel.add(mode);
+        panel.add(new JLabel("From page : "));
+        panel.add(from);
+        panel.add(new JLabel("To page : "));
+        panel.add(to);
+        panel.add(new JLabel("Split format : "));
+        panel.add(format);
+        panel.add(applyOps);
+
+        if (JOptionPane.showConfirmDialog(this, panel, "Pages", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        final int first = (Integer) from.getValue() - 1;
+        final int last = (Integer) to.getValue() - 1;
+        if (first > last) {
+            JOptionPane.showMessageDialog(this, "Invalid page range");
+            return;
+        }
+        final ProcessingChain ops = operations.snapshot();
+        final TiffPages.PageProcessor processor = applyOps.isSelected() ? ops::apply : TiffPages.PageProcessor.NONE;
+        final List<TiffPages.PageRef> pages = new ArrayList<>(TiffPages.range(file, first, last));
+        final String baseName = file.getName().substring(0, file.getName().lastIndexOf('.'));
+
+        final JFileChooser chooser = new JFileChooser(file.getParentFile());
+        final TiffPages.Job job;
+        if (mode.getSelectedIndex() == 1) {
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            final File folder = chooser.getSelectedFile();
+            final String ext = (String) format.getSelectedItem();
+            job = progress -> TiffPages.split(pages, processor, folder, baseName, ext, progress);
+        } else {
+            if (mode.getSelectedIndex() == 2) {
+                chooser.setMultiSelectionEnabled(true);
+                chooser.setFileFilter(new FileNameExtensionFilter("TIFF", "tif", "tiff"));
+                if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                    return;
+                }
+                try {
+                    pages.addAll(TiffPages.allPages(Arrays.asList(chooser.getSelectedFiles())));
+                } catch (final Exception e) {
+                    JOptionPane.showMessageDialog(this, "Unable to read TIFF files");
+                    return;
+                }
+                chooser.setMultiSelectionEnabled(false);
+            }
+            chooser.setSelectedFile(new File(file.getParentFile(), baseName + "-pages.tif"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            final File target = chooser.getSelectedFile();
+            job = progress -> TiffPages.merge(pages, processor, target, progress);
+        }
+
+        final ProgressMonitor monitor = new ProgressMonitor(this, "Processing pages", null, 0, pages.size());
+        new SwingWorker<Void, Integer>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                job.run(this::publish);
+                return null;
+            }
+
+            @Override
+            protected void process(final List<Integer> chunks) {
+                monitor.setProgress(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(JavaImageViewer.this, pages.size() + " pages written");
+                } catch (final Exception e) {
+                    System.err.println("Unable to process pages: " + e.getMessage());
+                    JOptionPane.showMessageDialog(JavaImageViewer.this, "Unable to process pages");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Opens a comparison of the current image at full resolution with its unprocessed original or
+     * with another image chosen by the user.
+     */
+    private void showComparison() {
+        final String[] choices = {"Original", "Another image"};
+        final int choice = JOptionPane.showOptionDialog(this, "Compare the current image with", "Compare",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+        if (choice < 0) {
             return;
         }
+        final File other;
+        if (choice == 1) {
+            final FileDialog chooser = new FileDialog(this, "Compare with");
+            chooser.setMode(FileDialog.LOAD);
+            chooser.setFilenameFilter((File dir, String name) -> isImageFormatSupported(name.substring(name.lastIndexOf('.') + 1)));
+            chooser.setVisible(true);
+            if (chooser.getDirectory() == null || chooser.getFile() == null) {
+                return;
+            }
+            other = new File(chooser.getDirectory(), chooser.getFile());
+        } else {
+            other = null;
+        }
+        final File source = getSourceFile();
+        final int page = getPage();
+        final String name = file.getName();
+        // the processing is set up at screen scale, so a processed image is compared as shown
+        final BufferedImage processed = operations.size() > 0 ? image : null;
+        BufferedImage input = processed != null ? operations.getInput() : null;
+        if (processed != null && input == null) {
+            input = getZoomedImage();
+        }
+        final BufferedImage unprocessed = input;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<ComparisonView, Void>() {
+            @Override
+            protected ComparisonView doInBackground() throws Exception {
+                final TileStore current = processed != null ? TileStore.fromImage(processed) : TileStore.load(source, page);
+                try {
+                    if (other == null) {
+                        return new ComparisonView(name + " (original)", unprocessed != null ? TileStore.fromImage(unprocessed) : current,
+                                name, current);
+                    }
+                    return new ComparisonView(name, current, other.getName(), processed != null
+                            ? TileStore.fromImage(ImageBackends.readScaled(other, processed.getWidth(), processed.getHeight()))
+                            : TileStore.load(other, 0));
+                } catch (final Exception e) {
+                    current.close();
+                    throw e;
+                }
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                final ComparisonView view;
+                try {
+                    view = get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (final ExecutionException e) {
+                    System.err.println("Unable to compare images: " + e.getCause());
+                    JOptionPane.showMessageDialog(JavaImageViewer.this, "Unable to read images to compare");
+                    return;
+                }
+                final JFrame compareFrame = new JFrame("Compare - " + name);
+                compareFrame.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+                compareFrame.addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowClosed(final WindowEvent e) {
+                        view.dispose();
+                    }
+                });
+                compareFrame.add(view);
+                compareFrame.setSize(frameWidth, frameHeight);
+                compareFrame.setLocationRelativeTo(JavaImageViewer.this);
+                compareFrame.setVisible(true);
+            }
+        }.execute();
+    }
+
+    private void showStatistics() {
+        if (statsFrame == null) {
+            statsFrame = new JFrame("Statistics");
+            statsPanel = new StatisticsPanel();
+            statsFrame.add(statsPanel);
+            statsFrame.setLocation(300, 250);
+            statsFrame.pack();
+        }
+        statsFrame.setVisible(true);
+        updateStatistics();
+    }
+
+    /**
+     * Shows statistics for the screen image straight away, then replaces them with the full
+     * resolution figures computed in the background.
+     */
+    private void updateStatistics() {
+        if (image == null) {
+            return;
+        }
+        statsPanel.setStatistics(ImageStatistics.compute(image), false);
+        if (statsWorker != null) {
+            statsWorker.cancel(true);
+        }
+        final TileStore store = getTileStore();
+        if (store != null && !operations.isPerPixel()) {
+            // steps that move or mix pixels are applied to whole images, and this one is too large for the heap
+            statsPanel.setStatus("Statistics of the processed image at screen size");
+            return;
+        }
+        final Callable<BufferedImage> fullResolution = store == null ? fullResolution() : null;
+        final ProcessingChain ops = operations.snapshot();
+        statsWorker = new SwingWorker<ImageStatistics, Void>() {
+            @Override
+            protected ImageStatistics doInBackground() throws Exception {
+                if (store == null) {
+                    return ImageStatistics.compute(fullResolution.call());
+                }
+                // held so the tiles are not freed by a change of image while they are read
+                try (TileStore held = store.retain()) {
+                    if (ops.size() == 0) {
+                        return ImageStatistics.compute(held);
+                    }
+                    try (TileStore processed = ops.apply(held)) {
+                        return ImageStatistics.compute(processed);
+                    }
+                }
+            }
 
-        final double zoomAmount = calculateFitToScreen(original.getWidth(), original.getHeight());
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    statsPanel.setStatistics(get(), true);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    System.err.println("Unable to compute statistics: " + e.getCause());
+                    statsPanel.setStatus("Full resolution statistics unavailable");
+                }
+            }
+        };
+        statsWorker.execute();
+    }
 
-        final double zoomWidth = original.getWidth() * zoomAmount;
-        final double zoomHeight = original.getHeight() * zoomAmount;
+    /**
+     * @return a task decoding the current image at full size with the current processing applied,
+     * safe to run off the EDT
+     */
+    final Callable<BufferedImage> fullResolution() {
+        final File source = getSourceFile();
+        final int page = getPage();
+        final ProcessingChain ops = operations.snapshot();
+        return () -> ops.apply(ImageBackends.readPage(source, page));
+    }
 
-        imageLabel.setIcon(new ImageIcon(original.getScaledInstance((int)zoomWidth, (int)zoomHeight, Image.SCALE_SMOOTH)));
+    /**
+     * Shows a new processed frame, releasing the screen copies cached for the previous one.
+     */
+    void setDisplayImage(final Image im) {
+        if (imageLabel.getIcon() instanceof DisplayIcon) {
+            ((DisplayIcon) imageLabel.getIcon()).flush();
+        }
+        imageLabel.setIcon(im == null ? null : new DisplayIcon(im));
     }
 
     static float calculateFitToScreen(final int imageWidth, final int imageHeight) {
+        return calculateFitToScreen(imageWidth, imageHeight, frameWidth, frameHeight);
+    }
+
+    static float calculateFitToScreen(final int imageWidth, final int imageHeight, final int screenWidth, final int screenHeight) {
         if (imageWidth > imageHeight) {
-            return frameWidth / (float) imageWidth;
+            return screenWidth / (float) imageWidth;
         } else {
-            return (float) frameHeight / imageHeight;
+            return (float) screenHeight / imageHeight;
         }
     }
 
+    static BufferedImage scaleToSize(final BufferedImage image, final int width, final int height) {
+        final BufferedImage scaled = new BufferedImage(Math.max(1, width), Math.max(1, height),
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, 0, 0, scaled.getWidth(), scaled.getHeight(), null);
+        g2.dispose();
+        return scaled;
+    }
+
     @Override
     public void actionPerformed(final ActionEvent e) {
+        if (e.getSource() == zoomIn) {
+            actionZoomIn();
+        }
+
+        if (e.getSource() == zoomOut) {
+            actionZoomOut();
+        }
+
+        if (e.getSource() == rotateClockwise) {
+            rotate(90);
+        }
+
+        if (e.getSource() == rotateAntiClockwise) {
+            rotate(270);
+        }
+
+        if (e.getSource() == undo) {
+            undo();
+            draw();
+        }
+
+        if (e.getSource() == redo) {
+            redo();
+            draw();
+        }
+
+        if (e.getSource() == statsMenu) {
+            showStatistics();
+        }
+
+        if (e.getSource() == compareMenu) {
+            showComparison();
+        }
+
+        if (e.getSource() == toARGB) {
+            operations.addPerPixel("toARGB", ColorConverter::toARGB, null);
+            draw();
+        }
+
+        if (e.getSource() == toBinary) {
+            final ColorConverter.Dither dither = (ColorConverter.Dither) JOptionPane.showInputDialog(this, "Dither : ", "To Binary",
+                    JOptionPane.PLAIN_MESSAGE, null, ColorConverter.Dither.values(), ColorConverter.Dither.NONE);
+            if (dither == ColorConverter.Dither.NONE) {
+                operations.addPerPixel("toBinary", ColorConverter::toBinary, null);
+            } else if (dither != null) {
+                operations.add("toBinary", im -> ColorConverter.toBinary(im, dither));
+            }
+            draw();
+        }
+
+        if (e.getSource() == toGrayscale) {
+            operations.addPerPixel("toGrayscale", ColorConverter::toGrayscale, null);
+            draw();
+        }
+
+        if (e.getSource() == toIndexed) {
+            operations.add("toIndexed", ColorConverter::toIndexed);
+            draw();
+        }
+
+        if (e.getSource() == toRGB) {
+            operations.addPerPixel("toRGB", ColorConverter::toRGB, null);
+            draw();
+        }
+
+        if (e.getSource() == mirrorH) {
+            operations.add("mirrorH", Filters.mirror(true));
+            draw();
+        }
+
+        if (e.getSource() == mirrorV) {
+            operations.add("mirrorV", Filters.mirror(false));
+            draw();
+        }
+
+        if (e.getSource() == reset) {
+            reset();
+            draw();
+        }
+
         if (e.getSource() == open) {
             try {
                 selectFile();
+                stopAnimation();
                 if (canConvert()) {
+                    hideGrid();
+                    showFileName();
                     displayImage();
+                    startAnimation();
+                    prefetchNeighbours();
+                    watchFolders();
                 }
             } catch (final Exception exception) {
                 System.err.println("Failed to open file: " + exception.getMessage());
@@ -443,10 +2344,50 @@ abstract class JavaImageViewer extends JFrame implements ActionListener {
             }
         }
 
+        if (e.getSource() == openInTab) {
+            final File previous = file;
+            selectFile();
+            if (file != previous) {
+                final File selected = file;
+                file = previous;
+                openInNewTab(selected);
+            }
+        }
+
+        if (e.getSource() == closeTab) {
+            closeTab();
+        }
+
+        if (e.getSource() == folderGrid) {
+            if (grid == null) {
+                showGrid();
+            } else {
+                hideGrid();
+            }
+        }
+
         if (e.getSource() == close) {
             close();
         }
 
+        if (e.getSource() == nextImage) {
+            navigate(1);
+        }
+
+        if (e.getSource() == pauseAnimation && animation != null) {
+            if (animation.isPaused()) {
+                animation.resume();
+                pauseAnimation.setText("Pause Animation");
+            } else {
+                animation.pause();
+                pauseAnimation.setText("Play Animation");
+            }
+        }
+
+        if (e.getSource() == previousImage) {
+            navigate(-1);
+        }
+
         if (e.getSource() == about) {
             displayAbout();
         }
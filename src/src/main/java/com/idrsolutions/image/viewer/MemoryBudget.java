@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Process wide byte budget for cached image data with least recently used eviction.
+ * <p>
+ * The limit defaults to a quarter of the maximum heap and can be set in bytes with the
+ * {@code viewer.memoryBudget} system property. Entries {@link #demote demoted}, such as those of
+ * background tabs, are evicted before any others until they are used again.
+ */
+final class MemoryBudget {
+
+    static final MemoryBudget GLOBAL = new MemoryBudget(Long.getLong("viewer.memoryBudget", Runtime.getRuntime().maxMemory() / 4));
+
+    /**
+     * Something holding memory that can be released on request.
+     */
+    interface Evictable {
+        /**
+         * @return true if the memory was released, false if it is in use and must be kept
+         */
+        boolean evict();
+    }
+
+    private final long limit;
+    private long used;
+    private final LinkedHashMap<Evictable, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashSet<Evictable> demoted = new LinkedHashSet<>();
+
+    MemoryBudget(final long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Accounts bytes to owner, evicting the least recently used entries first if over the limit.
+     * Entries that refuse eviction are skipped, so the limit can be exceeded while everything is in use.
+     */
+    void reserve(final Evictable owner, final long bytes) {
+        int attempts;
+        synchronized (this) {
+            attempts = entries.size();
+        }
+        while (attempts-- > 0) {
+            final Evictable candidate;
+            final long candidateBytes;
+            synchronized (this) {
+                if (used + bytes <= limit) {
+                    break;
+                }
+                final Evictable eldest = nextCandidate(owner);
+                if (eldest == null) {
+                    break;
+                }
+                candidate = eldest;
+                candidateBytes = entries.remove(candidate);
+                demoted.remove(candidate);
+                used -= candidateBytes;
+            }
+            // evict outside the lock so owners can call back into the budget
+            if (!candidate.evict()) {
+                synchronized (this) {
+                    entries.put(candidate, candidateBytes);
+                    used += candidateBytes;
+                }
+            }
+        }
+        synchronized (this) {
+            demoted.remove(owner);
+            final Long previous = entries.put(owner, bytes);
+            used += bytes - (previous == null ? 0 : previous);
+        }
+    }
+
+    /**
+     * @return the first demoted entry, otherwise the least recently used, skipping owner
+     */
+    private Evictable nextCandidate(final Evictable owner) {
+        for (final Evictable e : demoted) {
+            if (e != owner) {
+                return e;
+            }
+        }
+        final Iterator<Evictable> it = entries.keySet().iterator();
+        Evictable eldest = it.hasNext() ? it.next() : null;
+        if (eldest == owner) {
+            eldest = it.hasNext() ? it.next() : null;
+        }
+        return eldest;
+    }
+
+    synchronized void touch(final Evictable owner) {
+        if (entries.get(owner) != null) {
+            demoted.remove(owner);
+        }
+    }
+
+    /**
+     * Marks owner to be evicted ahead of everything not demoted, until it is touched or reserved again.
+     */
+    synchronized void demote(final Evictable owner) {
+        if (entries.containsKey(owner)) {
+            demoted.add(owner);
+        }
+    }
+
+    synchronized void release(final Evictable owner) {
+        demoted.remove(owner);
+        final Long bytes = entries.remove(owner);
+        if (bytes != null) {
+            used -= bytes;
+        }
+    }
+
+    synchronized long getUsed() {
+        return used;
+    }
+
+    long getLimit() {
+        return limit;
+    }
+}
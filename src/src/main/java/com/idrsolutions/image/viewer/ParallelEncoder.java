@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileFilter;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG and striped TIFF encoders that compress independent parts of the image in parallel on the
+ * common fork-join pool and write them out in order.
+ * <p>
+ * PNG rows are filtered and deflated in blocks, each block ending on a sync flush so the raw
+ * deflate streams can be concatenated into a single zlib stream. TIFF strips are each a separate
+ * Deflate stream with horizontal differencing, as allowed by the format.
+ */
+final class ParallelEncoder {
+
+    static final String SUFFIX = " (parallel)";
+
+    private static final int PNG_BLOCK_BYTES = 1 << 18;
+    private static final int TIFF_STRIP_BYTES = 1 << 16;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private ParallelEncoder() {
+    }
+
+    static void addChoosableFilters(final JFileChooser chooser) {
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("PNG" + SUFFIX, "png"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("TIFF" + SUFFIX, "tif"));
+    }
+
+    /**
+     * @return the file extension to use if filter selects a parallel encoder, otherwise null
+     */
+    static String getFormat(final FileFilter filter) {
+        if (filter instanceof FileNameExtensionFilter && filter.getDescription().endsWith(SUFFIX)) {
+            return ((FileNameExtensionFilter) filter).getExtensions()[0];
+        }
+        return null;
+    }
+
+    static void write(final RenderedImage image, final String format, final OutputStream out) throws IOException {
+        if ("png".equalsIgnoreCase(format)) {
+            writePng(image, out);
+        } else if ("tif".equalsIgnoreCase(format) || "tiff".equalsIgnoreCase(format)) {
+            writeTiff(image, out);
+        } else {
+            throw new IOException("No parallel encoder for " + format);
+        }
+    }
+
+    private static int samples(final RenderedImage image) {
+        if (image instanceof BufferedImage && ((BufferedImage) image).getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return 1;
+        }
+        return image.getColorModel().hasAlpha() ? 4 : 3;
+    }
+
+    /**
+     * Reads rows [y, y + rows) as interleaved 8 bit samples.
+     */
+    private static byte[] readRows(final RenderedImage image, final int y, final int rows, final int samples) {
+        if (image instanceof BufferedImage) {
+            return readRows((BufferedImage) image, y, rows, samples);
+        }
+        // other images, such as tile stores, are copied out a band at a time
+        final Raster data = image.getData(new Rectangle(0, y, image.getWidth(), rows));
+        final ColorModel cm = image.getColorModel();
+        final BufferedImage band = new BufferedImage(cm, Raster.createWritableRaster(data.getSampleModel(), data.getDataBuffer(), null),
+                cm.isAlphaPremultiplied(), null);
+        return readRows(band, 0, rows, samples);
+    }
+
+    private static byte[] readRows(final BufferedImage image, final int y, final int rows, final int samples) {
+        final int w = image.getWidth();
+        final byte[] data = new byte[w * rows * samples];
+        if (samples == 1) {
+            image.getRaster().getDataElements(0, y, w, rows, data);
+            return data;
+        }
+        final int[] argb = new int[w];
+        int p = 0;
+        for (int r = 0; r < rows; r++) {
+            image.getRGB(0, y + r, w, 1, argb, 0, w);
+            for (final int c : argb) {
+                data[p++] = (byte) (c >> 16);
+                data[p++] = (byte) (c >> 8);
+                data[p++] = (byte) c;
+                if (samples == 4) {
+                    data[p++] = (byte) (c >>> 24);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static byte[] deflate(final byte[] data, final int len, final boolean raw, final boolean finish) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try {
+            deflater.setInput(data, 0, len);
+            if (finish) {
+                deflater.finish();
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+            final byte[] buf = new byte[1 << 16];
+            while (true) {
+                final int n = deflater.deflate(buf, 0, buf.length, finish ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                out.write(buf, 0, n);
+                if (finish ? deflater.finished() : n < buf.length) {
+                    break;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void writePng(final RenderedImage image, final OutputStream out) throws IOException {
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        final int samples = samples(image);
+        final int stride = w * samples;
+        final int rowsPerBlock = Math.max(1, PNG_BLOCK_BYTES / (stride + 1));
+        final int blocks = (h + rowsPerBlock - 1) / rowsPerBlock;
+
+        final long[] adlers = new long[blocks];
+        final int[] lengths = new int[blocks];
+        final byte[][] compressed = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+            final int y = b * rowsPerBlock;
+            final int rows = Math.min(rowsPerBlock, h - y);
+            final byte[] raw = readRows(image, y, rows, samples);
+            final byte[] prior = y == 0 ? new byte[stride] : readRows(image, y - 1, 1, samples);
+            final byte[] filtered = new byte[rows * (stride + 1)];
+            for (int r = 0; r < rows; r++) {
+                filterRow(raw, r * stride, r == 0 ? prior : raw, r == 0 ? 0 : (r - 1) * stride, stride, samples, filtered, r * (stride + 1));
+            }
+            final Adler32 adler = new Adler32();
+            adler.update(filtered, 0, filtered.length);
+            adlers[b] = adler.getValue();
+            lengths[b] = filtered.length;
+            return deflate(filtered, filtered.length, true, b == blocks - 1);
+        }).toArray(byte[][]::new);
+
+        long adler = 1;
+        for (int b = 0; b < blocks; b++) {
+            adler = adler32Combine(adler, adlers[b], lengths[b]);
+        }
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.write(PNG_SIGNATURE);
+        final ByteBuffer ihdr = ByteBuffer.allocate(13);
+        ihdr.putInt(w).putInt(h).put((byte) 8).put((byte) (samples == 1 ? 0 : samples == 3 ? 2 : 6)).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(data, "IHDR", ihdr.array(), 0, 13);
+        writeChunk(data, "IDAT", new byte[]{0x78, (byte) 0x9C}, 0, 2);
+        for (final byte[] block : compressed) {
+            writeChunk(data, "IDAT", block, 0, block.length);
+        }
+        final byte[] trailer = ByteBuffer.allocate(4).putInt((int) adler).array();
+        writeChunk(data, "IDAT", trailer, 0, 4);
+        writeChunk(data, "IEND", new byte[0], 0, 0);
+        data.flush();
+    }
+
+    /**
+     * Applies the PNG filter with the smallest sum of absolute differences to one row.
+     */
+    private static void filterRow(final byte[] row, final int rowOff, final byte[] prev, final int prevOff,
+                                  final int stride, final int bpp, final byte[] out, final int outOff) {
+        final byte[] scratch = new byte[stride];
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type <= 4; type++) {
+            final byte[] dest = type == 0 ? out : scratch;
+            final int destOff = type == 0 ? outOff + 1 : 0;
+            filter(type, row, rowOff, prev, prevOff, stride, bpp, dest, destOff);
+            long sum = 0;
+            for (int i = 0; i < stride; i++) {
+                sum += Math.abs(dest[destOff + i]);
+            }
+            if (type == 0) {
+                out[outOff] = 0;
+                bestSum = sum;
+            } else if (sum < bestSum) {
+                bestSum = sum;
+                out[outOff] = (byte) type;
+                System.arraycopy(scratch, 0, out, outOff + 1, stride);
+            }
+        }
+    }
+
+    private static void filter(final int type, final byte[] row, final int rowOff, final byte[] prev, final int prevOff,
+                               final int stride, final int bpp, final byte[] out, final int outOff) {
+        switch (type) {
+            case 1:
+                System.arraycopy(row, rowOff, out, outOff, bpp);
+                for (int i = bpp; i < stride; i++) {
+                    out[outOff + i] = (byte) (row[rowOff + i] - row[rowOff + i - bpp]);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < stride; i++) {
+                    out[outOff + i] = (byte) (row[rowOff + i] - prev[prevOff + i]);
+                }
+                break;
+            case 3:
+                for (int i = 0; i < stride; i++) {
+                    final int a = i >= bpp ? row[rowOff + i - bpp] & 0xFF : 0;
+                    out[outOff + i] = (byte) (row[rowOff + i] - ((a + (prev[prevOff + i] & 0xFF)) >> 1));
+                }
+                break;
+            case 4:
+                for (int i = 0; i < stride; i++) {
+                    final int a = i >= bpp ? row[rowOff + i - bpp] & 0xFF : 0;
+                    final int b = prev[prevOff + i] & 0xFF;
+                    final int c = i >= bpp ? prev[prevOff + i - bpp] & 0xFF : 0;
+                    final int pa = Math.abs(b - c);
+                    final int pb = Math.abs(a - c);
+                    final int pc = Math.abs(a + b - c - c);
+                    out[outOff + i] = (byte) (row[rowOff + i] - (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+                }
+                break;
+            default:
+                System.arraycopy(row, rowOff, out, outOff, stride);
+                break;
+        }
+    }
+
+    private static void writeChunk(final DataOutputStream out, final String type, final byte[] data, final int off, final int len) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] typeBytes = type.getBytes("US-ASCII");
+        crc.update(typeBytes);
+        crc.update(data, off, len);
+        out.writeInt(len);
+        out.write(typeBytes);
+        out.write(data, off, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combines the Adler-32 of two adjacent byte sequences, as zlib's adler32_combine.
+     */
+    private static long adler32Combine(final long adler1, final long adler2, final long len2) {
+        final long base = 65521;
+        final long rem = len2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    static void writeTiff(final RenderedImage image, final OutputStream out) throws IOException {
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        final int samples = samples(image);
+        final int stride = w * samples;
+        final int rowsPerStrip = Math.max(1, TIFF_STRIP_BYTES / stride);
+        final int strips = (h + rowsPerStrip - 1) / rowsPerStrip;
+
+        final byte[][] compressed = IntStream.range(0, strips).parallel().mapToObj(s -> {
+            final int y = s * rowsPerStrip;
+            final int rows = Math.min(rowsPerStrip, h - y);
+            final byte[] raw = readRows(image, y, rows, samples);
+            // horizontal differencing predictor, right to left so each sample uses its original neighbour
+            for (int r = 0; r < rows; r++) {
+                final int start = r * stride;
+                for (int i = start + stride - 1; i >= start + samples; i--) {
+                    raw[i] -= raw[i - samples];
+                }
+            }
+            return deflate(raw, raw.length, false, true);
+        }).toArray(byte[][]::new);
+
+        final int tagCount = samples == 4 ? 12 : 11;
+        final int headerSize = 8;
+        long offset = headerSize;
+        final long[] stripOffsets = new long[strips];
+        for (int s = 0; s < strips; s++) {
+            stripOffsets[s] = offset;
+            offset += compressed[s].length;
+        }
+        offset += offset & 1;
+        final long ifdOffset = offset;
+        final long extraOffset = ifdOffset + 2 + tagCount * 12L + 4;
+        final long bitsOffset = extraOffset;
+        final long offsetsOffset = bitsOffset + samples * 2L;
+        final long countsOffset = offsetsOffset + strips * 4L;
+
+        final ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt((int) ifdOffset);
+        out.write(header.array());
+        long written = headerSize;
+        for (final byte[] strip : compressed) {
+            out.write(strip);
+            written += strip.length;
+        }
+        if (written < ifdOffset) {
+            out.write(0);
+        }
+
+        final ByteBuffer ifd = ByteBuffer.allocate((int) (countsOffset + strips * 4L - ifdOffset)).order(ByteOrder.LITTLE_ENDIAN);
+        ifd.putShort((short) tagCount);
+        putTag(ifd, 256, 4, 1, w);
+        putTag(ifd, 257, 4, 1, h);
+        putTag(ifd, 258, 3, samples, samples == 1 ? 8 : bitsOffset);
+        putTag(ifd, 259, 3, 1, 8);
+        putTag(ifd, 262, 3, 1, samples == 1 ? 1 : 2);
+        putTag(ifd, 273, 4, strips, strips == 1 ? stripOffsets[0] : offsetsOffset);
+        putTag(ifd, 277, 3, 1, samples);
+        putTag(ifd, 278, 4, 1, rowsPerStrip);
+        putTag(ifd, 279, 4, strips, strips == 1 ? compressed[0].length : countsOffset);
+        putTag(ifd, 284, 3, 1, 1);
+        putTag(ifd, 317, 3, 1, 2);
+        if (samples == 4) {
+            putTag(ifd, 338, 3, 1, 2);
+        }
+        ifd.putInt(0);
+        for (int i = 0; i < samples; i++) {
+            ifd.putShort((short) 8);
+        }
+        for (final long o : stripOffsets) {
+            ifd.putInt((int) o);
+        }
+        for (final byte[] strip : compressed) {
+            ifd.putInt(strip.length);
+        }
+        out.write(ifd.array(), 0, ifd.position());
+        out.flush();
+    }
+
+    private static void putTag(final ByteBuffer ifd, final int tag, final int type, final int count, final long value) {
+        ifd.putShort((short) tag).putShort((short) type).putInt(count);
+        if (type == 3 && count == 1) {
+            ifd.putShort((short) value).putShort((short) 0);
+        } else {
+            ifd.putInt((int) value);
+        }
+    }
+}
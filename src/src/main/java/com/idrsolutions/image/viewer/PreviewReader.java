@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads a quick low resolution version of an image to show while the full decode runs.
+ * <p>
+ * The embedded EXIF/TIFF JPEG thumbnail is used when present, otherwise a subsampled decode by a
+ * backend with {@link ImageBackend.Capability#SUBSAMPLING}.
+ */
+final class PreviewReader {
+
+    private static final int TAG_SUB_IFDS = 0x14A;
+    private static final int TAG_JPEG_OFFSET = 0x201;
+    private static final int TAG_JPEG_LENGTH = 0x202;
+    private static final int MAX_IFDS = 16;
+    private static final int MAX_MARKERS = 64;
+    private static final int MAX_THUMBNAIL_BYTES = 16 << 20;
+
+    private PreviewReader() {
+    }
+
+    /**
+     * @param file    the image file
+     * @param maxSize longest edge wanted for a subsampled decode
+     * @return a preview image or null if none could be produced cheaply
+     */
+    static BufferedImage read(final File file, final int maxSize) {
+        try {
+            final BufferedImage embedded = readEmbedded(file);
+            if (embedded != null) {
+                return embedded;
+            }
+        } catch (final Exception e) {
+            // a malformed or truncated thumbnail is no reason not to subsample the image
+            System.err.println("Unable to read embedded preview: " + e.getMessage());
+        }
+        try {
+            return readSubsampled(file, maxSize);
+        } catch (final Exception e) {
+            System.err.println("Unable to read preview: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the thumbnail reading only the markers and directories on the way to it, so the size of
+     * the file does not matter.
+     */
+    private static BufferedImage readEmbedded(final File file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < 8) {
+                return null;
+            }
+            final ByteBuffer start = read(channel, 0, 2);
+            final int b0 = start.get(0) & 0xFF;
+            final int b1 = start.get(1) & 0xFF;
+            final byte[] jpeg;
+            if ((b0 == 'I' && b1 == 'I') || (b0 == 'M' && b1 == 'M')) {
+                jpeg = findJpegThumbnail(channel, 0, size);
+            } else if (b0 == 0xFF && b1 == 0xD8) {
+                final long[] exif = findExif(channel, size);
+                jpeg = exif == null ? null : findJpegThumbnail(channel, exif[0], exif[1]);
+            } else {
+                jpeg = null;
+            }
+            return jpeg == null ? null : ImageBackends.read(jpeg, "jpg");
+        }
+    }
+
+    /**
+     * Walks the JPEG markers up to the start of scan looking for the APP1 Exif segment.
+     *
+     * @return the file position and length of the TIFF structure in it, or null
+     */
+    private static long[] findExif(final FileChannel channel, final long size) throws IOException {
+        long pos = 2;
+        for (int i = 0; i < MAX_MARKERS && pos + 10 <= size; i++) {
+            final ByteBuffer segment = read(channel, pos, 10);
+            if ((segment.get(0) & 0xFF) != 0xFF) {
+                break;
+            }
+            final int marker = segment.get(1) & 0xFF;
+            final int length = segment.getShort(2) & 0xFFFF;
+            if (marker == 0xDA) {
+                break;
+            }
+            if (marker == 0xE1 && length > 8 && segment.get(4) == 'E' && segment.get(5) == 'x'
+                    && segment.get(6) == 'i' && segment.get(7) == 'f') {
+                return new long[]{pos + 10, Math.min(length - 8, size - pos - 10)};
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    /**
+     * Follows the image directories of the TIFF structure at base, checking every offset against
+     * its length.
+     */
+    private static byte[] findJpegThumbnail(final FileChannel channel, final long base, final long length) throws IOException {
+        final ByteBuffer header = read(channel, base, 8);
+        final ByteOrder order = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        header.order(order);
+        final Deque<Long> pending = new ArrayDeque<>();
+        final Set<Long> visited = new HashSet<>();
+        pending.add(header.getInt(4) & 0xFFFFFFFFL);
+
+        while (!pending.isEmpty() && visited.size() < MAX_IFDS) {
+            final long ifd = pending.poll();
+            if (ifd < 8 || ifd + 2 > length || !visited.add(ifd)) {
+                continue;
+            }
+            final int count = read(channel, base + ifd, 2).order(order).getShort(0) & 0xFFFF;
+            if (ifd + 2 + count * 12L + 4 > length) {
+                continue;
+            }
+            final ByteBuffer entries = read(channel, base + ifd + 2, count * 12 + 4).order(order);
+            long jpegOffset = 0;
+            long jpegLength = 0;
+            for (int i = 0; i < count; i++) {
+                final int entry = i * 12;
+                final int tag = entries.getShort(entry) & 0xFFFF;
+                final int type = entries.getShort(entry + 2) & 0xFFFF;
+                final long n = entries.getInt(entry + 4) & 0xFFFFFFFFL;
+                final long value = type == 3 ? entries.getShort(entry + 8) & 0xFFFF : entries.getInt(entry + 8) & 0xFFFFFFFFL;
+                if (tag == TAG_JPEG_OFFSET) {
+                    jpegOffset = value;
+                } else if (tag == TAG_JPEG_LENGTH) {
+                    jpegLength = value;
+                } else if (tag == TAG_SUB_IFDS) {
+                    if (n == 1) {
+                        pending.add(value);
+                    } else if (n > 1 && n <= MAX_IFDS && value + n * 4 <= length) {
+                        final ByteBuffer subIfds = read(channel, base + value, (int) n * 4).order(order);
+                        for (int s = 0; s < n; s++) {
+                            pending.add(subIfds.getInt(s * 4) & 0xFFFFFFFFL);
+                        }
+                    }
+                }
+            }
+            if (jpegOffset > 0 && jpegLength > 0 && jpegLength <= MAX_THUMBNAIL_BYTES && jpegOffset + jpegLength <= length) {
+                return read(channel, base + jpegOffset, (int) jpegLength).array();
+            }
+            pending.add(entries.getInt(count * 12) & 0xFFFFFFFFL);
+        }
+        return null;
+    }
+
+    /**
+     * @return length bytes from the file at position
+     * @throws EOFException if the file ends first
+     */
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+        return buffer;
+    }
+
+    private static BufferedImage readSubsampled(final File file, final int maxSize) throws Exception {
+        return ImageBackends.readSubsampled(file, maxSize, maxSize);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Ordered list of image operations with undo and redo.
+ * <p>
+ * Each step is keyed by a short name so the list can be shown or compared, and can be any
+ * operation, so viewer specific steps such as {@link ColorConverter} sit alongside library ones.
+ * <p>
+ * {@link #apply(Object, Supplier)} runs the chain as a pipeline, keeping the output of every step
+ * for the current input. Steps are immutable, so a cached output stays valid for as long as the
+ * steps before it are unchanged: adding a step computes only that step, and undo or redo reuse the
+ * stored outputs. The input and intermediate outputs are accounted against {@link MemoryBudget#GLOBAL}
+ * and dropped least recently used first, in which case the pipeline resumes from the nearest earlier
+ * output still held, or asks for the input again.
+ * <p>
+ * A chain made only of per pixel steps can also be applied a tile at a time to a {@link TileStore},
+ * for images too large to process whole.
+ */
+final class ProcessingChain {
+
+    static final class Step {
+        final String key;
+        final UnaryOperator<BufferedImage> op;
+        // the unmasked operation of a per pixel step, or null for one that needs the whole image
+        final UnaryOperator<BufferedImage> pixelOp;
+        final RegionMask mask;
+
+        Step(final String key, final UnaryOperator<BufferedImage> op) {
+            this(key, op, null, null);
+        }
+
+        Step(final String key, final UnaryOperator<BufferedImage> op, final UnaryOperator<BufferedImage> pixelOp, final RegionMask mask) {
+            this.key = key;
+            this.op = op;
+            this.pixelOp = pixelOp;
+            this.mask = mask;
+        }
+    }
+
+    /**
+     * Output of a step, held until the memory budget asks for it back.
+     */
+    private static final class Result implements MemoryBudget.Evictable {
+        private BufferedImage image;
+
+        Result(final BufferedImage image) {
+            this.image = image;
+            MemoryBudget.GLOBAL.reserve(this, (long) image.getWidth() * image.getHeight() * Math.max(1, image.getColorModel().getPixelSize()) / 8);
+        }
+
+        synchronized BufferedImage get() {
+            if (image != null) {
+                MemoryBudget.GLOBAL.touch(this);
+            }
+            return image;
+        }
+
+        @Override
+        public synchronized boolean evict() {
+            image = null;
+            return true;
+        }
+
+        synchronized void release() {
+            MemoryBudget.GLOBAL.release(this);
+            image = null;
+        }
+    }
+
+    /**
+     * An undone step and its output, if it was still cached.
+     */
+    private static final class Undone {
+        final Step step;
+        final Result result;
+
+        Undone(final Step step, final Result result) {
+            this.step = step;
+            this.result = result;
+        }
+
+        void release() {
+            if (result != null) {
+                result.release();
+            }
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final Deque<Undone> undone = new ArrayDeque<>();
+    // results.get(i) is the output of steps 0 to i for source; it may be shorter than steps
+    private final List<Result> results = new ArrayList<>();
+    private Object sourceKey;
+    private Result source;
+
+    void add(final String key, final UnaryOperator<BufferedImage> op) {
+        add(new Step(key, op));
+    }
+
+    /**
+     * Adds a step whose output pixels each depend only on the input pixel at the same place.
+     *
+     * @param mask limits the step to a selection, or null for the whole image
+     */
+    void addPerPixel(final String key, final UnaryOperator<BufferedImage> op, final RegionMask mask) {
+        add(new Step(key, mask == null ? op : mask.mask(op, 0), op, mask));
+    }
+
+    private void add(final Step step) {
+        steps.add(step);
+        undone.forEach(Undone::release);
+        undone.clear();
+    }
+
+    void undo() {
+        if (!steps.isEmpty()) {
+            final Step step = steps.remove(steps.size() - 1);
+            undone.push(new Undone(step, results.size() > steps.size() ? results.remove(results.size() - 1) : null));
+        }
+    }
+
+    void redo() {
+        if (!undone.isEmpty()) {
+            final Undone u = undone.pop();
+            steps.add(u.step);
+            // the output is only reusable if the outputs of all earlier steps are still in place
+            if (u.result != null && results.size() == steps.size() - 1) {
+                results.add(u.result);
+            } else {
+                u.release();
+            }
+        }
+    }
+
+    int size() {
+        return steps.size();
+    }
+
+    /**
+     * @return true if every step is per pixel, so the chain can be applied a tile at a time
+     */
+    boolean isPerPixel() {
+        for (final Step step : steps) {
+            if (step.pixelOp == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<Step> getSteps() {
+        return new ArrayList<>(steps);
+    }
+
+    /**
+     * @return a copy of the current steps, safe to apply on another thread while this chain changes
+     */
+    ProcessingChain snapshot() {
+        final ProcessingChain copy = new ProcessingChain();
+        copy.steps.addAll(steps);
+        return copy;
+    }
+
+    /**
+     * Applies the chain to the input identified by key, reusing the outputs cached for that input.
+     *
+     * @param key   identifies the input, such as the file, page and view size it was produced for
+     * @param input produces the input when key differs from the last call
+     */
+    BufferedImage apply(final Object key, final Supplier<BufferedImage> input) {
+        if (!key.equals(sourceKey)) {
+            clearResults();
+            sourceKey = key;
+        }
+        int start = results.size() - 1;
+        BufferedImage im = null;
+        while (start >= 0 && (im = results.get(start).get()) == null) {
+            start--;
+        }
+        while (results.size() > start + 1) {
+            results.remove(results.size() - 1).release();
+        }
+        if (start < 0) {
+            im = source == null ? null : source.get();
+            if (im == null) {
+                if (source != null) {
+                    source.release();
+                }
+                im = input.get();
+                if (im == null) {
+                    source = null;
+                    return null;
+                }
+                source = new Result(im);
+            }
+        }
+        for (int i = start + 1; i < steps.size(); i++) {
+            im = steps.get(i).op.apply(im);
+            results.add(new Result(im));
+        }
+        return im;
+    }
+
+    /**
+     * @return the input of the last {@link #apply(Object, Supplier)}, or null if the memory budget
+     * has taken it back
+     */
+    BufferedImage getInput() {
+        return source == null ? null : source.get();
+    }
+
+    /**
+     * Lets the memory budget take this chain's input and outputs before anything else, for a
+     * document that is no longer shown. They stay usable until evicted.
+     */
+    void demote() {
+        if (source != null) {
+            MemoryBudget.GLOBAL.demote(source);
+        }
+        results.forEach(MemoryBudget.GLOBAL::demote);
+        undone.forEach(u -> {
+            if (u.result != null) {
+                MemoryBudget.GLOBAL.demote(u.result);
+            }
+        });
+    }
+
+    /**
+     * Drops the input and all cached outputs, for when the chain is discarded.
+     */
+    void clearResults() {
+        results.forEach(Result::release);
+        results.clear();
+        undone.forEach(Undone::release);
+        if (source != null) {
+            source.release();
+        }
+        source = null;
+        sourceKey = null;
+    }
+
+    /**
+     * Applies the chain to image without caching, for full resolution and background use.
+     */
+    BufferedImage apply(final BufferedImage image) {
+        BufferedImage im = image;
+        for (final Step step : steps) {
+            im = step.op.apply(im);
+        }
+        return im;
+    }
+
+    /**
+     * Applies a per pixel chain to each tile of src in parallel, into a new store of the same size.
+     */
+    TileStore apply(final TileStore src) throws IOException {
+        if (!isPerPixel()) {
+            throw new IllegalStateException("Steps need the whole image");
+        }
+        final int width = src.getWidth();
+        final int height = src.getHeight();
+        final int tilesX = (width + TileStore.TILE_SIZE - 1) / TileStore.TILE_SIZE;
+        final int tilesY = (height + TileStore.TILE_SIZE - 1) / TileStore.TILE_SIZE;
+        final TileStore out = new TileStore(width, height);
+        try {
+            IntStream.range(0, tilesX * tilesY).parallel().forEach(i -> {
+                final int tx = i % tilesX;
+                final int ty = i / tilesX;
+                final Rectangle area = src.tileBounds(tx, ty);
+                try {
+                    BufferedImage im = src.getTile(tx, ty);
+                    for (final Step step : steps) {
+                        im = (step.mask == null ? step.pixelOp : step.mask.mask(step.pixelOp, area, width, height)).apply(im);
+                    }
+                    out.setPixels(area.x, area.y, im);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            out.close();
+            throw e.getCause();
+        } catch (final RuntimeException e) {
+            out.close();
+            throw e;
+        }
+        return out;
+    }
+}
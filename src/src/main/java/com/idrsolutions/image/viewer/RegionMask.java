@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A selected shape used to limit processing to part of an image.
+ * <p>
+ * The shape is stored relative to the size of the image it was drawn on, so the same selection
+ * applies to the screen image and the full resolution one. It is rasterised once per image size
+ * into an 8 bit coverage mask over its bounding box; masked operations only process that box plus
+ * a margin and blend the result back through the mask.
+ */
+final class RegionMask {
+
+    private static final int MAX_SIZES = 4;
+
+    private static final class Raster {
+        final Rectangle bounds;
+        final byte[] coverage;
+
+        Raster(final Rectangle bounds, final byte[] coverage) {
+            this.bounds = bounds;
+            this.coverage = coverage;
+        }
+    }
+
+    private final Shape shape;
+    private final Map<Dimension, Raster> rasters = new LinkedHashMap<Dimension, Raster>(MAX_SIZES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Dimension, Raster> eldest) {
+            return size() > MAX_SIZES;
+        }
+    };
+
+    /**
+     * @param shape selection in the coordinates of an image of the given size
+     */
+    RegionMask(final Shape shape, final int width, final int height) {
+        this.shape = AffineTransform.getScaleInstance(1.0 / width, 1.0 / height).createTransformedShape(shape);
+    }
+
+    /**
+     * @param margin pixels around the selection the operation reads, such as a blur radius
+     * @return op limited to the selection, for operations which keep the image size
+     */
+    UnaryOperator<BufferedImage> mask(final UnaryOperator<BufferedImage> op, final int margin) {
+        return src -> {
+            final int w = src.getWidth();
+            final int h = src.getHeight();
+            final Raster mask = getRaster(w, h);
+            if (mask.bounds.isEmpty()) {
+                return src;
+            }
+            final Rectangle box = mask.bounds;
+            final Rectangle area = new Rectangle(box.x - margin, box.y - margin, box.width + margin * 2, box.height + margin * 2)
+                    .intersection(new Rectangle(0, 0, w, h));
+
+            final BufferedImage region = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g = region.createGraphics();
+            g.drawImage(src, -area.x, -area.y, null);
+            g.dispose();
+            final BufferedImage processed = op.apply(region);
+            if (processed.getWidth() != area.width || processed.getHeight() != area.height) {
+                return processed == region ? src : op.apply(src);
+            }
+
+            return composite(src, processed, area.x, area.y, mask);
+        };
+    }
+
+    /**
+     * @param area the part of an image of the given size that the operation is given, such as a tile
+     * @return a per pixel op limited to the selection, rasterised for that part alone
+     */
+    UnaryOperator<BufferedImage> mask(final UnaryOperator<BufferedImage> op, final Rectangle area, final int width, final int height) {
+        return src -> {
+            final AffineTransform at = AffineTransform.getTranslateInstance(-area.x, -area.y);
+            at.scale(width, height);
+            final Raster mask = rasterise(at.createTransformedShape(shape), src.getWidth(), src.getHeight());
+            return mask.bounds.isEmpty() ? src : composite(src, op.apply(src), 0, 0, mask);
+        };
+    }
+
+    /**
+     * @return a copy of src with processed, whose top left is at x, y of src, blended in through mask
+     */
+    private static BufferedImage composite(final BufferedImage src, final BufferedImage processed, final int x0, final int y0, final Raster mask) {
+        final Rectangle box = mask.bounds;
+        final BufferedImage out = new BufferedImage(src.getColorModel(), src.copyData(null), src.isAlphaPremultiplied(), null);
+        IntStream.range(0, box.height).parallel().forEach(row -> {
+            final int y = box.y + row;
+            final int[] before = new int[box.width];
+            final int[] after = new int[box.width];
+            src.getRGB(box.x, y, box.width, 1, before, 0, box.width);
+            processed.getRGB(box.x - x0, y - y0, box.width, 1, after, 0, box.width);
+            final int off = row * box.width;
+            for (int x = 0; x < box.width; x++) {
+                after[x] = blend(before[x], after[x], mask.coverage[off + x] & 0xFF);
+            }
+            out.setRGB(box.x, y, box.width, 1, after, 0, box.width);
+        });
+        return out;
+    }
+
+    private synchronized Raster getRaster(final int w, final int h) {
+        return rasters.computeIfAbsent(new Dimension(w, h), d -> rasterise(AffineTransform.getScaleInstance(w, h).createTransformedShape(shape), w, h));
+    }
+
+    private static Raster rasterise(final Shape scaled, final int w, final int h) {
+        final Rectangle bounds = scaled.getBounds().intersection(new Rectangle(0, 0, w, h));
+        if (bounds.isEmpty()) {
+            return new Raster(new Rectangle(), new byte[0]);
+        }
+        final BufferedImage coverage = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = coverage.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.translate(-bounds.x, -bounds.y);
+        g.setColor(Color.WHITE);
+        g.fill(scaled);
+        g.dispose();
+        return new Raster(bounds, ((DataBufferByte) coverage.getRaster().getDataBuffer()).getData());
+    }
+
+    private static int blend(final int before, final int after, final int a) {
+        if (a == 0) {
+            return before;
+        }
+        if (a == 255) {
+            return after;
+        }
+        int out = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int b = before >>> shift & 0xFF;
+            final int c = after >>> shift & 0xFF;
+            out |= (b + ((c - b) * a + 127) / 255) << shift;
+        }
+        return out;
+    }
+}
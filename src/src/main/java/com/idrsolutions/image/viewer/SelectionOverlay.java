@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Ellipse2D;
+import java.util.function.Consumer;
+
+/**
+ * Lets the user drag out a rectangle or ellipse over the image shown in a label. It sits over the
+ * image while dragging and removes itself on release, handing over the shape in the coordinates of
+ * the image as shown.
+ */
+final class SelectionOverlay extends JComponent {
+
+    private static final Stroke DASHED = new BasicStroke(2.5F, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1.5F, new float[]{6F, 6F}, 0F);
+
+    private final boolean ellipse;
+    private Point start;
+    private Shape shape;
+
+    private SelectionOverlay(final boolean ellipse, final Consumer<Shape> selected) {
+        this.ellipse = ellipse;
+        setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
+        final MouseAdapter drag = new MouseAdapter() {
+            @Override
+            public void mousePressed(final MouseEvent e) {
+                start = inside(e.getPoint());
+            }
+
+            @Override
+            public void mouseDragged(final MouseEvent e) {
+                if (start != null) {
+                    shape = create(start, inside(e.getPoint()));
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(final MouseEvent e) {
+                final JComponent parent = (JComponent) getParent();
+                parent.remove(SelectionOverlay.this);
+                parent.repaint();
+                if (shape != null && !shape.getBounds().isEmpty()) {
+                    selected.accept(shape);
+                }
+            }
+        };
+        addMouseListener(drag);
+        addMouseMotionListener(drag);
+    }
+
+    /**
+     * Places a selection tool over an image of the given size shown centred in label.
+     */
+    static void show(final JLabel label, final int imageWidth, final int imageHeight, final boolean ellipse, final Consumer<Shape> selected) {
+        final SelectionOverlay overlay = new SelectionOverlay(ellipse, selected);
+        overlay.setBounds(Math.max(0, (label.getWidth() - imageWidth) / 2), Math.max(0, (label.getHeight() - imageHeight) / 2),
+                imageWidth, imageHeight);
+        label.add(overlay);
+        label.repaint();
+    }
+
+    private Point inside(final Point p) {
+        return new Point(Math.max(0, Math.min(getWidth(), p.x)), Math.max(0, Math.min(getHeight(), p.y)));
+    }
+
+    private Shape create(final Point a, final Point b) {
+        final Rectangle r = new Rectangle(a);
+        r.add(b);
+        return ellipse ? new Ellipse2D.Double(r.x, r.y, r.width, r.height) : r;
+    }
+
+    @Override
+    protected void paintComponent(final Graphics g) {
+        if (shape != null) {
+            final Graphics2D g2d = (Graphics2D) g;
+            g2d.setColor(Color.BLACK);
+            g2d.fill(DASHED.createStrokedShape(shape));
+        }
+    }
+}
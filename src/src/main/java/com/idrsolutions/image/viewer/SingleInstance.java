@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lets a newly launched viewer hand its files to one already running, so each open from a file
+ * manager does not pay for a new JVM.
+ * <p>
+ * The running viewer listens on a loopback port written, with a random token, to a file under
+ * {@code ~/.idrsolutions/viewer} readable only by the user. A new launch sends the token and its
+ * file paths and exits if the running viewer accepts them. A file lock held from the check until
+ * the first viewer is listening stops two launches at once from both starting a viewer. Set
+ * {@code viewer.singleInstance=false} to always start a new JVM.
+ */
+final class SingleInstance implements Closeable {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("viewer.singleInstance"));
+
+    private static final File DIR = new File(System.getProperty("user.home"), ".idrsolutions/viewer");
+    private static final String OK = "OK";
+    private static final int TIMEOUT = 2000;
+
+    private final File portFile;
+    private final FileChannel lockChannel;
+    private FileLock lock;
+
+    private SingleInstance(final String name, final FileChannel lockChannel, final FileLock lock) {
+        portFile = new File(DIR, name + ".instance");
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Takes the launch lock for the named viewer, waiting while another launch holds it.
+     */
+    static SingleInstance lock(final String name) throws IOException {
+        if (!DIR.isDirectory() && !DIR.mkdirs()) {
+            throw new IOException("Cannot create " + DIR);
+        }
+        final FileChannel channel = FileChannel.open(new File(DIR, name + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            return new SingleInstance(name, channel, channel.lock());
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends files to the running viewer, which opens an empty window if there are none.
+     *
+     * @return true if a running viewer accepted them
+     */
+    boolean forward(final List<File> files) {
+        if (!portFile.isFile()) {
+            return false;
+        }
+        try {
+            final List<String> lines = Files.readAllLines(portFile.toPath(), StandardCharsets.UTF_8);
+            final int port = Integer.parseInt(lines.get(0).trim());
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), TIMEOUT);
+                socket.setSoTimeout(TIMEOUT);
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                out.write(lines.get(1).trim() + '\n');
+                for (final File f : files) {
+                    out.write(f.getAbsolutePath() + '\n');
+                }
+                out.write('\n');
+                out.flush();
+                final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                return OK.equals(in.readLine());
+            }
+        } catch (final IOException | RuntimeException e) {
+            // stale file from a viewer that exited without cleaning up
+            return false;
+        }
+    }
+
+    /**
+     * Starts accepting files from later launches and releases the launch lock. The handler is
+     * called on the event dispatch thread.
+     */
+    void listen(final Consumer<List<File>> handler) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        final byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        final StringBuilder token = new StringBuilder();
+        for (final byte b : secret) {
+            token.append(String.format("%02x", b));
+        }
+
+        final File tmp = new File(DIR, portFile.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        Files.createFile(tmp.toPath());
+        try {
+            Files.setPosixFilePermissions(tmp.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (final UnsupportedOperationException e) {
+            // not a POSIX file system, the user's profile folder protects it instead
+        }
+        Files.write(tmp.toPath(), (server.getLocalPort() + "\n" + token + '\n').getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), portFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> portFile.delete()));
+
+        final Thread acceptor = new Thread(() -> accept(server, token.toString(), handler), "single-instance");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        close();
+    }
+
+    private static void accept(final ServerSocket server, final String token, final Consumer<List<File>> handler) {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(TIMEOUT);
+                final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                if (!token.equals(in.readLine())) {
+                    continue;
+                }
+                final List<File> files = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    files.add(new File(line));
+                }
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                out.write(OK + '\n');
+                out.flush();
+                SwingUtilities.invokeLater(() -> handler.accept(files));
+            } catch (final IOException e) {
+                System.err.println("Single instance request failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Releases the launch lock.
+     */
+    @Override
+    public void close() throws IOException {
+        if (lock != null) {
+            lock.release();
+            lock = null;
+            lockChannel.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import java.awt.AlphaComposite;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Start-up timing and background warm-up.
+ * <p>
+ * The viewers show their frame before anything slow is initialised. A daemon thread then loads the
+ * ImageIO plugin registry, the image backends and a PNG and JPEG codec, and prepares the values
+ * dialogs would otherwise compute on every opening. Those values are computed by whichever comes
+ * first, the warm-up or the dialog. Set {@code viewer.warmup=false} to turn the warm-up off.
+ * <p>
+ * With {@code viewer.startup.timing} set, the time from {@code main} to the frame being shown and
+ * to the first image being displayed is printed to stderr; {@code viewer.startup.exit} also exits
+ * once the first image is displayed, for {@link StartupBenchmark}.
+ */
+final class Startup {
+
+    static final String TIMING_PREFIX = "startup ";
+
+    private static final long START = System.nanoTime();
+    private static final boolean TIMING = Boolean.getBoolean("viewer.startup.timing");
+    private static final boolean EXIT = Boolean.getBoolean("viewer.startup.exit");
+
+    private static final FutureTask<String[]> FONT_FAMILIES = new FutureTask<>(
+            () -> GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+    private static final FutureTask<Map<String, AlphaComposite>> ALPHA_COMPOSITES = new FutureTask<>(Startup::findAlphaComposites);
+
+    private static final AtomicBoolean FIRST_IMAGE = new AtomicBoolean(true);
+
+    private Startup() {
+    }
+
+    /**
+     * Called first thing in main, so timings are measured from there.
+     */
+    static void begin() {
+        if (!"false".equals(System.getProperty("viewer.warmup"))) {
+            final Thread warmUp = new Thread(Startup::warmUp, "viewer-warmup");
+            warmUp.setDaemon(true);
+            warmUp.setPriority(Thread.MIN_PRIORITY);
+            warmUp.start();
+        }
+    }
+
+    static void mark(final String milestone) {
+        if (TIMING) {
+            System.err.printf(Locale.ROOT, "%s%s %.1f ms%n", TIMING_PREFIX, milestone, (System.nanoTime() - START) / 1e6);
+        }
+    }
+
+    /**
+     * Records the first image reaching the screen, once the repaint queued for it has run.
+     */
+    static void imageDisplayed() {
+        if (!FIRST_IMAGE.getAndSet(false)) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            mark("image");
+            if (EXIT) {
+                System.exit(0);
+            }
+        });
+    }
+
+    /**
+     * @return the installed font family names
+     */
+    static String[] getFontFamilies() {
+        return get(FONT_FAMILIES);
+    }
+
+    /**
+     * @return the predefined {@link AlphaComposite} instances by field name
+     */
+    static Map<String, AlphaComposite> getAlphaComposites() {
+        return get(ALPHA_COMPOSITES);
+    }
+
+    private static <T> T get(final FutureTask<T> task) {
+        // runs the task here if the warm-up has not started it, otherwise waits for the warm-up
+        task.run();
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void warmUp() {
+        try {
+            ImageIO.getReaderFormatNames();
+            ImageBackends.all();
+            final BufferedImage pixel = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            for (final String format : new String[]{"png", "jpg"}) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(pixel, format, out);
+                ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+            }
+        } catch (final IOException | RuntimeException e) {
+            System.err.println("Warm-up failed: " + e);
+        }
+        ALPHA_COMPOSITES.run();
+        FONT_FAMILIES.run();
+        mark("warm");
+    }
+
+    private static Map<String, AlphaComposite> findAlphaComposites() throws IllegalAccessException {
+        final Map<String, AlphaComposite> composites = new TreeMap<>();
+        for (final Field f : AlphaComposite.class.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) && f.getType() == AlphaComposite.class) {
+                composites.put(f.getName(), (AlphaComposite) f.get(null));
+            }
+        }
+        return Collections.unmodifiableMap(composites);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures time to first image by launching a viewer repeatedly in a fresh JVM.
+ * <p>
+ * Usage: {@code StartupBenchmark <image file> [runs] [viewer class] [-archive <jsa file>]
+ * [-csv <file>] [-- extra JVM options]}. The viewer, by default {@link ImageIOImageViewer}, is
+ * started with {@link Startup} timing enabled and exits as soon as the image is displayed. Each run
+ * reports the time from {@code main} to the frame being shown and to the image being displayed, and
+ * the wall time from launching the process to its exit. The configurations compared are the
+ * default start, start without the warm-up thread and, given an archive from the {@code cds}
+ * profile, start with the class data sharing archive. Runs of the configurations are interleaved
+ * so drift affects all alike. With {@code -csv} the medians are appended to a file to keep a record
+ * across builds. Run it with the class path the archive was built with, such as
+ * {@code java -cp target/viewer-1.0.jar}, otherwise the JVM ignores the archive. A display is required.
+ */
+final class StartupBenchmark {
+
+    /**
+     * A way of starting the viewer.
+     */
+    private static final class Config {
+        final String name;
+        final List<String> options;
+        final Map<String, List<Double>> timings = new LinkedHashMap<>();
+
+        Config(final String name, final String... options) {
+            this.name = name;
+            this.options = Arrays.asList(options);
+        }
+    }
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final List<String> jvmOptions = new ArrayList<>();
+        final List<String> positional = new ArrayList<>();
+        File archive = null;
+        File csv = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--".equals(args[i])) {
+                jvmOptions.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if ("-archive".equals(args[i])) {
+                archive = new File(args[++i]);
+            } else if ("-csv".equals(args[i])) {
+                csv = new File(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.isEmpty() || !new File(positional.get(0)).isFile() || archive != null && !archive.isFile()) {
+            System.err.println("Usage: StartupBenchmark <image file> [runs] [viewer class] [-archive <jsa file>] [-csv <file>] [-- extra JVM options]");
+            return;
+        }
+        final File image = new File(positional.get(0));
+        final int runs = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 10;
+        final String viewer = positional.size() > 2 ? positional.get(2) : ImageIOImageViewer.class.getName();
+
+        final List<Config> configs = new ArrayList<>();
+        configs.add(new Config("default"));
+        configs.add(new Config("no-warmup", "-Dviewer.warmup=false"));
+        if (archive != null) {
+            configs.add(new Config("cds", "-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-Xshare:auto"));
+        }
+
+        System.out.printf("%s, %s, %d runs%n", viewer, image.getName(), runs);
+        for (int i = 0; i < runs; i++) {
+            for (final Config config : configs) {
+                final List<String> options = new ArrayList<>(jvmOptions);
+                options.addAll(config.options);
+                launch(viewer, image, options, config.timings);
+            }
+        }
+
+        final StringBuilder record = new StringBuilder();
+        final String date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT).format(new Date());
+        for (final Config config : configs) {
+            System.out.println(config.name);
+            for (final Map.Entry<String, List<Double>> e : config.timings.entrySet()) {
+                final double[] sorted = e.getValue().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+                final double median = sorted[sorted.length / 2];
+                System.out.printf("  %-8s median %8.1f ms  min %8.1f ms  max %8.1f ms%n", e.getKey(),
+                        median, sorted[0], sorted[sorted.length - 1]);
+                record.append(String.format(Locale.ROOT, "%s,%s,%s,%s,%s,%d,%.1f,%.1f,%.1f%n", date, System.getProperty("java.version"),
+                        viewer, config.name, e.getKey(), sorted.length, median, sorted[0], sorted[sorted.length - 1]));
+            }
+        }
+        if (csv != null) {
+            final boolean header = !csv.isFile();
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(csv, true), StandardCharsets.UTF_8)) {
+                if (header) {
+                    out.write("date,java,viewer,config,milestone,runs,median ms,min ms,max ms\n");
+                }
+                out.write(record.toString());
+            }
+        }
+    }
+
+    private static void launch(final String viewer, final File image, final List<String> jvmOptions,
+                               final Map<String, List<Double>> timings) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dviewer.startup.timing=true");
+        command.add("-Dviewer.startup.exit=true");
+        // never hand the image to a viewer the user has open
+        command.add("-Dviewer.singleInstance=false");
+        command.addAll(jvmOptions);
+        command.add(viewer);
+        command.add(image.getAbsolutePath());
+
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(Startup.TIMING_PREFIX) && line.endsWith(" ms")) {
+                    final String[] parts = line.substring(Startup.TIMING_PREFIX.length(), line.length() - 3).split(" ");
+                    timings.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(Double.parseDouble(parts[1]));
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            System.err.println("Viewer exited with " + process.exitValue());
+        }
+        timings.computeIfAbsent("process", k -> new ArrayList<>()).add((System.nanoTime() - start) / 1e6);
+    }
+}
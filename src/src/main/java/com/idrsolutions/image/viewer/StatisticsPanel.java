@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+
+/**
+ * Shows the histograms and per channel figures of an {@link ImageStatistics}.
+ */
+final class StatisticsPanel extends JPanel {
+
+    private static final Color[] CHANNEL_COLORS = {
+            new Color(220, 40, 40, 140), new Color(40, 180, 40, 140), new Color(40, 80, 220, 140), null, new Color(60, 60, 60, 200)
+    };
+    private static final int[] SHOWN = {ImageStatistics.RED, ImageStatistics.GREEN, ImageStatistics.BLUE, ImageStatistics.LUMINANCE};
+
+    private final Histogram histogram = new Histogram();
+    private final JLabel status = new JLabel(" ");
+    private final DefaultTableModel model = new DefaultTableModel(new String[]{"Channel", "Min", "Max", "Mean", "Clipped 0", "Clipped 255"}, 0) {
+        @Override
+        public boolean isCellEditable(final int row, final int column) {
+            return false;
+        }
+    };
+    private ImageStatistics stats;
+
+    StatisticsPanel() {
+        super(new BorderLayout());
+        histogram.setPreferredSize(new Dimension(420, 200));
+        histogram.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        add(histogram, BorderLayout.NORTH);
+        final JTable table = new JTable(model);
+        final JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(420, 120));
+        add(scroll, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+    }
+
+    /**
+     * @param fullResolution false while the figures come from the screen sized image
+     */
+    void setStatistics(final ImageStatistics stats, final boolean fullResolution) {
+        this.stats = stats;
+        model.setRowCount(0);
+        final long pixels = Math.max(1, stats.getPixelCount());
+        for (int c = 0; c < ImageStatistics.CHANNEL_NAMES.length; c++) {
+            model.addRow(new Object[]{ImageStatistics.CHANNEL_NAMES[c], stats.getMin(c), stats.getMax(c),
+                    String.format("%.1f", stats.getMean(c)),
+                    String.format("%d (%.2f%%)", stats.getClippedLow(c), stats.getClippedLow(c) * 100.0 / pixels),
+                    String.format("%d (%.2f%%)", stats.getClippedHigh(c), stats.getClippedHigh(c) * 100.0 / pixels)});
+        }
+        status.setText(stats.width + " x " + stats.height + (fullResolution ? " (full resolution)" : " (screen preview, computing full resolution...)"));
+        histogram.repaint();
+    }
+
+    void setStatus(final String text) {
+        status.setText(text);
+    }
+
+    private final class Histogram extends JComponent {
+        @Override
+        protected void paintComponent(final Graphics g) {
+            final Graphics2D g2 = (Graphics2D) g;
+            final int w = getWidth() - 10;
+            final int h = getHeight() - 10;
+            g2.setColor(Color.WHITE);
+            g2.fillRect(5, 5, w, h);
+            if (stats == null) {
+                return;
+            }
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            // scale to the tallest bin ignoring the clipped ends, which would flatten everything else
+            long peak = 1;
+            for (final int c : SHOWN) {
+                for (int i = 1; i < 255; i++) {
+                    peak = Math.max(peak, stats.histogram[c][i]);
+                }
+            }
+            for (final int c : SHOWN) {
+                final Path2D.Double path = new Path2D.Double();
+                path.moveTo(5, 5 + h);
+                for (int i = 0; i < 256; i++) {
+                    final double v = Math.min(1, stats.histogram[c][i] / (double) peak);
+                    path.lineTo(5 + i * w / 255.0, 5 + h - v * h);
+                }
+                path.lineTo(5 + w, 5 + h);
+                path.closePath();
+                g2.setColor(CHANNEL_COLORS[c]);
+                if (c == ImageStatistics.LUMINANCE) {
+                    g2.draw(path);
+                } else {
+                    g2.fill(path);
+                }
+            }
+        }
+    }
+}
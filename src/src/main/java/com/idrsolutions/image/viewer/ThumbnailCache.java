@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thumbnails for the folder grid, kept in {@link ImageCache#THUMBNAILS} and as PNG files under
+ * {@code ~/.idrsolutions/viewer/thumbnails}, or the folder set by {@code viewer.thumbnails}.
+ * <p>
+ * A disk entry is named by a hash of the file's path, size and modification time, so an edited file
+ * gets a new thumbnail and the old one ages out. Missing thumbnails are made from an embedded or
+ * subsampled preview, falling back to a scaled decode. The folder is trimmed to
+ * {@code viewer.thumbnails.maxBytes}, by default 256 MB, once per run, least recently used first.
+ */
+final class ThumbnailCache {
+
+    static final int SIZE = 160;
+
+    private static final File DIR = new File(System.getProperty("viewer.thumbnails",
+            new File(System.getProperty("user.home"), ".idrsolutions/viewer/thumbnails").getPath()));
+    private static final long MAX_BYTES = Long.getLong("viewer.thumbnails.maxBytes", 256L << 20);
+    private static final AtomicBoolean TRIMMED = new AtomicBoolean();
+
+    private ThumbnailCache() {
+    }
+
+    /**
+     * @return the thumbnail if it is in memory, otherwise null
+     */
+    static BufferedImage getCached(final File file) {
+        return ImageCache.THUMBNAILS.get(file, SIZE, SIZE);
+    }
+
+    /**
+     * Reads the thumbnail from disk or makes it, blocking, for use on a background thread.
+     *
+     * @return the thumbnail, or null if the file cannot be read
+     */
+    static BufferedImage load(final File file) {
+        if (TRIMMED.compareAndSet(false, true)) {
+            trim();
+        }
+        BufferedImage thumb = getCached(file);
+        if (thumb != null) {
+            return thumb;
+        }
+        final File entry = new File(DIR, key(file) + ".png");
+        if (entry.isFile()) {
+            try {
+                thumb = ImageBackends.read(entry);
+                // trimming goes by modification time, so recently used entries stay
+                entry.setLastModified(System.currentTimeMillis());
+            } catch (final Exception e) {
+                System.err.println("Unable to read cached thumbnail: " + e.getMessage());
+            }
+        }
+        if (thumb == null) {
+            thumb = make(file);
+            if (thumb == null) {
+                return null;
+            }
+            save(thumb, entry);
+        }
+        ImageCache.THUMBNAILS.put(file, SIZE, SIZE, thumb);
+        return thumb;
+    }
+
+    private static BufferedImage make(final File file) {
+        BufferedImage image = PreviewReader.read(file, SIZE);
+        if (image == null) {
+            try {
+                image = ImageBackends.readScaled(file, SIZE, SIZE);
+            } catch (final Exception e) {
+                System.err.println("Unable to read thumbnail of " + file.getName() + ": " + e.getMessage());
+                return null;
+            }
+        }
+        if (image == null) {
+            return null;
+        }
+        final double scale = Math.min(1, SIZE / (double) Math.max(image.getWidth(), image.getHeight()));
+        return JavaImageViewer.scaleToSize(image, (int) Math.round(image.getWidth() * scale), (int) Math.round(image.getHeight() * scale));
+    }
+
+    private static void save(final BufferedImage thumb, final File entry) {
+        try {
+            if (!DIR.isDirectory() && !DIR.mkdirs()) {
+                throw new IOException("Cannot create " + DIR);
+            }
+            // written aside and moved so a concurrent reader never sees half a file
+            final File tmp = File.createTempFile("thumb", ".tmp", DIR);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()))) {
+                ImageBackends.forWriting("png").write(thumb, "png", out);
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final Exception e) {
+            System.err.println("Unable to cache thumbnail: " + e.getMessage());
+        }
+    }
+
+    private static String key(final File file) {
+        final File f = file.getAbsoluteFile();
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    (f.getPath() + '\n' + f.length() + '\n' + f.lastModified() + '\n' + SIZE).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (final byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void trim() {
+        final File[] entries = DIR.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        for (final File f : entries) {
+            total += f.length();
+        }
+        if (total <= MAX_BYTES) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (final File f : entries) {
+            if (total <= MAX_BYTES * 3 / 4) {
+                break;
+            }
+            final long length = f.length();
+            if (f.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Contact sheet of a folder's images, shown in a scroll pane in place of the single image.
+ * <p>
+ * Only the cells in view exist as components: as the grid scrolls, cells leaving the view are taken
+ * off and reused for those coming into it, so a folder of tens of thousands of images costs no more
+ * to scroll than a screenful. Thumbnails come from {@link ThumbnailCache} on a small pool of
+ * threads taking the newest request first, so the cells just scrolled to load before those passed
+ * on the way. A cell's request is dropped from the queue when it leaves the view; one already
+ * being read is left to finish, since its thumbnail is cached for when the cell comes back.
+ */
+final class ThumbnailGrid extends JPanel implements Scrollable {
+
+    private static final int PADDING = 8;
+    private static final int CELL_WIDTH = ThumbnailCache.SIZE + 2 * PADDING;
+    private static final int CELL_HEIGHT = ThumbnailCache.SIZE + 3 * PADDING + 14;
+    private static final Color SELECTED = new Color(51, 153, 255, 90);
+
+    private static final ThreadPoolExecutor LOADER;
+
+    static {
+        final int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        LOADER = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(final Runnable r) {
+                return offerFirst(r);
+            }
+        }, FolderIndex.daemon("thumbnails"));
+    }
+
+    private List<File> files;
+    private final Map<Integer, Cell> shown = new HashMap<>();
+    private final File folder;
+    private final Deque<Cell> spare = new ArrayDeque<>();
+    private int columns = 1;
+    private int selected = -1;
+
+    /**
+     * One grid position's thumbnail and name.
+     */
+    private final class Cell extends JComponent {
+        private int index = -1;
+        private File file;
+        private String name;
+        private BufferedImage thumb;
+        private Future<?> loading;
+        // counts bindings, so a thumbnail for an earlier one is not shown
+        private int bound;
+
+        void bind(final int i) {
+            final int binding = ++bound;
+            index = i;
+            file = files.get(i);
+            name = file.getName();
+            thumb = ThumbnailCache.getCached(file);
+            if (thumb == null) {
+                final File f = file;
+                loading = LOADER.submit(() -> {
+                    final BufferedImage loaded = ThumbnailCache.load(f);
+                    SwingUtilities.invokeLater(() -> {
+                        if (binding == bound) {
+                            thumb = loaded;
+                            loading = null;
+                            repaint();
+                        }
+                    });
+                });
+            }
+        }
+
+        void unbind() {
+            if (loading != null) {
+                loading.cancel(false);
+                LOADER.remove((Runnable) loading);
+                loading = null;
+            }
+            bound++;
+            index = -1;
+            file = null;
+            thumb = null;
+        }
+
+        @Override
+        protected void paintComponent(final Graphics g) {
+            if (index == selected) {
+                g.setColor(SELECTED);
+                g.fillRect(0, 0, getWidth(), getHeight());
+            }
+            if (thumb != null) {
+                g.drawImage(thumb, (getWidth() - thumb.getWidth()) / 2, PADDING + (ThumbnailCache.SIZE - thumb.getHeight()) / 2, null);
+            } else {
+                g.setColor(Color.LIGHT_GRAY);
+                g.drawRect(PADDING, PADDING, ThumbnailCache.SIZE - 1, ThumbnailCache.SIZE - 1);
+            }
+            g.setColor(getForeground());
+            final FontMetrics fm = g.getFontMetrics();
+            String label = name;
+            if (fm.stringWidth(label) > getWidth() - 4) {
+                while (label.length() > 1 && fm.stringWidth(label + "...") > getWidth() - 4) {
+                    label = label.substring(0, label.length() - 1);
+                }
+                label += "...";
+            }
+            g.drawString(label, (getWidth() - fm.stringWidth(label)) / 2, 2 * PADDING + ThumbnailCache.SIZE + fm.getAscent());
+        }
+    }
+
+    /**
+     * @param open called with the file of a cell that is double clicked
+     */
+    ThumbnailGrid(final File folder, final List<File> files, final Consumer<File> open) {
+        super(null);
+        this.folder = folder.getAbsoluteFile();
+        this.files = files;
+        setBackground(Color.WHITE);
+        final MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(final MouseEvent e) {
+                final int i = indexAt(e.getX(), e.getY());
+                if (i >= 0) {
+                    select(i);
+                    if (e.getClickCount() == 2) {
+                        open.accept(ThumbnailGrid.this.files.get(i));
+                    }
+                }
+            }
+        };
+        addMouseListener(mouse);
+    }
+
+    /**
+     * Selects and scrolls to file if it is in the grid.
+     */
+    void reveal(final File file) {
+        final int i = files.indexOf(file.getAbsoluteFile());
+        if (i >= 0) {
+            select(i);
+            scrollRectToVisible(new Rectangle(i % columns * CELL_WIDTH, i / columns * CELL_HEIGHT, CELL_WIDTH, CELL_HEIGHT));
+        }
+    }
+
+    File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Takes a new listing of the folder after files in it changed. Cells still showing the same
+     * unchanged file keep their thumbnails; the rest are bound afresh.
+     *
+     * @param changed paths as reported by {@link FolderWatcher}
+     */
+    void update(final List<File> files, final Set<File> changed) {
+        final File selectedFile = selected >= 0 && selected < this.files.size() ? this.files.get(selected) : null;
+        this.files = files;
+        selected = selectedFile == null ? -1 : files.indexOf(selectedFile);
+        final Iterator<Map.Entry<Integer, Cell>> it = shown.entrySet().iterator();
+        while (it.hasNext()) {
+            final Cell c = it.next().getValue();
+            if (c.index >= files.size() || !files.get(c.index).equals(c.file) || FolderWatcher.affects(changed, c.file)) {
+                release(c);
+                it.remove();
+            }
+        }
+        revalidate();
+        updateCells();
+    }
+
+    private void select(final int i) {
+        final Cell before = shown.get(selected);
+        selected = i;
+        if (before != null) {
+            before.repaint();
+        }
+        final Cell after = shown.get(i);
+        if (after != null) {
+            after.repaint();
+        }
+    }
+
+    private int indexAt(final int x, final int y) {
+        final int column = x / CELL_WIDTH;
+        final int i = y / CELL_HEIGHT * columns + column;
+        return column < columns && i < files.size() ? i : -1;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).addChangeListener(e -> updateCells());
+        }
+    }
+
+    @Override
+    public void setBounds(final int x, final int y, final int width, final int height) {
+        final int newColumns = Math.max(1, width / CELL_WIDTH);
+        if (newColumns != columns) {
+            columns = newColumns;
+            // every cell moves, so all are laid out afresh
+            for (final Cell c : shown.values()) {
+                release(c);
+            }
+            shown.clear();
+        }
+        super.setBounds(x, y, width, height);
+        updateCells();
+    }
+
+    /**
+     * Binds cells to the positions in view and releases the rest.
+     */
+    private void updateCells() {
+        final Rectangle view = getVisibleRect();
+        final int first = Math.max(0, view.y / CELL_HEIGHT * columns);
+        final int last = Math.min(files.size(), (view.y + view.height + CELL_HEIGHT - 1) / CELL_HEIGHT * columns);
+        final Iterator<Map.Entry<Integer, Cell>> it = shown.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Integer, Cell> e = it.next();
+            if (e.getKey() < first || e.getKey() >= last) {
+                release(e.getValue());
+                it.remove();
+            }
+        }
+        for (int i = first; i < last; i++) {
+            if (!shown.containsKey(i)) {
+                final Cell c = spare.isEmpty() ? new Cell() : spare.pop();
+                c.bind(i);
+                c.setBounds(i % columns * CELL_WIDTH, i / columns * CELL_HEIGHT, CELL_WIDTH, CELL_HEIGHT);
+                add(c);
+                shown.put(i, c);
+            }
+        }
+        repaint();
+    }
+
+    private void release(final Cell c) {
+        c.unbind();
+        remove(c);
+        spare.push(c);
+    }
+
+    /**
+     * Cancels the thumbnails still loading, once the grid is no longer shown.
+     */
+    void dispose() {
+        for (final Cell c : shown.values()) {
+            c.unbind();
+        }
+        shown.clear();
+        removeAll();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        final int width = getParent() instanceof JViewport ? getParent().getWidth() : CELL_WIDTH * 6;
+        final int rows = (files.size() + Math.max(1, width / CELL_WIDTH) - 1) / Math.max(1, width / CELL_WIDTH);
+        return new Dimension(width, rows * CELL_HEIGHT);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(CELL_WIDTH * 6, CELL_HEIGHT * 4);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(final Rectangle visibleRect, final int orientation, final int direction) {
+        return orientation == SwingConstants.VERTICAL ? CELL_HEIGHT / 4 : CELL_WIDTH / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(final Rectangle visibleRect, final int orientation, final int direction) {
+        return orientation == SwingConstants.VERTICAL ? Math.max(CELL_HEIGHT, visibleRect.height - CELL_HEIGHT) : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Page range operations on multi-page TIFF files, through whichever {@link ImageBackend} supports
+ * multiple pages.
+ * <p>
+ * Pages are decoded and processed on a pool of worker threads while the results are written
+ * strictly in page order. At most one page per worker plus one being written is held in memory.
+ */
+final class TiffPages {
+
+    /**
+     * Transforms one decoded page before it is written.
+     */
+    interface PageProcessor {
+        PageProcessor NONE = page -> page;
+
+        BufferedImage process(BufferedImage page) throws Exception;
+    }
+
+    /**
+     * A page of a source file.
+     */
+    static final class PageRef {
+        final File file;
+        final int page;
+
+        PageRef(final File file, final int page) {
+            this.file = file;
+            this.page = page;
+        }
+    }
+
+    /**
+     * A page operation run off the EDT, reporting the number of pages written so far.
+     */
+    interface Job {
+        void run(IntConsumer progress) throws Exception;
+    }
+
+    private interface PageTask<T> {
+        T run(PageRef ref, int index) throws Exception;
+    }
+
+    private interface PageSink<T> {
+        void accept(T result, int index) throws Exception;
+    }
+
+    private TiffPages() {
+    }
+
+    static int getPageCount(final File file) throws Exception {
+        return ImageBackends.getPageCount(file);
+    }
+
+    static List<PageRef> range(final File file, final int from, final int to) {
+        final List<PageRef> pages = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            pages.add(new PageRef(file, i));
+        }
+        return pages;
+    }
+
+    static List<PageRef> allPages(final List<File> files) throws Exception {
+        final List<PageRef> pages = new ArrayList<>();
+        for (final File f : files) {
+            pages.addAll(range(f, 0, getPageCount(f) - 1));
+        }
+        return pages;
+    }
+
+    /**
+     * Writes the given pages, processed, into a single multi-page TIFF. Used for both exporting a
+     * range and merging several files.
+     */
+    static void merge(final List<PageRef> pages, final PageProcessor processor, final File target, final IntConsumer progress) throws Exception {
+        merge(pages, processor, target, progress, defaultWorkers());
+    }
+
+    /**
+     * As {@link #merge(List, PageProcessor, File, IntConsumer)} with the given number of workers,
+     * where 1 processes the pages one after another on the calling thread, for callers already
+     * running files in parallel.
+     */
+    static void merge(final List<PageRef> pages, final PageProcessor processor, final File target, final IntConsumer progress,
+                      final int workers) throws Exception {
+        final File tmp = File.createTempFile("pages", ".tif", target.getAbsoluteFile().getParentFile());
+        Files.delete(tmp.toPath());
+        final ImageBackend backend = ImageBackends.forWriting("tiff", ImageBackend.Capability.MULTI_PAGE);
+        if (backend == null) {
+            throw new IOException("No backend can write multi-page TIFF");
+        }
+        try {
+            try (ImageBackend.PageWriter writer = backend.openPages(tmp, "tiff")) {
+                run(pages, workers, (ref, index) -> processor.process(read(ref)), (page, index) -> {
+                    writer.append(page);
+                    progress.accept(index + 1);
+                });
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Writes each page, processed, to its own file in folder. Encoding happens on the workers.
+     *
+     * @return the files written, in page order
+     */
+    static List<File> split(final List<PageRef> pages, final PageProcessor processor, final File folder,
+                            final String baseName, final String format, final IntConsumer progress) throws Exception {
+        final List<File> written = new ArrayList<>();
+        run(pages, defaultWorkers(), (ref, index) -> {
+            final File out = new File(folder, String.format("%s-%04d.%s", baseName, ref.page + 1, format));
+            final ImageBackend backend = ImageBackends.forWriting(format);
+            if (backend == null) {
+                throw new IOException("No backend can write " + format);
+            }
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(out.toPath()))) {
+                backend.write(processor.process(read(ref)), format, stream);
+            }
+            return out;
+        }, (out, index) -> {
+            written.add(out);
+            progress.accept(index + 1);
+        });
+        return written;
+    }
+
+    private static BufferedImage read(final PageRef ref) throws Exception {
+        return ImageBackends.readPage(ref.file, ref.page);
+    }
+
+    private static int defaultWorkers() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    }
+
+    private static <T> void run(final List<PageRef> pages, final int workers, final PageTask<T> task, final PageSink<T> sink) throws Exception {
+        if (workers <= 1) {
+            for (int i = 0; i < pages.size(); i++) {
+                sink.accept(task.run(pages.get(i), i), i);
+            }
+            return;
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(workers, FolderIndex.daemon("tiff-pages"));
+        final Deque<Future<T>> inFlight = new ArrayDeque<>();
+        try {
+            int next = 0;
+            int done = 0;
+            while (done < pages.size()) {
+                while (next < pages.size() && inFlight.size() < workers) {
+                    final PageRef ref = pages.get(next);
+                    final int index = next++;
+                    inFlight.add(pool.submit(() -> task.run(ref, index)));
+                }
+                sink.accept(inFlight.poll().get(), done++);
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,667 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * ARGB raster held as fixed size tiles in direct buffers outside the Java heap.
+ * <p>
+ * Tiles are accounted against {@link MemoryBudget#GLOBAL}. When the budget is exceeded the least
+ * recently used tiles are written to a scratch file in the temp directory and read
+ * back on demand, so images larger than the heap can be decoded, scaled to the screen and compared
+ * a tile at a time. Processing steps that work pixel by pixel can be applied a tile at a time by
+ * {@link ProcessingChain#apply(TileStore)}; the others are applied to the scaled image.
+ * <p>
+ * A store is reference counted: work that may outlive its owner, such as a background save, takes
+ * a reference with {@link #retain} and gives it up with {@link #close}. The tiles are freed when
+ * the last reference is given up, and a tile still pinned then is recycled when it is unpinned.
+ */
+final class TileStore implements Closeable {
+
+    static final int TILE_SIZE = 512;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    private static final int MAX_POOLED = 8;
+    private static final Deque<ByteBuffer> POOL = new ArrayDeque<>();
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final Tile[] tiles;
+    private final MemoryBudget budget;
+    private FileChannel scratch;
+    private File scratchFile;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final class Tile implements MemoryBudget.Evictable {
+        private final int index;
+        private ByteBuffer buffer;
+        private boolean spilled;
+        private int pins;
+        private boolean freed;
+
+        Tile(final int index) {
+            this.index = index;
+        }
+
+        IntBuffer pin() throws IOException {
+            synchronized (this) {
+                if (freed) {
+                    throw new IOException("Image tiles have been released");
+                }
+                pins++;
+                if (buffer != null) {
+                    budget.touch(this);
+                    return buffer.asIntBuffer();
+                }
+            }
+            budget.reserve(this, TILE_BYTES);
+            synchronized (this) {
+                if (freed) {
+                    // released while the memory was reserved
+                    unpin();
+                    throw new IOException("Image tiles have been released");
+                }
+                if (buffer == null) {
+                    buffer = allocate();
+                    if (spilled) {
+                        readScratch(buffer, (long) index * TILE_BYTES);
+                    }
+                }
+                return buffer.asIntBuffer();
+            }
+        }
+
+        synchronized void unpin() {
+            if (--pins == 0 && freed) {
+                discard();
+            }
+        }
+
+        @Override
+        public synchronized boolean evict() {
+            if (pins > 0) {
+                return false;
+            }
+            if (buffer == null) {
+                return true;
+            }
+            try {
+                writeScratch(buffer, (long) index * TILE_BYTES);
+                spilled = true;
+            } catch (final IOException e) {
+                System.err.println("Unable to spill tile: " + e.getMessage());
+                return false;
+            }
+            recycle(buffer);
+            buffer = null;
+            return true;
+        }
+
+        /**
+         * Gives back the tile's memory, or leaves that to the last unpin if it is in use.
+         */
+        synchronized void free() {
+            freed = true;
+            if (pins == 0) {
+                discard();
+            }
+        }
+
+        private void discard() {
+            budget.release(this);
+            if (buffer != null) {
+                recycle(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    TileStore(final int width, final int height) {
+        this(width, height, MemoryBudget.GLOBAL);
+    }
+
+    TileStore(final int width, final int height, final MemoryBudget budget) {
+        this.width = width;
+        this.height = height;
+        this.budget = budget;
+        tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = new Tile[tilesX * tilesY];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(i);
+        }
+    }
+
+    /**
+     * Decodes a page of a file band by band through a backend with region decoding, so the full
+     * image never exists on the heap.
+     *
+     * @return the store, or null if no backend decodes regions of the file
+     */
+    static TileStore read(final File file, final int page) throws IOException {
+        final ImageBackend.RegionReader regions;
+        try {
+            regions = ImageBackends.openRegions(file, page);
+        } catch (final IOException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+        if (regions == null) {
+            return null;
+        }
+        try (ImageBackend.RegionReader r = regions) {
+            final int w = r.getWidth();
+            final int h = r.getHeight();
+            final TileStore store = new TileStore(w, h);
+            try {
+                for (int y = 0; y < h; y += TILE_SIZE) {
+                    store.setPixels(0, y, r.read(new Rectangle(0, y, w, Math.min(TILE_SIZE, h - y))));
+                }
+            } catch (final IOException | RuntimeException e) {
+                store.close();
+                throw e;
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Reads a page of a file into a store, a region at a time if a backend can, otherwise by
+     * decoding it whole.
+     */
+    static TileStore load(final File file, final int page) throws Exception {
+        final TileStore store = read(file, page);
+        return store != null ? store : fromImage(ImageBackends.readPage(file, page));
+    }
+
+    static TileStore fromImage(final BufferedImage image) throws IOException {
+        final TileStore store = new TileStore(image.getWidth(), image.getHeight());
+        store.setPixels(0, 0, image);
+        return store;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Copies src into the store with its top left corner at x, y.
+     */
+    void setPixels(final int x, final int y, final BufferedImage src) throws IOException {
+        final int[] row = new int[TILE_SIZE];
+        final int x1 = Math.min(width, x + src.getWidth());
+        final int y1 = Math.min(height, y + src.getHeight());
+        for (int ty = y / TILE_SIZE; ty * TILE_SIZE < y1; ty++) {
+            for (int tx = x / TILE_SIZE; tx * TILE_SIZE < x1; tx++) {
+                final Rectangle r = tileBounds(tx, ty).intersection(new Rectangle(x, y, x1 - x, y1 - y));
+                final Tile tile = tiles[ty * tilesX + tx];
+                final IntBuffer pixels = tile.pin();
+                try {
+                    for (int py = r.y; py < r.y + r.height; py++) {
+                        src.getRGB(r.x - x, py - y, r.width, 1, row, 0, r.width);
+                        pixels.position((py - ty * TILE_SIZE) * TILE_SIZE + r.x - tx * TILE_SIZE);
+                        pixels.put(row, 0, r.width);
+                    }
+                } finally {
+                    tile.unpin();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a heap copy of one tile, clipped to the image edge
+     */
+    BufferedImage getTile(final int tx, final int ty) throws IOException {
+        final Rectangle r = tileBounds(tx, ty);
+        final BufferedImage out = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB);
+        final int[] dest = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        final Tile tile = tiles[ty * tilesX + tx];
+        final IntBuffer pixels = tile.pin();
+        try {
+            for (int py = 0; py < r.height; py++) {
+                pixels.position(py * TILE_SIZE);
+                pixels.get(dest, py * r.width, r.width);
+            }
+        } finally {
+            tile.unpin();
+        }
+        return out;
+    }
+
+    /**
+     * Copies the ARGB pixels of area into dest, a row of area.width after another. Pixels of area
+     * outside the image are left as they are.
+     */
+    void getRGB(final Rectangle area, final int[] dest) throws IOException {
+        final Rectangle inside = area.intersection(new Rectangle(width, height));
+        if (inside.isEmpty()) {
+            return;
+        }
+        for (int ty = inside.y / TILE_SIZE; ty * TILE_SIZE < inside.y + inside.height; ty++) {
+            for (int tx = inside.x / TILE_SIZE; tx * TILE_SIZE < inside.x + inside.width; tx++) {
+                final Rectangle r = tileBounds(tx, ty).intersection(inside);
+                final Tile tile = tiles[ty * tilesX + tx];
+                final IntBuffer pixels = tile.pin();
+                try {
+                    for (int py = r.y; py < r.y + r.height; py++) {
+                        pixels.position((py - ty * TILE_SIZE) * TILE_SIZE + r.x - tx * TILE_SIZE);
+                        pixels.get(dest, (py - area.y) * area.width + r.x - area.x, r.width);
+                    }
+                } finally {
+                    tile.unpin();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a view of the store that image writers can read a band at a time, so it is encoded
+     * without being copied onto the heap
+     */
+    RenderedImage asRenderedImage() {
+        return new Rendered();
+    }
+
+    /**
+     * The store seen as an image of ARGB tiles, each copied out of the store when asked for.
+     */
+    private final class Rendered implements RenderedImage {
+        private final ColorModel colorModel = ColorModel.getRGBdefault();
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return colorModel.createCompatibleSampleModel(TILE_SIZE, TILE_SIZE);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return tilesX;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return tilesY;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return TILE_SIZE;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return TILE_SIZE;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        @Override
+        public Raster getTile(final int tx, final int ty) {
+            return getData(new Rectangle(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(width, height));
+        }
+
+        @Override
+        public Raster getData(final Rectangle rect) {
+            final WritableRaster out = colorModel.createCompatibleWritableRaster(rect.width, rect.height);
+            out.setDataElements(0, 0, rect.width, rect.height, copy(rect));
+            return out.createWritableTranslatedChild(rect.x, rect.y);
+        }
+
+        @Override
+        public WritableRaster copyData(final WritableRaster raster) {
+            final WritableRaster out = raster != null ? raster : colorModel.createCompatibleWritableRaster(width, height);
+            final Rectangle area = out.getBounds();
+            final WritableRaster argb = colorModel.createCompatibleWritableRaster(area.width, area.height);
+            argb.setDataElements(0, 0, area.width, area.height, copy(area));
+            out.setRect(area.x, area.y, argb);
+            return out;
+        }
+
+        private int[] copy(final Rectangle area) {
+            final int[] argb = new int[area.width * area.height];
+            try {
+                getRGB(area, argb);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return argb;
+        }
+    }
+
+    Rectangle tileBounds(final int tx, final int ty) {
+        final int x = tx * TILE_SIZE;
+        final int y = ty * TILE_SIZE;
+        return new Rectangle(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+    }
+
+    /**
+     * Draws the tiles intersecting clip, in image coordinates multiplied by scale.
+     */
+    void paint(final Graphics2D g, final Rectangle clip, final double scale) throws IOException {
+        final Rectangle area = new Rectangle((int) (clip.x / scale), (int) (clip.y / scale),
+                (int) Math.ceil(clip.width / scale) + 1, (int) Math.ceil(clip.height / scale) + 1);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (int ty = Math.max(0, area.y / TILE_SIZE); ty < tilesY && ty * TILE_SIZE < area.y + area.height; ty++) {
+            for (int tx = Math.max(0, area.x / TILE_SIZE); tx < tilesX && tx * TILE_SIZE < area.x + area.width; tx++) {
+                final AffineTransform at = AffineTransform.getScaleInstance(scale, scale);
+                at.translate(tx * TILE_SIZE, ty * TILE_SIZE);
+                g.drawImage(getTile(tx, ty), at, null);
+            }
+        }
+    }
+
+    /**
+     * Scales the whole store into a new heap image of the given size, one tile at a time.
+     */
+    BufferedImage scale(final int outWidth, final int outHeight) throws IOException {
+        final BufferedImage out = new BufferedImage(Math.max(1, outWidth), Math.max(1, outHeight), BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = out.createGraphics();
+        try {
+            g.scale(out.getWidth() / (double) width, out.getHeight() / (double) height);
+            paint(g, new Rectangle(0, 0, width, height), 1);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /**
+     * Scales the store to half its width and height, each pixel the average of the two by two it
+     * covers, one output tile at a time in parallel.
+     */
+    TileStore halve() {
+        final TileStore out = new TileStore((width + 1) / 2, (height + 1) / 2, budget);
+        IntStream.range(0, out.tiles.length).parallel().forEach(i -> {
+            final Rectangle r = out.tileBounds(i % out.tilesX, i / out.tilesX);
+            final Rectangle area = new Rectangle(r.x * 2, r.y * 2, r.width * 2, r.height * 2).intersection(new Rectangle(width, height));
+            final int[] src = new int[area.width * area.height];
+            final int[] dest = new int[r.width * r.height];
+            try {
+                getRGB(area, src);
+                for (int y = 0; y < r.height; y++) {
+                    // an odd last row or column is averaged with itself
+                    final int row0 = y * 2 * area.width;
+                    final int row1 = Math.min(y * 2 + 1, area.height - 1) * area.width;
+                    for (int x = 0; x < r.width; x++) {
+                        final int x0 = x * 2;
+                        final int x1 = Math.min(x0 + 1, area.width - 1);
+                        dest[y * r.width + x] = average(src[row0 + x0], src[row0 + x1], src[row1 + x0], src[row1 + x1]);
+                    }
+                }
+                final Tile tile = out.tiles[i];
+                final IntBuffer pixels = tile.pin();
+                try {
+                    for (int py = 0; py < r.height; py++) {
+                        pixels.position(py * TILE_SIZE);
+                        pixels.put(dest, py * r.width, r.width);
+                    }
+                } finally {
+                    tile.unpin();
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return out;
+    }
+
+    private static int average(final int a, final int b, final int c, final int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int sum = (a >>> shift & 0xff) + (b >>> shift & 0xff) + (c >>> shift & 0xff) + (d >>> shift & 0xff);
+            result |= (sum + 2) / 4 << shift;
+        }
+        return result;
+    }
+
+    private static ByteBuffer allocate() {
+        synchronized (POOL) {
+            final ByteBuffer pooled = POOL.poll();
+            if (pooled != null) {
+                pooled.clear();
+                for (int i = 0; i < TILE_BYTES; i += 8) {
+                    pooled.putLong(i, 0);
+                }
+                return pooled;
+            }
+        }
+        return ByteBuffer.allocateDirect(TILE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    private static void recycle(final ByteBuffer buffer) {
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED) {
+                POOL.push(buffer);
+            }
+        }
+    }
+
+    private synchronized FileChannel scratch() throws IOException {
+        if (scratch == null) {
+            scratchFile = File.createTempFile("tiles", ".raw");
+            scratchFile.deleteOnExit();
+            scratch = FileChannel.open(scratchFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return scratch;
+    }
+
+    private void writeScratch(final ByteBuffer buffer, final long position) throws IOException {
+        final ByteBuffer src = buffer.duplicate();
+        src.clear();
+        final FileChannel channel = scratch();
+        long pos = position;
+        while (src.hasRemaining()) {
+            pos += channel.write(src, pos);
+        }
+    }
+
+    private void readScratch(final ByteBuffer buffer, final long position) throws IOException {
+        final ByteBuffer dest = buffer.duplicate();
+        dest.clear();
+        final FileChannel channel = scratch();
+        long pos = position;
+        while (dest.hasRemaining()) {
+            final int n = channel.read(dest, pos);
+            if (n < 0) {
+                break;
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * Computes the absolute difference of each colour channel of a and b over the area they share,
+     * in one pass over the tiles in parallel. The result is opaque.
+     *
+     * @param changed incremented for every pixel whose colour differs
+     */
+    static TileStore difference(final TileStore a, final TileStore b, final LongAdder changed) {
+        final TileStore out = new TileStore(Math.min(a.width, b.width), Math.min(a.height, b.height));
+        IntStream.range(0, out.tiles.length).parallel().forEach(i -> {
+            final int tx = i % out.tilesX;
+            final int ty = i / out.tilesX;
+            final Rectangle r = out.tileBounds(tx, ty);
+            final Tile ta = a.tiles[ty * a.tilesX + tx];
+            final Tile tb = b.tiles[ty * b.tilesX + tx];
+            final Tile to = out.tiles[i];
+            try {
+                final IntBuffer pa = ta.pin();
+                try {
+                    final IntBuffer pb = tb.pin();
+                    try {
+                        final IntBuffer po = to.pin();
+                        try {
+                            long count = 0;
+                            for (int py = 0; py < r.height; py++) {
+                                for (int p = py * TILE_SIZE, end = p + r.width; p < end; p++) {
+                                    final int ca = pa.get(p);
+                                    final int cb = pb.get(p);
+                                    final int d = Math.abs((ca >> 16 & 0xff) - (cb >> 16 & 0xff)) << 16
+                                            | Math.abs((ca >> 8 & 0xff) - (cb >> 8 & 0xff)) << 8
+                                            | Math.abs((ca & 0xff) - (cb & 0xff));
+                                    if (d != 0) {
+                                        count++;
+                                    }
+                                    po.put(p, 0xff000000 | d);
+                                }
+                            }
+                            changed.add(count);
+                        } finally {
+                            to.unpin();
+                        }
+                    } finally {
+                        tb.unpin();
+                    }
+                } finally {
+                    ta.unpin();
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Lets the memory budget spill this store's tiles before anything else, for a document that is
+     * no longer shown.
+     */
+    void demote() {
+        for (final Tile tile : tiles) {
+            budget.demote(tile);
+        }
+    }
+
+    /**
+     * Takes another reference to the store, given up by a matching {@link #close}.
+     *
+     * @return this store
+     * @throws IOException if the last reference has already been given up
+     */
+    TileStore retain() throws IOException {
+        if (references.getAndUpdate(n -> n > 0 ? n + 1 : n) <= 0) {
+            throw new IOException("Image tiles have been released");
+        }
+        return this;
+    }
+
+    /**
+     * Gives up a reference to the store, freeing the tiles if it was the last.
+     */
+    @Override
+    public void close() throws IOException {
+        if (references.getAndUpdate(n -> Math.max(0, n - 1)) != 1) {
+            return;
+        }
+        for (final Tile tile : tiles) {
+            tile.free();
+        }
+        synchronized (this) {
+            if (scratch != null) {
+                scratch.close();
+                Files.deleteIfExists(scratchFile.toPath());
+                scratch = null;
+            }
+        }
+    }
+}
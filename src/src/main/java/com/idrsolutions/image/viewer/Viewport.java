@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Zoom and scroll position shared by views that move together, such as the panes of a
+ * {@link ComparisonView}. The position is the image point shown at the top left of the view.
+ */
+final class Viewport {
+
+    private static final double MIN_ZOOM = 0.01;
+    private static final double MAX_ZOOM = 32;
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private double zoom = 1;
+    private double x;
+    private double y;
+
+    double getZoom() {
+        return zoom;
+    }
+
+    double getX() {
+        return x;
+    }
+
+    double getY() {
+        return y;
+    }
+
+    /**
+     * Multiplies the zoom by factor, keeping the image point under the view position sx, sy in place.
+     */
+    void zoomAt(final double factor, final int sx, final int sy) {
+        final double z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        x += sx / zoom - sx / z;
+        y += sy / zoom - sy / z;
+        zoom = z;
+        fireChanged();
+    }
+
+    /**
+     * Scrolls by a distance in view pixels.
+     */
+    void pan(final int dx, final int dy) {
+        x -= dx / zoom;
+        y -= dy / zoom;
+        fireChanged();
+    }
+
+    /**
+     * Zooms so an image of the given size fits the view, centred.
+     */
+    void fit(final int imageWidth, final int imageHeight, final int viewWidth, final int viewHeight) {
+        zoom = Math.max(MIN_ZOOM, Math.min(viewWidth / (double) imageWidth, viewHeight / (double) imageHeight));
+        x = (imageWidth - viewWidth / zoom) / 2;
+        y = (imageHeight - viewHeight / zoom) / 2;
+        fireChanged();
+    }
+
+    void addChangeListener(final ChangeListener l) {
+        listeners.add(l);
+    }
+
+    private void fireChanged() {
+        final ChangeEvent e = new ChangeEvent(this);
+        for (final ChangeListener l : listeners) {
+            l.stateChanged(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import com.idrsolutions.image.process.ImageProcessingOperations;
+import com.idrsolutions.image.process.Watermark;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A text, shape or image watermark rendered once per image size and composited onto many images.
+ * <p>
+ * The layer is produced by running the JDeli watermark on a transparent image of the target size,
+ * so placement and styling match {@link ImageProcessingOperations#watermark}. Only the part of the
+ * layer containing the mark is kept and blitted with source-over. Watermarks using a composite
+ * rule other than source-over depend on the pixels underneath and are applied directly instead.
+ */
+final class WatermarkLayer {
+
+    static final Map<String, Shape> SHAPES;
+
+    static {
+        final Map<String, Shape> shapes = new LinkedHashMap<>();
+        shapes.put("Tall Rectangle", new Rectangle(0, 0, 80, 100));
+        shapes.put("Wide Rectangle", new Rectangle(0, 0, 100, 80));
+        shapes.put("Square", new Rectangle(0, 0, 100, 100));
+        shapes.put("Triangle", new Polygon(new int[]{0, 100, 200}, new int[]{100, 0, 100}, 3));
+        SHAPES = Collections.unmodifiableMap(shapes);
+    }
+
+    private static final int MAX_SIZES = 8;
+    private static final int MAX_INSTANCES = 16;
+
+    // recently created layers by parameters, so adding the same watermark again reuses its renders
+    private static final Map<String, WatermarkLayer> INSTANCES = new LinkedHashMap<String, WatermarkLayer>(MAX_INSTANCES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, WatermarkLayer> eldest) {
+            return size() > MAX_INSTANCES;
+        }
+    };
+
+    /**
+     * The non transparent part of a rendered layer.
+     */
+    private static final class Layer {
+        final BufferedImage image;
+        final int x;
+        final int y;
+
+        Layer(final BufferedImage image, final int x, final int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final String key;
+    private final Consumer<ImageProcessingOperations> watermark;
+    private final boolean layered;
+    private final Map<Dimension, Layer> layers = new LinkedHashMap<Dimension, Layer>(MAX_SIZES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Dimension, Layer> eldest) {
+            return size() > MAX_SIZES;
+        }
+    };
+
+    private WatermarkLayer(final String key, final Consumer<ImageProcessingOperations> watermark, final boolean layered) {
+        this.key = key;
+        this.watermark = watermark;
+        this.layered = layered;
+    }
+
+    private static WatermarkLayer of(final String key, final Consumer<ImageProcessingOperations> watermark, final boolean layered) {
+        synchronized (INSTANCES) {
+            return INSTANCES.computeIfAbsent(key, k -> new WatermarkLayer(k, watermark, layered));
+        }
+    }
+
+    static WatermarkLayer text(final String text, final Color color, final Font font, final Watermark.WatermarkPosition position) {
+        return of("text:" + text + ':' + color.getRGB() + ':' + font + ':' + position,
+                ops -> ops.watermark(text, color, font, position), true);
+    }
+
+    static WatermarkLayer shape(final Shape shape, final Color color, final Watermark.WatermarkPosition position,
+                                final AlphaComposite alpha, final Watermark.WatermarkShapeProperties properties) {
+        return of("shape:" + System.identityHashCode(shape) + shape.getBounds() + ':' + color.getRGB() + ':' + position + ':' + describe(alpha) + ':' + properties,
+                ops -> ops.watermark(shape, color, position, alpha, properties), isSourceOver(alpha));
+    }
+
+    /**
+     * @param mark decoded watermark image, held by the layer rather than re-read per use
+     */
+    static WatermarkLayer image(final BufferedImage mark, final Watermark.WatermarkPosition position, final AlphaComposite alpha) {
+        // not shared through INSTANCES, as an identity hash could be reused by a later image
+        return new WatermarkLayer("image:" + System.identityHashCode(mark) + ':' + position + ':' + describe(alpha),
+                ops -> ops.watermark(mark, position, alpha), isSourceOver(alpha));
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @return a new image with the watermark applied
+     */
+    BufferedImage apply(final BufferedImage src) {
+        if (!layered) {
+            final ImageProcessingOperations ops = new ImageProcessingOperations();
+            watermark.accept(ops);
+            return ops.apply(src);
+        }
+        final Layer layer = getLayer(src.getWidth(), src.getHeight());
+        final BufferedImage out = new BufferedImage(src.getWidth(), src.getHeight(),
+                src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = out.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, 0, 0, null);
+            if (layer != null) {
+                g.setComposite(AlphaComposite.SrcOver);
+                g.drawImage(layer.image, layer.x, layer.y, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private synchronized Layer getLayer(final int w, final int h) {
+        final Dimension size = new Dimension(w, h);
+        if (!layers.containsKey(size)) {
+            layers.put(size, render(w, h));
+        }
+        return layers.get(size);
+    }
+
+    private Layer render(final int w, final int h) {
+        final ImageProcessingOperations ops = new ImageProcessingOperations();
+        watermark.accept(ops);
+        final BufferedImage full = ops.apply(new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB));
+        final Rectangle bounds = opaqueBounds(full);
+        if (bounds == null) {
+            return null;
+        }
+        final BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        final Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(full, -bounds.x, -bounds.y, null);
+        g.dispose();
+        return new Layer(image, bounds.x, bounds.y);
+    }
+
+    private static Rectangle opaqueBounds(final BufferedImage image) {
+        final int w = image.getWidth();
+        final int[] row = new int[w];
+        int minX = w;
+        int minY = -1;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                if (row[x] >>> 24 != 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    if (minY < 0) {
+                        minY = y;
+                    }
+                    maxY = y;
+                }
+            }
+        }
+        return maxX < 0 ? null : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    private static boolean isSourceOver(final AlphaComposite alpha) {
+        return alpha.getRule() == AlphaComposite.SRC_OVER;
+    }
+
+    private static String describe(final AlphaComposite alpha) {
+        return alpha.getRule() + "/" + alpha.getAlpha();
+    }
+}
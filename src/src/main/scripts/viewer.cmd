@@ -0,0 +1,14 @@
+@echo off
+rem Starts the viewer with the class data sharing archive written by "mvn -Pcds package".
+rem Usage: viewer.cmd [image file]
+rem VIEWER_MAIN overrides the viewer class the build chose. JAVA_HOME chooses the JVM, which must be
+rem the one that wrote the archive. Rebuild the archive after moving this folder; a stale archive is
+rem ignored by the JVM.
+setlocal
+set "dir=%~dp0"
+if "%VIEWER_MAIN%"=="" set "VIEWER_MAIN=@viewer.main@"
+set "java=java"
+if not "%JAVA_HOME%"=="" set "java=%JAVA_HOME%\bin\java"
+set "cds="
+if exist "%dir%viewer.jsa" set "cds=-XX:SharedArchiveFile=%dir%viewer.jsa -Xshare:auto"
+"%java%" %cds% -cp "%dir%@project.build.finalName@.jar" %VIEWER_MAIN% %*
@@ -0,0 +1,16 @@
+#!/bin/sh
+# Starts the viewer with the class data sharing archive written by "mvn -Pcds package".
+# Usage: viewer.sh [image file]
+# VIEWER_MAIN overrides the viewer class the build chose. JAVA_HOME chooses the JVM, which must be
+# the one that wrote the archive. Rebuild the archive after moving this folder; a stale archive is
+# ignored by the JVM.
+dir=$(cd "$(dirname "$0")" && pwd)
+main=${VIEWER_MAIN:-@viewer.main@}
+java=java
+if [ -n "$JAVA_HOME" ]; then
+    java="$JAVA_HOME/bin/java"
+fi
+if [ -f "$dir/viewer.jsa" ]; then
+    exec "$java" -XX:SharedArchiveFile="$dir/viewer.jsa" -Xshare:auto -cp "$dir/@project.build.finalName@.jar" "$main" "$@"
+fi
+exec "$java" -cp "$dir/@project.build.finalName@.jar" "$main" "$@"
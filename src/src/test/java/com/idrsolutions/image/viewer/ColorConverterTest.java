@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColorConverterTest {
+
+    private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB};
+
+    private static BufferedImage image(final int type, final int w, final int h) {
+        final BufferedImage image = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                image.setRGB(x, y, (x * 37 + y) % 256 << 24 | x * 255 / w << 16 | y * 255 / h << 8 | (x ^ y) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void convertsToIntTypesExactly() {
+        for (final int type : TYPES) {
+            final BufferedImage src = image(type, 45, 31);
+            final BufferedImage argb = ColorConverter.toARGB(src);
+            final BufferedImage rgb = ColorConverter.toRGB(src);
+            assertEquals(BufferedImage.TYPE_INT_ARGB, argb.getType());
+            assertEquals(BufferedImage.TYPE_INT_RGB, rgb.getType());
+            for (int y = 0; y < src.getHeight(); y++) {
+                for (int x = 0; x < src.getWidth(); x++) {
+                    assertEquals("type " + type, src.getRGB(x, y), argb.getRGB(x, y));
+                    assertEquals("type " + type, src.getRGB(x, y) | 0xFF000000, rgb.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readsSubimagesFromTheirOwnOrigin() {
+        final BufferedImage src = image(BufferedImage.TYPE_INT_RGB, 40, 40);
+        final BufferedImage sub = src.getSubimage(10, 5, 20, 15);
+        final BufferedImage copy = ColorConverter.toRGB(sub);
+        assertEquals(20, copy.getWidth());
+        assertEquals(src.getRGB(10, 5), copy.getRGB(0, 0));
+        assertEquals(src.getRGB(29, 19), copy.getRGB(19, 14));
+    }
+
+    @Test
+    public void keepsGreyLevels() {
+        final BufferedImage src = new BufferedImage(256, 1, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 256; x++) {
+            src.setRGB(x, 0, x << 16 | x << 8 | x);
+        }
+        final BufferedImage gray = ColorConverter.toGrayscale(src);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        for (int x = 0; x < 256; x++) {
+            assertEquals(x, gray.getRaster().getSample(x, 0, 0));
+        }
+    }
+
+    @Test
+    public void thresholdsToBinary() {
+        final BufferedImage src = new BufferedImage(256, 2, BufferedImage.TYPE_BYTE_GRAY);
+        for (int x = 0; x < 256; x++) {
+            src.getRaster().setSample(x, 0, 0, x);
+            src.getRaster().setSample(x, 1, 0, x);
+        }
+        final BufferedImage binary = ColorConverter.toBinary(src, ColorConverter.Dither.NONE, 100);
+        assertEquals(BufferedImage.TYPE_BYTE_BINARY, binary.getType());
+        for (int x = 0; x < 256; x++) {
+            assertEquals("x " + x, x >= 100 ? 1 : 0, binary.getRaster().getSample(x, 0, 0));
+        }
+    }
+
+    @Test
+    public void ditheringKeepsTheAverageLevel() {
+        final BufferedImage src = new BufferedImage(64, 64, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                src.getRaster().setSample(x, y, 0, 64);
+            }
+        }
+        for (final ColorConverter.Dither dither : new ColorConverter.Dither[]{ColorConverter.Dither.ORDERED, ColorConverter.Dither.ERROR_DIFFUSION}) {
+            final BufferedImage binary = ColorConverter.toBinary(src, dither);
+            int white = 0;
+            for (int y = 0; y < 64; y++) {
+                for (int x = 0; x < 64; x++) {
+                    white += binary.getRaster().getSample(x, y, 0);
+                }
+            }
+            // a quarter grey level gives about a quarter of the pixels white
+            assertEquals(dither.name(), 0.25, white / 4096.0, 0.03);
+        }
+    }
+
+    @Test
+    public void indexesFewColoursExactly() {
+        final int[] colours = {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF808080};
+        final BufferedImage src = new BufferedImage(60, 20, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 60; x++) {
+                src.setRGB(x, y, colours[(x / 10 + y) % colours.length]);
+            }
+        }
+        final BufferedImage indexed = ColorConverter.toIndexed(src);
+        assertEquals(BufferedImage.TYPE_BYTE_INDEXED, indexed.getType());
+        assertTrue(((IndexColorModel) indexed.getColorModel()).getMapSize() <= 256);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 60; x++) {
+                assertEquals(src.getRGB(x, y), indexed.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void limitsThePalette() {
+        final BufferedImage indexed = ColorConverter.toIndexed(image(BufferedImage.TYPE_INT_RGB, 128, 128), 16);
+        assertTrue(((IndexColorModel) indexed.getColorModel()).getMapSize() <= 16);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+
+public class FiltersTest {
+
+    private static BufferedImage image(final int w, final int h) {
+        final BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                image.setRGB(x, y, 0xFF000000 | x << 8 | y);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void rotatesClockwise() {
+        final BufferedImage src = image(7, 4);
+        final BufferedImage quarter = Filters.rotate(90).apply(src);
+        final BufferedImage half = Filters.rotate(180).apply(src);
+        final BufferedImage back = Filters.rotate(270).apply(src);
+        assertEquals(4, quarter.getWidth());
+        assertEquals(7, quarter.getHeight());
+        assertEquals(7, half.getWidth());
+        assertEquals(4, back.getWidth());
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 7; x++) {
+                assertEquals(src.getRGB(x, y), quarter.getRGB(3 - y, x));
+                assertEquals(src.getRGB(x, y), half.getRGB(6 - x, 3 - y));
+                assertEquals(src.getRGB(x, y), back.getRGB(y, 6 - x));
+            }
+        }
+        assertEquals(src, Filters.rotate(-360).apply(src));
+    }
+
+    @Test
+    public void mirrorsEachWay() {
+        final BufferedImage src = image(5, 3);
+        final BufferedImage horizontal = Filters.mirror(true).apply(src);
+        final BufferedImage vertical = Filters.mirror(false).apply(src);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                assertEquals(src.getRGB(x, y), horizontal.getRGB(4 - x, y));
+                assertEquals(src.getRGB(x, y), vertical.getRGB(x, 2 - y));
+            }
+        }
+    }
+}
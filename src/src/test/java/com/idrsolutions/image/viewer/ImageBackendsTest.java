@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs against the ImageIO backend alone, as set up by the surefire configuration.
+ */
+public class ImageBackendsTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static BufferedImage pattern(final int w, final int h) {
+        final BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                image.setRGB(x, y, x * 255 / w << 16 | y * 255 / h << 8 | (x ^ y) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    private File writePng(final String name, final BufferedImage image) throws IOException {
+        final File file = folder.newFile(name);
+        assertTrue(ImageIO.write(image, "png", file));
+        return file;
+    }
+
+    private static void assertSamePixels(final BufferedImage expected, final BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("pixel " + x + ',' + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void normalizesFormatNames() {
+        assertEquals("jpg", ImageBackends.normalize("JPEG"));
+        assertEquals("tiff", ImageBackends.normalize("tif"));
+        assertEquals("png", ImageBackends.normalize("PNG"));
+        assertEquals("jpg", ImageBackends.getFormat(new File("photo.Jpeg")));
+    }
+
+    @Test
+    public void routesByFormatAndCapability() {
+        final List<ImageBackend> png = ImageBackends.forReading("PNG");
+        assertEquals(1, png.size());
+        assertEquals("imageio", png.get(0).getName());
+        assertEquals(png, ImageBackends.forReading("png", ImageBackend.Capability.REGION_DECODE));
+        assertTrue(ImageBackends.forReading("no-such-format").isEmpty());
+        assertNotNull(ImageBackends.forFile(new File("scan.tif"), ImageBackend.Capability.MULTI_PAGE));
+        assertNotNull(ImageBackends.forWriting("png"));
+    }
+
+    @Test
+    public void readsFilesAndMemory() throws Exception {
+        final BufferedImage image = pattern(37, 23);
+        final File file = writePng("pattern.png", image);
+        assertSamePixels(image, ImageBackends.read(file));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        assertSamePixels(image, ImageBackends.read(out.toByteArray(), "png"));
+    }
+
+    @Test
+    public void readsRegions() throws Exception {
+        final BufferedImage image = pattern(300, 200);
+        final File file = writePng("regions.png", image);
+        try (ImageBackend.RegionReader regions = ImageBackends.openRegions(file, 0)) {
+            assertNotNull(regions);
+            assertEquals(300, regions.getWidth());
+            assertEquals(200, regions.getHeight());
+            assertSamePixels(image.getSubimage(120, 50, 100, 80), regions.read(new Rectangle(120, 50, 100, 80)));
+        }
+    }
+
+    @Test
+    public void readsSizeAndFormatName() throws Exception {
+        final File file = writePng("sized.png", pattern(41, 17));
+        assertEquals(new Rectangle(41, 17), ImageBackends.readDimension(file));
+        assertEquals("png", ImageBackends.getFormatName(file).toLowerCase());
+    }
+
+    @Test
+    public void subsamplesToFit() throws Exception {
+        final File file = writePng("large.png", pattern(800, 400));
+        final BufferedImage small = ImageBackends.readSubsampled(file, 200, 200);
+        assertNotNull(small);
+        assertTrue(small.getWidth() <= 200 && small.getHeight() <= 200);
+        assertEquals(2.0, (double) small.getWidth() / small.getHeight(), 0.05);
+    }
+
+    @Test
+    public void reportsTheBackendFailureWhenNoneCanRead() throws Exception {
+        final File broken = folder.newFile("broken.png");
+        Files.write(broken.toPath(), new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0});
+        try {
+            ImageBackends.read(broken);
+            fail("read a broken file");
+        } catch (final Exception e) {
+            // the last backend's failure, not a null image
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownFormats() throws Exception {
+        ImageBackends.read(folder.newFile("notes.no-such-format"));
+    }
+
+    @Test
+    public void savesTheRoutingTable() throws Exception {
+        final File target = new File(folder.getRoot(), "nested/routing.properties");
+        ImageBackends.saveRouting(Collections.singletonMap("png", "imageio"), target);
+        final Properties routing = new Properties();
+        try (InputStream in = Files.newInputStream(target.toPath())) {
+            routing.load(in);
+        }
+        assertEquals("imageio", routing.getProperty("png"));
+        assertFalse(routing.containsKey("jpg"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Writes images with the parallel encoders and reads them back with ImageIO.
+ */
+public class ParallelEncoderTest {
+
+    /**
+     * @return an image with smooth areas and noise, tall enough to span several PNG blocks and TIFF strips
+     */
+    private static BufferedImage image(final int type) {
+        final int w = 613;
+        final int h = 701;
+        final BufferedImage image = new BufferedImage(w, h, type);
+        final Random random = new Random(42);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                final int c = y < h / 2 ? x * 255 / w << 16 | y * 255 / h << 8 | 0x40 : random.nextInt();
+                image.setRGB(x, y, type == BufferedImage.TYPE_INT_ARGB ? c : c | 0xFF000000);
+            }
+        }
+        return image;
+    }
+
+    private static void roundTrip(final BufferedImage image, final String format) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelEncoder.write(image, format, out);
+        final BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(format + " not readable", read);
+        assertEquals(image.getWidth(), read.getWidth());
+        assertEquals(image.getHeight(), read.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (image.getRGB(x, y) != read.getRGB(x, y)) {
+                    assertEquals(format + " pixel " + x + ',' + y, Integer.toHexString(image.getRGB(x, y)),
+                            Integer.toHexString(read.getRGB(x, y)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pngRoundTrips() throws IOException {
+        roundTrip(image(BufferedImage.TYPE_INT_RGB), "png");
+        roundTrip(image(BufferedImage.TYPE_INT_ARGB), "png");
+        roundTrip(image(BufferedImage.TYPE_BYTE_GRAY), "png");
+    }
+
+    @Test
+    public void tiffRoundTrips() throws IOException {
+        // ImageIO reads TIFF from Java 9
+        Assume.assumeTrue(ImageIO.getImageReadersByFormatName("tiff").hasNext());
+        roundTrip(image(BufferedImage.TYPE_INT_RGB), "tiff");
+        roundTrip(image(BufferedImage.TYPE_INT_ARGB), "tif");
+        roundTrip(image(BufferedImage.TYPE_BYTE_GRAY), "tiff");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormats() throws IOException {
+        ParallelEncoder.write(image(BufferedImage.TYPE_INT_RGB), "bmp", new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ProcessingChainTest {
+
+    private final AtomicInteger inputs = new AtomicInteger();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private final Supplier<BufferedImage> input = () -> {
+        inputs.incrementAndGet();
+        return new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    };
+
+    /**
+     * @return a step adding value to the red channel of the top left pixel, counting its runs
+     */
+    private UnaryOperator<BufferedImage> add(final int value) {
+        return src -> {
+            runs.incrementAndGet();
+            final BufferedImage dest = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+            dest.setRGB(0, 0, src.getRGB(0, 0) + (value << 16));
+            return dest;
+        };
+    }
+
+    private static int red(final BufferedImage image) {
+        return image.getRGB(0, 0) >> 16 & 0xFF;
+    }
+
+    @Test
+    public void reusesOutputsForTheSameInput() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        chain.add("b", add(2));
+        final BufferedImage first = chain.apply("key", input);
+        assertEquals(3, red(first));
+        assertEquals(1, inputs.get());
+        assertEquals(2, runs.get());
+
+        assertSame(first, chain.apply("key", input));
+        assertEquals(1, inputs.get());
+        assertEquals(2, runs.get());
+
+        chain.add("c", add(4));
+        assertEquals(7, red(chain.apply("key", input)));
+        assertEquals(1, inputs.get());
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    public void startsAgainForAnotherInput() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        chain.apply("one", input);
+        chain.apply("two", input);
+        assertEquals(2, inputs.get());
+        assertEquals(2, runs.get());
+
+        chain.clearResults();
+        chain.apply("two", input);
+        assertEquals(3, inputs.get());
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    public void undoAndRedoReuseStoredOutputs() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        final BufferedImage a = chain.apply("key", input);
+        chain.add("b", add(2));
+        final BufferedImage b = chain.apply("key", input);
+        assertEquals(2, runs.get());
+
+        chain.undo();
+        assertEquals(1, chain.size());
+        assertSame(a, chain.apply("key", input));
+        chain.redo();
+        assertEquals(2, chain.size());
+        assertSame(b, chain.apply("key", input));
+        assertEquals(1, inputs.get());
+        assertEquals(2, runs.get());
+
+        chain.undo();
+        chain.undo();
+        assertEquals(0, red(chain.apply("key", input)));
+        assertEquals(1, inputs.get());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void addingAStepDropsTheRedoHistory() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        chain.add("b", add(2));
+        chain.undo();
+        chain.add("c", add(4));
+        chain.redo();
+        assertEquals(2, chain.size());
+        assertEquals("c", chain.getSteps().get(1).key);
+        assertEquals(5, red(chain.apply("key", input)));
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterChanges() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        final ProcessingChain snapshot = chain.snapshot();
+        chain.add("b", add(2));
+        assertEquals(1, snapshot.size());
+        assertEquals(1, red(snapshot.apply(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB))));
+    }
+
+    @Test
+    public void missingInputGivesNoImage() {
+        final ProcessingChain chain = new ProcessingChain();
+        chain.add("a", add(1));
+        assertNull(chain.apply("key", () -> null));
+        assertNull(chain.getInput());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void appliesPerPixelStepsATileAtATime() throws IOException {
+        final int w = 700;
+        final int h = 530;
+        final BufferedImage src = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                src.setRGB(x, y, 0xFF000000 | (x & 0xFF) << 16 | (y & 0xFF) << 8 | (x + y) & 0xFF);
+            }
+        }
+        final ProcessingChain chain = new ProcessingChain();
+        chain.addPerPixel("toRGB", ColorConverter::toRGB, null);
+        // a selection across the tile edges
+        chain.addPerPixel("brightness", Filters.brightness(40), new RegionMask(new Rectangle(300, 200, 350, 300), w, h));
+
+        final BufferedImage whole = chain.apply(src);
+        try (TileStore tiles = TileStore.fromImage(src); TileStore processed = chain.apply(tiles)) {
+            final int[] argb = new int[w * h];
+            processed.getRGB(new Rectangle(w, h), argb);
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    assertEquals(x + "," + y, whole.getRGB(x, y), argb[y * w + x]);
+                }
+            }
+        }
+
+        chain.add("blur", Filters.blur(2));
+        assertFalse(chain.isPerPixel());
+    }
+}
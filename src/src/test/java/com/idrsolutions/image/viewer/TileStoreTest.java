@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 1997-2025 IDRsolutions (https://www.idrsolutions.com)
+ */
+
+package com.idrsolutions.image.viewer;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TileStoreTest {
+
+    private static TileStore store() throws IOException {
+        final BufferedImage image = new BufferedImage(600, 40, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < 600; x++) {
+            image.setRGB(x, 7, 0xFF000000 | x);
+        }
+        final TileStore store = new TileStore(600, 40, new MemoryBudget(64L << 20));
+        store.setPixels(0, 0, image);
+        return store;
+    }
+
+    @Test
+    public void keepsTilesUntilTheLastReferenceIsGivenUp() throws IOException {
+        final TileStore store = store();
+        final TileStore held = store.retain();
+        store.close();
+        assertEquals(0xFF000000 | 550, held.getTile(1, 0).getRGB(550 - TileStore.TILE_SIZE, 7));
+        held.close();
+        try {
+            held.getTile(0, 0);
+            fail("tiles read after release");
+        } catch (final IOException expected) {
+            // released
+        }
+        try {
+            store.retain();
+            fail("released store retained");
+        } catch (final IOException expected) {
+            // released
+        }
+    }
+}